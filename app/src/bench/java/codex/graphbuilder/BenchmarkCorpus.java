@@ -0,0 +1,115 @@
+package codex.graphbuilder;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试使用的固定语料，全部由 tests/BlockUtil.java 生成，保证每次运行的输入相同
+ * - small：只保留最短的一个方法
+ * - medium：原样的BlockUtil.java
+ * - huge：BlockUtil的全部成员重复HUGE_COPIES次
+ */
+final class BenchmarkCorpus {
+    static final String FIXTURE = "/BlockUtil.java";
+    static final int HUGE_COPIES = 40;
+
+    private BenchmarkCorpus() {
+    }
+
+    static String fixture() {
+        try (InputStream in = BenchmarkCorpus.class.getResourceAsStream(FIXTURE)) {
+            if (in == null) {
+                throw new IllegalStateException("找不到基准测试语料: " + FIXTURE);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 按规模名称生成单个源文件：small、medium或huge
+     */
+    static String source(String size) {
+        String fixture = fixture();
+        switch (size) {
+            case "small" -> {
+                CompilationUnit cu = StaticJavaParser.parse(fixture);
+                TypeDeclaration<?> type = cu.getType(0);
+                MethodDeclaration shortest = type.getMethods().stream()
+                        .min(Comparator.comparingInt(BenchmarkCorpus::lineCount))
+                        .orElseThrow();
+                type.getMembers().removeIf(member -> member != shortest);
+                return cu.toString();
+            }
+            case "medium" -> {
+                return fixture;
+            }
+            case "huge" -> {
+                CompilationUnit cu = StaticJavaParser.parse(fixture);
+                TypeDeclaration<?> type = cu.getType(0);
+                NodeList<BodyDeclaration<?>> members = type.getMembers();
+                NodeList<BodyDeclaration<?>> copies = new NodeList<>();
+                for (int i = 0; i < HUGE_COPIES; i++) {
+                    members.forEach(member -> copies.add(member.clone()));
+                }
+                type.setMembers(copies);
+                return cu.toString();
+            }
+            default -> throw new IllegalArgumentException("未知的语料规模: " + size);
+        }
+    }
+
+    /**
+     * 在目录中写出fileCount个文件，每个文件是放在不同包中的BlockUtil，包名为 net.minecraft.p0、net.minecraft.p1……
+     */
+    static void writeCorpus(Path directory, int fileCount) throws IOException {
+        String fixture = fixture();
+        for (int i = 0; i < fileCount; i++) {
+            Path packageDir = directory.resolve("net/minecraft/p" + i);
+            Files.createDirectories(packageDir);
+            Files.writeString(packageDir.resolve("BlockUtil.java"),
+                    fixture.replaceFirst("package net\\.minecraft;", "package net.minecraft.p" + i + ";"));
+        }
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * 屏蔽解析和导出过程中的逐文件日志，返回原来的标准输出以便恢复
+     */
+    static PrintStream silenceStdout() {
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return stdout;
+    }
+
+    private static int lineCount(Node node) {
+        return node.getRange().map(range -> range.end.line - range.begin.line + 1).orElse(Integer.MAX_VALUE);
+    }
+}
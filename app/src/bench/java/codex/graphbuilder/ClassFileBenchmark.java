@@ -0,0 +1,49 @@
+package codex.graphbuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * class文件前端读取单个class文件，与ParseBenchmark的源码解析对比
+ * 语料是本项目自身编译出的class文件：Edge（小）和GraphBuilder（大）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassFileBenchmark {
+    @Param({"Edge", "GraphBuilder"})
+    public String className;
+
+    private byte[] classFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = ClassFileBenchmark.class.getResourceAsStream(className + ".class")) {
+            if (in == null) {
+                throw new IllegalStateException("找不到class文件: " + className);
+            }
+            classFile = in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public FileContribution readClassFile() {
+        return ClassFileReader.read(classFile, className + ".class");
+    }
+}
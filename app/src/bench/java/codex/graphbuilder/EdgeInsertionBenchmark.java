@@ -0,0 +1,67 @@
+package codex.graphbuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个合并线程并发向同一个边存储写入边：逐条写入和按批写入
+ * 每轮迭代换一个新的边存储，吞吐量按单条边计算。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class EdgeInsertionBenchmark {
+    private static final int NODE_COUNT = 1 << 16;
+    private static final int BATCH_SIZE = 256;
+
+    @State(Scope.Benchmark)
+    public static class Store {
+        EdgeStore edgeStore;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            edgeStore = new EdgeStore();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Source {
+        private final SplittableRandom random = new SplittableRandom(42);
+        private final long[] batch = new long[BATCH_SIZE];
+
+        int node() {
+            return random.nextInt(NODE_COUNT);
+        }
+    }
+
+    @Benchmark
+    public boolean add(Store store, Source source) {
+        return store.edgeStore.add(Edge.EdgeType.CALLS, source.node(), source.node());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void addAll(Store store, Source source) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            source.batch[i] = EdgeStore.pack(source.node(), source.node());
+        }
+        store.edgeStore.addAll(Edge.EdgeType.CALLS, source.batch, BATCH_SIZE);
+    }
+}
@@ -0,0 +1,37 @@
+package codex.graphbuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV字段转义：导出时每个节点名、签名和关系端点都要经过一次
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EscapeCsvBenchmark {
+    // 导出中常见的几类值：不需要转义的全限定名、带逗号的签名、带引号和换行的字段初始化表达式
+    private final String plainName = "net.minecraft.world.level.block.state.BlockBehaviour.getShape";
+    private final String signature = "public static Optional<BlockPos> getTopConnectedBlock(BlockGetter blockGetter, BlockPos blockPos, Block block)";
+    private final String quoted = "private static final String NAME = \"block\\n\" + \"util\"";
+
+    @Benchmark
+    public void escape(Blackhole blackhole) {
+        blackhole.consume(GraphBuilder.escapeCSV(plainName));
+        blackhole.consume(GraphBuilder.escapeCSV(signature));
+        blackhole.consume(GraphBuilder.escapeCSV(quoted));
+    }
+}
@@ -0,0 +1,67 @@
+package codex.graphbuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整的Neo4j导出（exportToNeo4j）：图由固定语料解析得到，只解析一次，每次调用重新写出全部CSV文件
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+    // 语料中的文件数，每个文件是放在不同包中的BlockUtil
+    @Param({"200"})
+    public int fileCount;
+
+    @Param({"false", "true"})
+    public boolean integerIds;
+
+    private Path workDir;
+    private String outputDir;
+    private GraphBuilder graphBuilder;
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("graphbuilder-export-bench");
+        Path corpus = workDir.resolve("corpus");
+        BenchmarkCorpus.writeCorpus(corpus, fileCount);
+        outputDir = workDir.resolve("neo4j-import").toString();
+
+        stdout = BenchmarkCorpus.silenceStdout();
+        graphBuilder = new GraphBuilder();
+        graphBuilder.setIntegerIds(integerIds);
+        graphBuilder.parseDirectory(corpus.toString());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        BenchmarkCorpus.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public void exportToNeo4j() {
+        graphBuilder.exportToNeo4j(outputDir);
+    }
+}
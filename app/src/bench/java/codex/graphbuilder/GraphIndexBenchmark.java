@@ -0,0 +1,106 @@
+package codex.graphbuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存邻接索引（GraphIndex）上的查询，以及在扁平的边集合（getEdges）上扫描得到同样结果的对比
+ * 图由固定语料解析得到，只解析一次；查询的类、包和方法都在语料的中间一个包里。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphIndexBenchmark {
+    @Param({"200"})
+    public int fileCount;
+
+    private Path workDir;
+    private GraphBuilder graphBuilder;
+    private GraphIndex index;
+    private PrintStream stdout;
+
+    private String packageName;
+    private String className;
+    private int packageId;
+    private int methodId;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("graphbuilder-index-bench");
+        Path corpus = workDir.resolve("corpus");
+        BenchmarkCorpus.writeCorpus(corpus, fileCount);
+
+        stdout = BenchmarkCorpus.silenceStdout();
+        graphBuilder = new GraphBuilder();
+        graphBuilder.parseDirectory(corpus.toString());
+        index = graphBuilder.buildIndex();
+
+        packageName = "net.minecraft.p" + fileCount / 2;
+        className = packageName + ".BlockUtil";
+        packageId = index.nodeId(packageName);
+        methodId = index.nodeId(className + ".getLargestRectangleAround(Lnet/minecraft/core/BlockPos;Lnet/minecraft/core/Direction$Axis;ILnet/minecraft/core/Direction$Axis;ILjava/util/function/Predicate;)");
+        if (packageId < 0 || methodId < 0) {
+            throw new IllegalStateException("语料中找不到查询的节点: " + className);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        BenchmarkCorpus.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public GraphIndex buildIndex() {
+        return graphBuilder.buildIndex();
+    }
+
+    @Benchmark
+    public List<String> methodsOf() {
+        return index.methodsOf(className);
+    }
+
+    @Benchmark
+    public List<String> methodsOfEdgeScan() {
+        List<String> methods = new ArrayList<>();
+        for (Edge edge : graphBuilder.getEdges()) {
+            if (edge.getType() == Edge.EdgeType.CONTAINS_METHOD && edge.getSource().equals(className)) {
+                methods.add(edge.getTarget());
+            }
+        }
+        return methods;
+    }
+
+    @Benchmark
+    public int[] callees2Hop() {
+        return index.kHop(methodId, 2, GraphIndex.Direction.OUTGOING, Edge.EdgeType.CALLS);
+    }
+
+    @Benchmark
+    public int[] packageToCalleePath() {
+        int[] callees = index.neighbors(methodId, Edge.EdgeType.CALLS, GraphIndex.Direction.OUTGOING);
+        return index.shortestPath(packageId, callees[callees.length - 1], GraphIndex.Direction.OUTGOING,
+                Edge.EdgeType.PACKAGE_CONTAINS, Edge.EdgeType.CONTAINS_METHOD);
+    }
+}
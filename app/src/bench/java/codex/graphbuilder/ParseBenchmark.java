@@ -0,0 +1,63 @@
+package codex.graphbuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个文件的解析和提取（parseSource）：小、中、大三种规模的源文件
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private final Path path = Path.of("BlockUtil.java");
+    private String source;
+    private GraphBuilder graphBuilder;
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() {
+        source = BenchmarkCorpus.source(size);
+        graphBuilder = new GraphBuilder();
+        stdout = BenchmarkCorpus.silenceStdout();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public FileContribution parseSource() {
+        return graphBuilder.parseSource(path, source, null);
+    }
+
+    /**
+     * 解析后合并到全局符号表和边存储，同一文件反复合并时只有查找没有新增
+     */
+    @Benchmark
+    public GraphBuilder parseAndMerge() {
+        graphBuilder.merge(graphBuilder.parseSource(path, source, null));
+        return graphBuilder;
+    }
+}
@@ -0,0 +1,151 @@
+package codex.graphbuilder;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * 解析与合并吞吐量随线程数的扩展性测试
+ * 对比两种写入方式：
+ * - shared：旧做法，提取器每遇到一个节点、边和属性就直接写入共享的并发集合，不经过文件私有的缓冲
+ * - buffered：每个文件先在私有缓冲中累积，再批量合并到符号表和边存储
+ * 两种方式的解析和提取完全相同，只有写入路径不同。
+ *
+ * 用法: gradle benchScaling -Pcorpus=<源码目录> [-Pthreads=1,2,4,8,16,32] [-Prounds=3]
+ */
+public class ParseScalingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Path corpus = Path.of(args.length > 0 ? args[0] : "tests");
+        int[] threadCounts = parseThreadCounts(args.length > 1 ? args[1] : "1,2,4,8,16,32");
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(corpus)) {
+            paths = walk.filter(p -> p.toString().endsWith(".java")).collect(Collectors.toList());
+        }
+        List<String> sources = new ArrayList<>();
+        for (Path path : paths) {
+            sources.add(Files.readString(path));
+        }
+        System.out.println("语料: " + corpus + "，" + sources.size() + " 个文件，"
+                + Runtime.getRuntime().availableProcessors() + " 个可用处理器");
+
+        // 关闭解析时逐文件的日志输出，避免stdout锁干扰测量
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            // 预热JIT
+            run(paths, sources, 1, false);
+            run(paths, sources, 1, true);
+
+            stdout.printf("%-8s %16s %16s %10s%n", "threads", "shared (files/s)", "buffered (files/s)", "speedup");
+            for (int threads : threadCounts) {
+                double shared = best(paths, sources, threads, false, rounds);
+                double buffered = best(paths, sources, threads, true, rounds);
+                stdout.printf("%-8d %16.1f %16.1f %9.2fx%n", threads, shared, buffered, buffered / shared);
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    private static double best(List<Path> paths, List<String> sources, int threads, boolean buffered, int rounds)
+            throws Exception {
+        double best = 0;
+        for (int i = 0; i < rounds; i++) {
+            best = Math.max(best, run(paths, sources, threads, buffered));
+        }
+        return best;
+    }
+
+    /**
+     * 在指定大小的ForkJoinPool中解析并合并整个语料，返回每秒处理的文件数
+     */
+    private static double run(List<Path> paths, List<String> sources, int threads, boolean buffered) throws Exception {
+        GraphBuilder graphBuilder = new GraphBuilder();
+        SharedSets shared = new SharedSets();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            pool.submit(() -> IntStream.range(0, sources.size()).parallel().forEach(i -> {
+                if (buffered) {
+                    graphBuilder.merge(graphBuilder.parseSource(paths.get(i), sources.get(i), null));
+                } else {
+                    graphBuilder.parseSource(paths.get(i), sources.get(i), null, shared.newSink());
+                }
+            })).get();
+            long elapsed = System.nanoTime() - start;
+            return sources.size() / (elapsed / 1e9);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static int[] parseThreadCounts(String spec) {
+        String[] parts = spec.split(",");
+        int[] counts = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            counts[i] = Integer.parseInt(parts[i].trim());
+        }
+        return counts;
+    }
+
+    /**
+     * 旧的写入方式：每次出现都直接写入共享的String集合、Edge集合和嵌套属性Map
+     */
+    private static class SharedSets {
+        private final Set<String> packages = ConcurrentHashMap.newKeySet();
+        private final Set<String> classes = ConcurrentHashMap.newKeySet();
+        private final Set<String> methods = ConcurrentHashMap.newKeySet();
+        private final Set<String> fields = ConcurrentHashMap.newKeySet();
+        private final Set<String> files = ConcurrentHashMap.newKeySet();
+        private final Set<Edge> edges = ConcurrentHashMap.newKeySet();
+        private final Map<String, Map<String, String>> nodeProperties = new ConcurrentHashMap<>();
+
+        /**
+         * 一个文件的写入目标：提取器写出的节点、边和属性直接转发到共享集合，不在文件内缓冲
+         * 继承和成员引用仍按原样记录，两种方式都要等全局解析阶段处理。
+         */
+        FileContribution newSink() {
+            return new FileContribution() {
+                @Override
+                void addNode(String name, NodeKind kind) {
+                    switch (kind) {
+                        case PACKAGE -> packages.add(name);
+                        case CLASS -> classes.add(name);
+                        case METHOD -> methods.add(name);
+                        case FIELD -> fields.add(name);
+                        case FILE -> files.add(name);
+                    }
+                }
+
+                @Override
+                void addEdge(String source, String target, Edge.EdgeType type) {
+                    edges.add(new Edge(source, target, type));
+                }
+
+                @Override
+                void addStringProperty(String nodeName, PropertyStore.Column column, String value) {
+                    nodeProperties.computeIfAbsent(nodeName, k -> new ConcurrentHashMap<>())
+                            .put(column.getHeader(), value);
+                }
+
+                @Override
+                void addIntProperty(String nodeName, PropertyStore.Column column, int value) {
+                    addStringProperty(nodeName, column, Integer.toString(value));
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package codex.graphbuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类型层次索引（TypeHierarchy）上的子类型判断和子类型枚举，以及在邻接索引上广度优先展开的对比
+ * 层次是合成的：每个类有BRANCHING个子类，共depth层；每个类另外实现INTERFACES个接口之一，接口之间也有继承。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeHierarchyBenchmark {
+    private static final int BRANCHING = 4;
+    private static final int INTERFACES = 16;
+    private static final Edge.EdgeType[] SUPERTYPE_EDGES = {Edge.EdgeType.EXTENDS, Edge.EdgeType.IMPLEMENTS};
+
+    @Param({"8"})
+    public int depth;
+
+    private GraphIndex index;
+    private TypeHierarchy hierarchy;
+    private int root;
+    private int leaf;
+    private int anInterface;
+
+    @Setup
+    public void setUp() {
+        SymbolTable symbols = new SymbolTable();
+        EdgeStore edgeStore = new EdgeStore();
+        int[] interfaces = new int[INTERFACES];
+        for (int i = 0; i < INTERFACES; i++) {
+            interfaces[i] = symbols.intern("bench.api.I" + i);
+            symbols.mark(interfaces[i], NodeKind.CLASS);
+            if (i > 0) {
+                edgeStore.add(Edge.EdgeType.EXTENDS, interfaces[i], interfaces[(i - 1) / 2]);
+            }
+        }
+        root = symbols.intern("bench.C");
+        symbols.mark(root, NodeKind.CLASS);
+        int[] level = {root};
+        for (int d = 1; d < depth; d++) {
+            int[] next = new int[level.length * BRANCHING];
+            for (int i = 0; i < next.length; i++) {
+                int parent = level[i / BRANCHING];
+                next[i] = symbols.intern(symbols.name(parent) + "_" + i % BRANCHING);
+                symbols.mark(next[i], NodeKind.CLASS);
+                edgeStore.add(Edge.EdgeType.EXTENDS, next[i], parent);
+                edgeStore.add(Edge.EdgeType.IMPLEMENTS, next[i], interfaces[next[i] % INTERFACES]);
+            }
+            level = next;
+        }
+        leaf = level[level.length - 1];
+        anInterface = interfaces[INTERFACES - 1];
+        index = GraphIndex.build(symbols, edgeStore);
+        hierarchy = index.typeHierarchy();
+    }
+
+    @Benchmark
+    public TypeHierarchy buildHierarchy() {
+        return TypeHierarchy.build(index);
+    }
+
+    @Benchmark
+    public boolean isSubtype() {
+        return hierarchy.isSubtype(leaf, root) & hierarchy.isSubtype(leaf, anInterface);
+    }
+
+    @Benchmark
+    public boolean isSubtypeBfs() {
+        boolean found = false;
+        for (int ancestor : index.kHop(leaf, Integer.MAX_VALUE, GraphIndex.Direction.OUTGOING, SUPERTYPE_EDGES)) {
+            found |= ancestor == anInterface;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int[] descendants() {
+        return hierarchy.descendants(root);
+    }
+
+    @Benchmark
+    public int[] descendantsBfs() {
+        return index.kHop(root, Integer.MAX_VALUE, GraphIndex.Direction.INCOMING, SUPERTYPE_EDGES);
+    }
+}
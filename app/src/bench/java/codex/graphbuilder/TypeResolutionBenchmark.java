@@ -0,0 +1,79 @@
+package codex.graphbuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按导入索引解析类型名：文件中有大量单类型导入和按需导入时的查找开销
+ * 待解析的名称覆盖单类型导入、同包、按需导入、外层限定的成员类型和找不到的类型。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeResolutionBenchmark {
+    @Param({"20", "500"})
+    public int importCount;
+
+    private ImportIndex imports;
+    private Set<String> knownClasses;
+    private String[] typeNames;
+
+    @Setup
+    public void setUp() {
+        List<String> importNames = new ArrayList<>();
+        List<Boolean> onDemandFlags = new ArrayList<>();
+        knownClasses = new HashSet<>();
+        for (int i = 0; i < importCount; i++) {
+            String name = "net.minecraft.world.p" + (i % 50) + ".Type" + i;
+            importNames.add(name);
+            onDemandFlags.add(false);
+            knownClasses.add(name);
+        }
+        for (int i = 0; i < 10; i++) {
+            importNames.add("net.minecraft.util.wildcard" + i);
+            onDemandFlags.add(true);
+            knownClasses.add("net.minecraft.util.wildcard" + i + ".Wild" + i);
+        }
+        knownClasses.add("net.minecraft.SamePackage");
+        knownClasses.add("net.minecraft.Inner");
+        imports = new ImportIndex("net.minecraft", importNames, onDemandFlags);
+
+        typeNames = new String[]{
+                "Type0", "Type" + (importCount - 1), "SamePackage", "Wild9", "SamePackage.Inner",
+                "Missing", "java.util.List", "Type" + (importCount / 2)
+        };
+    }
+
+    @Benchmark
+    public void resolve(Blackhole blackhole) {
+        for (String typeName : typeNames) {
+            blackhole.consume(imports.resolve(typeName, knownClasses::contains));
+        }
+    }
+
+    @Benchmark
+    public void candidates(Blackhole blackhole) {
+        for (String typeName : typeNames) {
+            blackhole.consume(imports.candidates(typeName));
+        }
+    }
+}
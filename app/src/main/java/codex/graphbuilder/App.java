@@ -5,24 +5,165 @@
  */
 package codex.graphbuilder;
 
+import com.github.javaparser.ParserConfiguration;
+
+import java.io.File;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class App {
-    private static void parseFile(String path) {
-        GraphBuilder graphBuilder = new GraphBuilder();
-        graphBuilder.parseDirectory(path);
+    private static void parseFile(GraphBuilder graphBuilder, List<String> paths, String fromSnapshot, String snapshot,
+                                  String diffAgainst, boolean watch, long watchDebounce) {
+        if (fromSnapshot != null) {
+            graphBuilder.loadSnapshot(fromSnapshot);
+        } else {
+            graphBuilder.parseSources(paths);
+        }
+        if (snapshot != null) {
+            graphBuilder.saveSnapshot(snapshot);
+        }
 
-        // 导出到当前目录下的neo4j-import文件夹
+        // 导出到当前目录下的neo4j-import文件夹；比较模式下只写出与旧版本的差异
         String outputDirectory = Paths.get("").toAbsolutePath().toString() + "/neo4j-import";
-        graphBuilder.exportToNeo4j(outputDirectory);
+        if (diffAgainst != null) {
+            graphBuilder.exportDiff(diffAgainst, outputDirectory);
+        } else {
+            graphBuilder.exportToNeo4j(outputDirectory);
+        }
+
+        if (watch) {
+            graphBuilder.watch(paths, outputDirectory, watchDebounce);
+        }
     }
 
     public static void main(String[] args) {
-        // 允许从命令行传入路径参数
-        final String path = args.length > 0 ? args[0] : "/Users/xxx/Code/xxx";
+        // 允许从命令行传入一个或多个路径参数（目录或 *-sources.jar、*.zip 源码包），以及以下选项：
+        //   --cache=<清单文件>        启用增量构建
+        //   --gzip                    导出.csv.gz
+        //   --id-type=<string|integer> 节点ID使用全限定名（默认）或稠密整数ID
+        //   --language-level=<级别>   解析使用的Java语言级别，如JAVA_11、JAVA_17、JAVA_21（默认JAVA_17）
+        //   --attribute-comments      把注释挂载到AST节点上（默认关闭）
+        //   --readers=<n>             流水线读取阶段的虚拟线程数（默认16）
+        //   --parsers=<n>             流水线解析阶段的线程数（默认CPU核数）
+        //   --sinks=<n>               流水线合并阶段的线程数（默认1）
+        //   --queue-capacity=<n>      流水线各阶段之间队列的容量（默认256）
+        //   --symbol-solver           用符号求解器解析已知类之外的继承/实现类型，生成外部Class节点（默认按导入猜测，这类关系被丢弃）
+        //   --source-roots=<a:b>      符号求解器和同包类型查找使用的源码根目录（默认自动查找src/main/java等）
+        //   --classpath=<x.jar:y.jar> 符号求解器使用的依赖jar
+        //   --resolution-cache-size=<n> 类型解析和调用目标解析缓存的最大条目数（默认65536）
+        //   --no-call-graph           不提取方法调用和字段读写（CALLS/READS/WRITES）
+        //   --bytecode                从目录和jar中的.class文件构建图，不解析源码
+        //   --quiet                   不输出逐个文件的解析日志
+        //   --slowest=<n>             解析耗时报告中列出的最慢文件数（默认10）
+        //   --inherits-from           额外导出继承闭包INHERITS_FROM（每个类到所有祖先类型，带层数depth）
+        //   --edge-buffer=<MB>        边缓冲区的预算（按边数 × 8字节计），超出时把排好序的边溢出到临时文件，导出时归并去重
+        //   --spill-dir=<目录>        溢出文件所在的目录（默认系统临时目录）
+        //   --snapshot=<文件>         解析完成后把图保存为二进制快照
+        //   --from-snapshot=<文件>    从二进制快照加载图，不再解析源码
+        //   --diff-against=<旧快照>   与旧版本的图快照比较，只写出差异脚本neo4j-import/diff.cypher，不导出CSV
+        //   --watch                   导出后继续监视源码目录，把每批文件变化写成Cypher脚本到neo4j-import/deltas
+        //   --watch-debounce=<毫秒>   监视模式下合并一批变化的静默时间（默认300）
+        List<String> paths = new ArrayList<>();
+        String snapshot = null;
+        String fromSnapshot = null;
+        String diffAgainst = null;
+        boolean watch = false;
+        long watchDebounce = 300;
+        long edgeBuffer = 0;
+        String spillDirectory = System.getProperty("java.io.tmpdir");
+        GraphBuilder graphBuilder = new GraphBuilder();
+        ParserConfiguration parserConfiguration = ParserPool.defaultConfiguration();
+        for (String arg : args) {
+            if (arg.startsWith("--cache=")) {
+                graphBuilder.setCacheFile(optionValue(arg));
+            } else if (arg.equals("--gzip")) {
+                graphBuilder.setCompressOutput(true);
+            } else if (arg.startsWith("--id-type=")) {
+                graphBuilder.setIntegerIds(optionValue(arg).equalsIgnoreCase("integer"));
+            } else if (arg.startsWith("--language-level=")) {
+                parserConfiguration.setLanguageLevel(
+                        ParserConfiguration.LanguageLevel.valueOf(optionValue(arg).toUpperCase()));
+            } else if (arg.equals("--attribute-comments")) {
+                parserConfiguration.setAttributeComments(true);
+            } else if (arg.startsWith("--readers=")) {
+                graphBuilder.setReaderThreads(Integer.parseInt(optionValue(arg)));
+            } else if (arg.startsWith("--parsers=")) {
+                graphBuilder.setParserThreads(Integer.parseInt(optionValue(arg)));
+            } else if (arg.startsWith("--sinks=")) {
+                graphBuilder.setSinkThreads(Integer.parseInt(optionValue(arg)));
+            } else if (arg.startsWith("--queue-capacity=")) {
+                graphBuilder.setPipelineQueueCapacity(Integer.parseInt(optionValue(arg)));
+            } else if (arg.equals("--symbol-solver")) {
+                graphBuilder.setSymbolSolverEnabled(true);
+            } else if (arg.startsWith("--source-roots=")) {
+                graphBuilder.setSourceRoots(pathList(optionValue(arg)));
+            } else if (arg.startsWith("--classpath=")) {
+                graphBuilder.setLibraryJars(pathList(optionValue(arg)));
+            } else if (arg.startsWith("--resolution-cache-size=")) {
+                graphBuilder.setResolutionCacheSize(Integer.parseInt(optionValue(arg)));
+            } else if (arg.equals("--no-call-graph")) {
+                graphBuilder.setCallGraphEnabled(false);
+            } else if (arg.equals("--bytecode")) {
+                graphBuilder.setBytecode(true);
+            } else if (arg.equals("--quiet")) {
+                graphBuilder.setQuiet(true);
+            } else if (arg.startsWith("--slowest=")) {
+                graphBuilder.setSlowestFileCount(Integer.parseInt(optionValue(arg)));
+            } else if (arg.equals("--inherits-from")) {
+                graphBuilder.setInheritsFromExport(true);
+            } else if (arg.startsWith("--edge-buffer=")) {
+                edgeBuffer = Long.parseLong(optionValue(arg));
+            } else if (arg.startsWith("--spill-dir=")) {
+                spillDirectory = optionValue(arg);
+            } else if (arg.startsWith("--snapshot=")) {
+                snapshot = optionValue(arg);
+            } else if (arg.startsWith("--from-snapshot=")) {
+                fromSnapshot = optionValue(arg);
+            } else if (arg.startsWith("--diff-against=")) {
+                diffAgainst = optionValue(arg);
+            } else if (arg.equals("--watch")) {
+                watch = true;
+            } else if (arg.startsWith("--watch-debounce=")) {
+                watchDebounce = Long.parseLong(optionValue(arg));
+            } else if (arg.startsWith("--")) {
+                System.err.println("未知参数: " + arg);
+                return;
+            } else {
+                paths.add(arg);
+            }
+        }
+        if (paths.isEmpty()) {
+            paths.add("/Users/xxx/Code/xxx");
+        }
+        if (watch && fromSnapshot != null) {
+            System.err.println("--watch 需要解析源码，不能与 --from-snapshot 同时使用");
+            return;
+        }
+        if (edgeBuffer > 0 && (watch || diffAgainst != null)) {
+            System.err.println("--edge-buffer 溢出到磁盘的边不支持删除，按边查找也要逐次读盘，不能与 --watch、--diff-against 同时使用");
+            return;
+        }
+        if (edgeBuffer > 0) {
+            graphBuilder.setEdgeBufferBudget(edgeBuffer, spillDirectory);
+        }
+        graphBuilder.setParserConfiguration(parserConfiguration);
+        graphBuilder.setWatchEnabled(watch);
 
-        System.out.println("开始分析代码路径: " + path);
-        parseFile(path);
+        System.out.println("开始分析代码路径: " + (fromSnapshot != null ? fromSnapshot : String.join(", ", paths)));
+        parseFile(graphBuilder, paths, fromSnapshot, snapshot, diffAgainst, watch, watchDebounce);
         System.out.println("分析完成，数据已导出到neo4j-import目录");
     }
+
+    private static String optionValue(String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+
+    private static List<String> pathList(String value) {
+        return Arrays.stream(value.split(File.pathSeparator))
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
 }
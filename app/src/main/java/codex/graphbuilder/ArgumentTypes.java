@@ -0,0 +1,84 @@
+package codex.graphbuilder;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 调用点的实参类型提示，用于在参数个数相同的重载中选择
+ * 每个实参一项，用','连接：基本类型写描述符字母（I、J、Z……），引用类型写简单名，数组加 "[]" 后缀，
+ * 无法确定的写 "?"。提示只来自字面量、局部变量/参数/字段的声明类型、new表达式和强制类型转换，不做类型推断。
+ * 形参类型取方法节点名中参数内部名的最后一段，与提示按同样的写法比较。
+ */
+final class ArgumentTypes {
+    static final String UNKNOWN = "?";
+
+    // 不兼容的实参和形参
+    static final int INCOMPATIBLE = -1;
+
+    // 基本类型 -> 包装类型的简单名
+    private static final Map<String, String> BOXES = Map.of(
+            "Z", "Boolean", "B", "Byte", "C", "Character", "S", "Short",
+            "I", "Integer", "J", "Long", "F", "Float", "D", "Double");
+
+    // 基本类型 -> 可以拓宽到的基本类型
+    private static final Map<String, String> WIDENINGS = Map.of(
+            "B", "SIJFD", "S", "IJFD", "C", "IJFD", "I", "JFD", "J", "FD", "F", "D");
+
+    // String和包装类型是final类，除自身外只能传给这些形参类型
+    private static final Set<String> FINAL_SUPERTYPES = Set.of(
+            "Object", "Serializable", "Comparable", "CharSequence", "Number", "Constable", "ConstantDesc");
+
+    private ArgumentTypes() {
+    }
+
+    /**
+     * 把调用点的实参提示拆成数组；没有实参时为空数组
+     */
+    static String[] split(String argumentTypes) {
+        return argumentTypes.isEmpty() ? new String[0] : argumentTypes.split(",", -1);
+    }
+
+    /**
+     * 一个实参传给一个形参的匹配程度：3为类型相同，2为拓宽、装箱或拆箱，1为可能兼容（未知实参或可能的子类型），
+     * 不兼容时返回INCOMPATIBLE
+     */
+    static int score(String argument, String parameter) {
+        if (argument.equals(UNKNOWN)) {
+            return 1;
+        }
+        if (argument.equals(parameter)) {
+            return 3;
+        }
+        boolean argumentPrimitive = BOXES.containsKey(argument);
+        boolean parameterPrimitive = BOXES.containsKey(parameter);
+        if (argumentPrimitive) {
+            if (parameterPrimitive) {
+                return WIDENINGS.getOrDefault(argument, "").contains(parameter) ? 2 : INCOMPATIBLE;
+            }
+            if (BOXES.get(argument).equals(parameter)) {
+                return 2;
+            }
+            return FINAL_SUPERTYPES.contains(parameter) ? 1 : INCOMPATIBLE;
+        }
+        if (parameterPrimitive) {
+            return BOXES.get(parameter).equals(argument) ? 2 : INCOMPATIBLE;
+        }
+        boolean argumentArray = argument.endsWith("[]");
+        if (argumentArray != parameter.endsWith("[]")) {
+            // 数组只能传给Object等少数几个非数组形参
+            return argumentArray && (parameter.equals("Object") || parameter.equals("Cloneable")
+                    || parameter.equals("Serializable")) ? 1 : INCOMPATIBLE;
+        }
+        if (argumentArray) {
+            String component = argument.substring(0, argument.length() - 2);
+            String parameterComponent = parameter.substring(0, parameter.length() - 2);
+            return BOXES.containsKey(component) || BOXES.containsKey(parameterComponent)
+                    ? INCOMPATIBLE : Math.min(1, score(component, parameterComponent));
+        }
+        if (argument.equals("String") || BOXES.containsValue(argument)) {
+            return FINAL_SUPERTYPES.contains(parameter) ? 1 : INCOMPATIBLE;
+        }
+        // 形参是final类时只接收同一类型的实参
+        return parameter.equals("String") || BOXES.containsValue(parameter) ? INCOMPATIBLE : 1;
+    }
+}
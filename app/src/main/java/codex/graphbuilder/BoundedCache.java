@@ -0,0 +1,67 @@
+package codex.graphbuilder;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 有容量上限的并发记忆化缓存
+ * 超过上限时淘汰约八分之一的条目（按哈希表遍历顺序，近似随机），读取路径无锁。
+ */
+class BoundedCache<K, V> {
+    private final Map<K, V> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    BoundedCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * 返回缓存的值，未命中时调用loader计算并缓存；loader不能返回null
+     */
+    V get(K key, Function<K, V> loader) {
+        V value = entries.get(key);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = loader.apply(key);
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(key, value);
+        return value;
+    }
+
+    private void evict() {
+        int toRemove = Math.max(1, maxSize / 8);
+        Iterator<K> it = entries.keySet().iterator();
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    double hitRate() {
+        long total = getHits() + getMisses();
+        return total == 0 ? 0 : (double) getHits() / total;
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
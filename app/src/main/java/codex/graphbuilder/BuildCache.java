@@ -0,0 +1,171 @@
+package codex.graphbuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 增量构建缓存清单
+ * 记录每个源文件的路径、大小、修改时间和内容哈希，以及该文件贡献的节点、边和属性。
+ * 未变化的文件直接从清单中恢复，变化的文件重新解析，已删除的文件不会写入新的清单。
+ * 清单头部记录提取配置（是否提取调用图、语言级别等），与本次运行的配置不同时整个清单作废。
+ * 提取时查找过的同包类型源文件出现或消失后，即使文件本身没有变化也不再命中（见SourcePath）。
+ */
+class BuildCache {
+    private static final int MAGIC = 0x43474243; // "CGBC"
+    private static final int VERSION = 14;
+
+    private final Path manifestPath;
+
+    // 本次运行的提取配置，写入清单头部
+    private String configuration = "";
+    // 按文件的键判断文件现在是否存在，用于检查贡献记录的同包类型查找是否过期
+    private Predicate<String> isSourcePresent = key -> false;
+
+    // 上一次运行留下的清单
+    private final Map<String, Entry> previous = new ConcurrentHashMap<>();
+    // 本次运行产生的清单
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    BuildCache(Path manifestPath) {
+        this.manifestPath = manifestPath;
+    }
+
+    /**
+     * 读取清单；文件不存在、格式不兼容或提取配置与configuration不同时从空缓存开始
+     * isSourcePresent按文件的键（见SourceRoots.key）判断文件现在是否存在。
+     */
+    void load(String configuration, Predicate<String> isSourcePresent) {
+        this.configuration = configuration;
+        this.isSourcePresent = isSourcePresent;
+        if (!Files.exists(manifestPath)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifestPath)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.out.println("缓存清单格式不兼容，将执行完整解析: " + manifestPath);
+                return;
+            }
+            if (!in.readUTF().equals(configuration)) {
+                System.out.println("缓存清单的提取配置与本次不同，将执行完整解析: " + manifestPath);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                FileContribution contribution = FileContribution.readFrom(in);
+                previous.put(path, new Entry(size, lastModified, hash, contribution));
+            }
+        } catch (IOException e) {
+            System.err.println("读取缓存清单时出错，将执行完整解析: " + e.getMessage());
+            previous.clear();
+        }
+    }
+
+    /**
+     * 写入本次运行的清单，先写临时文件再原子替换
+     */
+    void save() throws IOException {
+        Path parent = manifestPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tempPath = manifestPath.resolveSibling(manifestPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(configuration);
+            out.writeInt(current.size());
+            for (Map.Entry<String, Entry> e : current.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeByte(entry.hash.length);
+                out.write(entry.hash);
+                entry.contribution.writeTo(out);
+            }
+        }
+        Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 大小和修改时间都未变化时直接命中，无需读取文件内容
+     */
+    FileContribution lookup(String path, long size, long lastModified) {
+        Entry entry = previous.get(path);
+        if (entry != null && entry.size == size && entry.lastModified == lastModified
+                && entry.contribution.isSourcePathUnchanged(isSourcePresent)) {
+            current.put(path, entry);
+            return entry.contribution;
+        }
+        return null;
+    }
+
+    /**
+     * 修改时间变化但内容哈希相同（例如touch或重新检出）时仍然命中
+     */
+    FileContribution lookup(String path, long size, long lastModified, byte[] hash) {
+        Entry entry = previous.get(path);
+        if (entry != null && entry.size == size && Arrays.equals(entry.hash, hash)
+                && entry.contribution.isSourcePathUnchanged(isSourcePresent)) {
+            current.put(path, new Entry(size, lastModified, hash, entry.contribution));
+            return entry.contribution;
+        }
+        return null;
+    }
+
+    void store(String path, long size, long lastModified, byte[] hash, FileContribution contribution) {
+        current.put(path, new Entry(size, lastModified, hash, contribution));
+    }
+
+    /**
+     * 上次存在但本次未出现的文件数量（即被删除的文件）
+     */
+    int countRemoved() {
+        int removed = 0;
+        for (String path : previous.keySet()) {
+            if (!current.containsKey(path)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final byte[] hash;
+        private final FileContribution contribution;
+
+        Entry(long size, long lastModified, byte[] hash, FileContribution contribution) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.contribution = contribution;
+        }
+    }
+}
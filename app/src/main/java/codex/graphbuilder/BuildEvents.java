@@ -0,0 +1,54 @@
+package codex.graphbuilder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 自定义JFR事件，未开启JFR记录时几乎没有开销
+ * 用法: java -XX:StartFlightRecording=filename=build.jfr ... ，再用 jfr print --events codex.graphbuilder.* build.jfr 查看
+ */
+final class BuildEvents {
+    private BuildEvents() {
+    }
+
+    /**
+     * 单个文件的解析，持续时间即解析和提取耗时
+     */
+    @Name("codex.graphbuilder.FileParsed")
+    @Label("解析Java文件")
+    @Category("Graph Builder")
+    @StackTrace(false)
+    static final class FileParsed extends Event {
+        @Label("文件")
+        String path;
+
+        @Label("大小")
+        @DataAmount
+        long bytes;
+
+        @Label("节点数")
+        int nodes;
+
+        @Label("边数")
+        int edges;
+
+        @Label("是否失败")
+        boolean failed;
+    }
+
+    /**
+     * 一个构建阶段（发现、引用解析、导出等）的整体耗时
+     */
+    @Name("codex.graphbuilder.Phase")
+    @Label("构建阶段")
+    @Category("Graph Builder")
+    @StackTrace(false)
+    static final class Phase extends Event {
+        @Label("阶段")
+        String phase;
+    }
+}
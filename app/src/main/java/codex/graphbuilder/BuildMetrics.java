@@ -0,0 +1,390 @@
+package codex.graphbuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 构建过程的度量：各阶段耗时、单文件解析耗时直方图、最慢的文件和计数器
+ * 所有记录方法都可以在解析线程中并发调用，热路径上只有原子累加；
+ * 只有耗时超过当前最慢列表门槛的文件才需要加锁。
+ */
+class BuildMetrics {
+    static final int DEFAULT_SLOWEST = 10;
+
+    // 直方图的桶：第i个桶的上界为2^i微秒
+    private static final int BUCKETS = 40;
+
+    /**
+     * 构建阶段；解析和合并按文件累计，其余阶段各计时一次
+     */
+    enum Phase {
+        DISCOVERY("discovery", "发现"),
+        PARSE("parse", "解析"),
+        MERGE("merge", "合并"),
+        RESOLVE("resolve", "引用解析"),
+        EXPORT("export", "导出");
+
+        private final String key;
+        private final String label;
+
+        Phase(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+    }
+
+    enum Counter {
+        FILES_DISCOVERED("filesDiscovered"),
+        FILES_PARSED("filesParsed"),
+        FILES_REUSED("filesReused"),
+        ERRORS("errors"),
+        TYPE_REFERENCES("typeReferences"),
+        MEMBER_REFERENCES_RESOLVED("memberReferencesResolved"),
+        MEMBER_REFERENCES_UNRESOLVED("memberReferencesUnresolved");
+
+        private final String key;
+
+        Counter(String key) {
+            this.key = key;
+        }
+    }
+
+    private final int slowestLimit;
+
+    // 每个阶段：累计耗时、次数、最早开始和最晚结束的时间（用于计算墙钟时间）
+    private final LongAdder[] phaseTotals = new LongAdder[Phase.values().length];
+    private final LongAdder[] phaseCounts = new LongAdder[Phase.values().length];
+    private final AtomicLongArray phaseFirstStart = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray phaseLastEnd = new AtomicLongArray(Phase.values().length);
+    // 每个阶段阻塞在下游队列上的时间，不计入上面的阶段耗时（见PhaseTimer.blocked）
+    private final LongAdder[] phaseBlocked = new LongAdder[Phase.values().length];
+
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+
+    // 单文件解析耗时
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator maxParseNanos = new LongAccumulator(Math::max, 0);
+
+    // 解析最慢的文件，堆顶是列表中最快的一个
+    private final PriorityQueue<SlowFile> slowest = new PriorityQueue<>(Comparator.comparingLong(SlowFile::nanos));
+    private final AtomicLong slowestThreshold = new AtomicLong();
+
+    BuildMetrics() {
+        this(DEFAULT_SLOWEST);
+    }
+
+    BuildMetrics(int slowestLimit) {
+        this.slowestLimit = Math.max(0, slowestLimit);
+        for (int i = 0; i < phaseTotals.length; i++) {
+            phaseTotals[i] = new LongAdder();
+            phaseCounts[i] = new LongAdder();
+            phaseBlocked[i] = new LongAdder();
+            phaseFirstStart.set(i, Long.MAX_VALUE);
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次阶段耗时，startNanos来自System.nanoTime()，返回本次耗时
+     */
+    long record(Phase phase, long startNanos) {
+        long end = System.nanoTime();
+        int index = phase.ordinal();
+        phaseTotals[index].add(end - startNanos);
+        phaseCounts[index].increment();
+        phaseFirstStart.accumulateAndGet(index, startNanos, Math::min);
+        phaseLastEnd.accumulateAndGet(index, end, Math::max);
+        return end - startNanos;
+    }
+
+    /**
+     * 开始一个整体计时的阶段，同时产生JFR阶段事件；用try-with-resources结束
+     */
+    PhaseTimer start(Phase phase) {
+        return new PhaseTimer(phase);
+    }
+
+    /**
+     * 记录单个文件的解析耗时：计入解析阶段、直方图和最慢文件列表
+     */
+    void recordParse(Path path, long startNanos) {
+        long nanos = record(Phase.PARSE, startNanos);
+        long micros = nanos / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        histogram.incrementAndGet(bucket);
+        maxParseNanos.accumulate(nanos);
+
+        if (slowestLimit == 0 || nanos <= slowestThreshold.get()) {
+            return;
+        }
+        synchronized (slowest) {
+            slowest.add(new SlowFile(SourceRoots.location(path), nanos));
+            if (slowest.size() > slowestLimit) {
+                slowest.poll();
+            }
+            if (slowest.size() == slowestLimit) {
+                slowestThreshold.set(slowest.peek().nanos());
+            }
+        }
+    }
+
+    void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    void add(Counter counter, long value) {
+        counters[counter.ordinal()].add(value);
+    }
+
+    long get(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    long wallNanos(Phase phase) {
+        int index = phase.ordinal();
+        return phaseCounts[index].sum() == 0 ? 0 : phaseLastEnd.get(index) - phaseFirstStart.get(index);
+    }
+
+    long totalNanos(Phase phase) {
+        return phaseTotals[phase.ordinal()].sum();
+    }
+
+    long blockedNanos(Phase phase) {
+        return phaseBlocked[phase.ordinal()].sum();
+    }
+
+    /**
+     * 直方图中第p分位（0到1）所在桶的上界，单位纳秒；没有数据时返回0
+     */
+    long parsePercentileNanos(double p) {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += histogram.get(i);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(p * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram.get(i);
+            if (seen >= target) {
+                return Math.min(bucketUpperMicros(i) * 1000, maxParseNanos.get());
+            }
+        }
+        return maxParseNanos.get();
+    }
+
+    /**
+     * 耗时从长到短排列的最慢文件
+     */
+    List<SlowFile> slowestFiles() {
+        List<SlowFile> files;
+        synchronized (slowest) {
+            files = new ArrayList<>(slowest);
+        }
+        files.sort(Comparator.comparingLong(SlowFile::nanos).reversed());
+        return files;
+    }
+
+    /**
+     * 各阶段耗时，形如"发现 12 ms（另阻塞 585 ms），解析 3456 ms（累计 12345 ms）……"
+     */
+    String describePhases() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            if (phaseCounts[phase.ordinal()].sum() == 0) {
+                continue;
+            }
+            if (!sb.isEmpty()) {
+                sb.append("，");
+            }
+            sb.append(phase.label).append(' ').append(millis(wallNanos(phase))).append(" ms");
+            if (phase == Phase.PARSE || phase == Phase.MERGE) {
+                sb.append("（累计 ").append(millis(totalNanos(phase))).append(" ms）");
+            }
+            if (blockedNanos(phase) > 0) {
+                sb.append("（另阻塞 ").append(millis(blockedNanos(phase))).append(" ms）");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 单文件解析耗时的分位数，形如"p50 ≤ 8 ms，p90 ≤ 32 ms，p99 ≤ 64 ms，最大 50 ms"
+     */
+    String describeParseLatency() {
+        return "p50 ≤ " + millis(parsePercentileNanos(0.5)) + " ms，p90 ≤ " + millis(parsePercentileNanos(0.9))
+                + " ms，p99 ≤ " + millis(parsePercentileNanos(0.99)) + " ms，最大 " + millis(maxParseNanos.get()) + " ms";
+    }
+
+    /**
+     * 写出机器可读的度量文件；节点数和边数由调用方按种类和类型给出
+     */
+    void writeJson(Path file, Map<String, Integer> nodes, Map<String, Integer> edges) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"phases\": {");
+        Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            Phase phase = phases[i];
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    \"").append(phase.key).append("\": {\"wallMillis\": ").append(decimal(wallNanos(phase)))
+                    .append(", \"totalMillis\": ").append(decimal(totalNanos(phase)))
+                    .append(", \"blockedMillis\": ").append(decimal(blockedNanos(phase)))
+                    .append(", \"count\": ").append(phaseCounts[phase.ordinal()].sum()).append('}');
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"parseLatency\": {\"p50Millis\": ").append(decimal(parsePercentileNanos(0.5)))
+                .append(", \"p90Millis\": ").append(decimal(parsePercentileNanos(0.9)))
+                .append(", \"p99Millis\": ").append(decimal(parsePercentileNanos(0.99)))
+                .append(", \"maxMillis\": ").append(decimal(maxParseNanos.get()))
+                .append(", \"buckets\": [");
+        boolean first = true;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = histogram.get(i);
+            if (count == 0) {
+                continue;
+            }
+            json.append(first ? "" : ", ").append("{\"upperMicros\": ").append(bucketUpperMicros(i))
+                    .append(", \"count\": ").append(count).append('}');
+            first = false;
+        }
+        json.append("]},\n");
+
+        json.append("  \"slowestFiles\": [");
+        List<SlowFile> files = slowestFiles();
+        for (int i = 0; i < files.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"path\": ").append(quote(files.get(i).path()))
+                    .append(", \"millis\": ").append(decimal(files.get(i).nanos())).append('}');
+        }
+        json.append(files.isEmpty() ? "],\n" : "\n  ],\n");
+
+        json.append("  \"counters\": {");
+        Counter[] values = Counter.values();
+        for (int i = 0; i < values.length; i++) {
+            json.append(i == 0 ? "" : ", ").append('"').append(values[i].key).append("\": ").append(get(values[i]));
+        }
+        json.append("},\n");
+
+        json.append("  \"nodes\": ");
+        appendCounts(json, nodes);
+        json.append(",\n  \"edges\": ");
+        appendCounts(json, edges);
+        json.append("\n}\n");
+
+        Files.writeString(file, json);
+    }
+
+    private static void appendCounts(StringBuilder json, Map<String, Integer> counts) {
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            json.append(first ? "" : ", ").append(quote(entry.getKey())).append(": ").append(entry.getValue());
+            first = false;
+        }
+        json.append('}');
+    }
+
+    private static long bucketUpperMicros(int bucket) {
+        return 1L << bucket;
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static String decimal(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * 最慢文件列表中的一项
+     */
+    static final class SlowFile {
+        private final String path;
+        private final long nanos;
+
+        SlowFile(String path, long nanos) {
+            this.path = path;
+            this.nanos = nanos;
+        }
+
+        String path() {
+            return path;
+        }
+
+        long nanos() {
+            return nanos;
+        }
+    }
+
+    /**
+     * 整体计时的阶段，关闭时记录耗时并提交JFR事件
+     * 阶段中阻塞在下游队列上的时间用blocked报告，关闭时从阶段耗时中扣除（起点按阻塞时间后移），单独记录。
+     */
+    final class PhaseTimer implements AutoCloseable {
+        private final Phase phase;
+        private final long startNanos = System.nanoTime();
+        private long blockedNanos;
+        private final BuildEvents.Phase event = new BuildEvents.Phase();
+
+        private PhaseTimer(Phase phase) {
+            this.phase = phase;
+            event.begin();
+        }
+
+        /**
+         * 报告一次阻塞，nanos是阻塞的时长
+         */
+        void blocked(long nanos) {
+            blockedNanos += nanos;
+        }
+
+        @Override
+        public void close() {
+            record(phase, startNanos + blockedNanos);
+            phaseBlocked[phase.ordinal()].add(blockedNanos);
+            if (event.shouldCommit()) {
+                event.phase = phase.key;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package codex.graphbuilder;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.EnumConstantDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.RecordDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.type.PrimitiveType;
+import com.github.javaparser.ast.type.Type;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * 从方法体中提取方法调用（CALLS）和字段读写（READS/WRITES）
+ * 解析时只能确定调用目标所属类型在源码中写出的名字（局部变量、参数、字段的声明类型，或静态调用的类名），
+ * 这些引用记录到文件贡献中，等所有类都已知后在全局解析阶段确定目标节点。
+ * 只依据声明类型，不做表达式类型推断：链式调用等无法确定接收者类型的调用会被跳过。
+ * 写出的类型名是外围类型中的成员类型时，在提取时就换成二进制名，不再留给全局解析。
+ * 方法调用同时记录实参类型提示（见ArgumentTypes），用于在参数个数相同的重载中选择。
+ */
+class CallGraphExtractor {
+    private final FileContribution contribution;
+    private final String className;
+    // 外围类型中的成员类型名 -> 二进制名，不是成员类型时返回null
+    private final UnaryOperator<String> memberTypes;
+
+    // 所在类中声明的字段（含枚举常量和记录类的组件）：字段名 -> 声明类型（非类/接口类型时为null）
+    private final Map<String, String> fieldTypes = new HashMap<>();
+    // 字段名 -> 实参类型提示写法的声明类型（含基本类型和数组）
+    private final Map<String, String> fieldHints = new HashMap<>();
+
+    CallGraphExtractor(FileContribution contribution, String className, TypeDeclaration<?> typeDecl,
+                       UnaryOperator<String> memberTypes) {
+        this.contribution = contribution;
+        this.className = className;
+        this.memberTypes = memberTypes;
+        for (FieldDeclaration field : typeDecl.getFields()) {
+            for (VariableDeclarator var : field.getVariables()) {
+                fieldTypes.put(var.getNameAsString(), declaredTypeName(var.getType()));
+                fieldHints.put(var.getNameAsString(), typeHint(var.getType()));
+            }
+        }
+        if (typeDecl instanceof EnumDeclaration enumDecl) {
+            for (EnumConstantDeclaration constant : enumDecl.getEntries()) {
+                fieldTypes.put(constant.getNameAsString(), enumDecl.getNameAsString());
+                fieldHints.put(constant.getNameAsString(), enumDecl.getNameAsString());
+            }
+        } else if (typeDecl instanceof RecordDeclaration recordDecl) {
+            for (Parameter component : recordDecl.getParameters()) {
+                fieldTypes.put(component.getNameAsString(), declaredTypeName(component.getType()));
+                fieldHints.put(component.getNameAsString(), typeHint(component.getType()));
+            }
+        }
+    }
+
+    /**
+     * 提取单个方法体中的成员引用，同一方法内重复的引用只记录一次
+     * 方法体只遍历一次：遍历时收集局部变量、方法调用和字段访问，局部变量收集完后再确定各引用的接收者类型。
+     */
+    void extract(MethodDeclaration method, String methodName) {
+        Optional<BlockStmt> body = method.getBody();
+        if (body.isEmpty()) {
+            return;
+        }
+
+        // 局部变量和参数：名称 -> 声明类型，不区分块作用域；localHints为实参类型提示写法的声明类型
+        Map<String, String> locals = new HashMap<>();
+        Map<String, String> localHints = new HashMap<>();
+        for (Parameter parameter : method.getParameters()) {
+            locals.put(parameter.getNameAsString(), declaredTypeName(parameter.getType()));
+            localHints.put(parameter.getNameAsString(), parameterHint(parameter));
+        }
+        List<MethodCallExpr> calls = new ArrayList<>();
+        List<NameExpr> names = new ArrayList<>();
+        List<FieldAccessExpr> fieldAccesses = new ArrayList<>();
+        body.get().walk(node -> {
+            if (node instanceof MethodCallExpr call) {
+                calls.add(call);
+            } else if (node instanceof NameExpr nameExpr) {
+                names.add(nameExpr);
+            } else if (node instanceof FieldAccessExpr fieldAccess) {
+                fieldAccesses.add(fieldAccess);
+            } else if (node instanceof Parameter parameter) {
+                locals.put(parameter.getNameAsString(), declaredTypeName(parameter.getType()));
+                localHints.put(parameter.getNameAsString(), parameterHint(parameter));
+            } else if (node instanceof VariableDeclarator var) {
+                locals.put(var.getNameAsString(), declaredTypeName(var.getType()));
+                localHints.put(var.getNameAsString(), typeHint(var.getType()));
+            }
+        });
+
+        MethodScope scope = new MethodScope(methodName, locals, localHints);
+
+        // 方法调用
+        for (MethodCallExpr call : calls) {
+            Owner owner = call.getScope().map(scope::ownerOf).orElse(Owner.SELF);
+            if (owner != null) {
+                List<String> hints = new ArrayList<>();
+                for (Expression argument : call.getArguments()) {
+                    hints.add(scope.hintOf(argument));
+                }
+                scope.record(owner, call.getNameAsString(), call.getArguments().size(), String.join(",", hints),
+                        Edge.EdgeType.CALLS);
+            }
+        }
+
+        // 直接以名称访问的字段（本类或继承的字段）
+        for (NameExpr nameExpr : names) {
+            String name = nameExpr.getNameAsString();
+            if (locals.containsKey(name) || (!fieldTypes.containsKey(name) && looksLikeTypeName(name))) {
+                continue;
+            }
+            scope.recordAccess(Owner.SELF, name, nameExpr);
+        }
+
+        // 限定访问的字段：this.x、obj.x、Type.X
+        for (FieldAccessExpr fieldAccess : fieldAccesses) {
+            Owner owner = scope.ownerOf(fieldAccess.getScope());
+            if (owner != null) {
+                scope.recordAccess(owner, fieldAccess.getNameAsString(), fieldAccess);
+            }
+        }
+    }
+
+    /**
+     * 类/接口类型返回源码中写出的名称（不含类型参数），其他类型（基本类型、数组、var等）返回null
+     */
+    private static String declaredTypeName(Type type) {
+        return type.isClassOrInterfaceType() ? type.asClassOrInterfaceType().getNameWithScope() : null;
+    }
+
+    /**
+     * 声明类型的实参类型提示写法：基本类型为描述符字母，类/接口类型为简单名，数组加 "[]" 后缀，var等为 "?"
+     */
+    private static String typeHint(Type type) {
+        if (type.isArrayType()) {
+            return typeHint(type.asArrayType().getComponentType()) + "[]";
+        }
+        if (type.isPrimitiveType()) {
+            return primitiveHint(type.asPrimitiveType().getType());
+        }
+        return type.isClassOrInterfaceType() ? type.asClassOrInterfaceType().getNameAsString() : ArgumentTypes.UNKNOWN;
+    }
+
+    private static String parameterHint(Parameter parameter) {
+        return typeHint(parameter.getType()) + (parameter.isVarArgs() ? "[]" : "");
+    }
+
+    private static String primitiveHint(PrimitiveType.Primitive primitive) {
+        return switch (primitive) {
+            case BOOLEAN -> "Z";
+            case CHAR -> "C";
+            case BYTE -> "B";
+            case SHORT -> "S";
+            case INT -> "I";
+            case LONG -> "J";
+            case FLOAT -> "F";
+            case DOUBLE -> "D";
+        };
+    }
+
+    private static boolean looksLikeTypeName(String name) {
+        return !name.isEmpty() && Character.isUpperCase(name.charAt(0));
+    }
+
+    /**
+     * 成员所属的类型：SELF表示所在类（沿继承链查找），SUPER表示所在类的父类型，否则为源码中写出的类型名
+     * superOwner为true时查找从该类型的直接父类型开始，不包括该类型本身。
+     */
+    private static final class Owner {
+        static final Owner SELF = new Owner(null, false);
+        static final Owner SUPER = new Owner(null, true);
+
+        private final String writtenName;
+        private final boolean superOwner;
+
+        Owner(String writtenName) {
+            this(writtenName, false);
+        }
+
+        Owner(String writtenName, boolean superOwner) {
+            this.writtenName = writtenName;
+            this.superOwner = superOwner;
+        }
+    }
+
+    /**
+     * 单个方法的提取状态
+     */
+    private final class MethodScope {
+        private final String methodName;
+        private final Map<String, String> locals;
+        private final Map<String, String> localHints;
+        private final Set<String> seen = new HashSet<>();
+
+        MethodScope(String methodName, Map<String, String> locals, Map<String, String> localHints) {
+            this.methodName = methodName;
+            this.locals = locals;
+            this.localHints = localHints;
+        }
+
+        /**
+         * 实参表达式的类型提示，只看字面量、变量和字段的声明类型、new表达式和强制类型转换，其他为 "?"
+         */
+        String hintOf(Expression argument) {
+            if (argument.isEnclosedExpr()) {
+                return hintOf(argument.asEnclosedExpr().getInner());
+            }
+            if (argument.isStringLiteralExpr() || argument.isTextBlockLiteralExpr()) {
+                return "String";
+            }
+            if (argument.isIntegerLiteralExpr()) {
+                return "I";
+            }
+            if (argument.isLongLiteralExpr()) {
+                return "J";
+            }
+            if (argument.isCharLiteralExpr()) {
+                return "C";
+            }
+            if (argument.isDoubleLiteralExpr()) {
+                String value = argument.asDoubleLiteralExpr().getValue();
+                return value.endsWith("f") || value.endsWith("F") ? "F" : "D";
+            }
+            if (argument.isBooleanLiteralExpr() || argument.isInstanceOfExpr()) {
+                return "Z";
+            }
+            if (argument.isNameExpr()) {
+                String name = argument.asNameExpr().getNameAsString();
+                if (localHints.containsKey(name)) {
+                    return localHints.get(name);
+                }
+                return fieldHints.getOrDefault(name, ArgumentTypes.UNKNOWN);
+            }
+            if (argument.isObjectCreationExpr()) {
+                return argument.asObjectCreationExpr().getType().getNameAsString();
+            }
+            if (argument.isArrayCreationExpr()) {
+                return typeHint(argument.asArrayCreationExpr().createdType());
+            }
+            if (argument.isCastExpr()) {
+                return typeHint(argument.asCastExpr().getType());
+            }
+            if (argument.isThisExpr() && argument.asThisExpr().getTypeName().isEmpty()) {
+                return className.substring(Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1);
+            }
+            if (argument.isBinaryExpr()) {
+                BinaryExpr binary = argument.asBinaryExpr();
+                return switch (binary.getOperator()) {
+                    case PLUS -> hintOf(binary.getLeft()).equals("String") || hintOf(binary.getRight()).equals("String")
+                            ? "String" : ArgumentTypes.UNKNOWN;
+                    case OR, AND, EQUALS, NOT_EQUALS, LESS, GREATER, LESS_EQUALS, GREATER_EQUALS -> "Z";
+                    default -> ArgumentTypes.UNKNOWN;
+                };
+            }
+            if (argument.isUnaryExpr() && argument.asUnaryExpr().getOperator() == UnaryExpr.Operator.LOGICAL_COMPLEMENT) {
+                return "Z";
+            }
+            return ArgumentTypes.UNKNOWN;
+        }
+
+        /**
+         * 确定接收者表达式的类型，无法确定时返回null
+         */
+        Owner ownerOf(Expression scope) {
+            if (scope.isThisExpr()) {
+                return scope.asThisExpr().getTypeName().map(name -> new Owner(name.asString())).orElse(Owner.SELF);
+            }
+            if (scope.isSuperExpr()) {
+                return scope.asSuperExpr().getTypeName().map(name -> qualifiedSuper(name.asString()))
+                        .orElse(Owner.SUPER);
+            }
+            if (scope.isNameExpr()) {
+                String name = scope.asNameExpr().getNameAsString();
+                if (locals.containsKey(name)) {
+                    return typed(locals.get(name));
+                }
+                if (fieldTypes.containsKey(name)) {
+                    return typed(fieldTypes.get(name));
+                }
+                // 静态调用或静态字段访问：Type.method()、Type.FIELD
+                return looksLikeTypeName(name) ? new Owner(name) : null;
+            }
+            if (scope.isFieldAccessExpr()) {
+                FieldAccessExpr fieldAccess = scope.asFieldAccessExpr();
+                if (fieldAccess.getScope().isThisExpr()) {
+                    return typed(fieldTypes.get(fieldAccess.getNameAsString()));
+                }
+                // 带包名或外层类的类型名：a.b.Type.method()、Outer.Inner.method()
+                if (looksLikeTypeName(fieldAccess.getNameAsString()) && isQualifiedName(fieldAccess)) {
+                    return new Owner(fieldAccess.toString());
+                }
+                return null;
+            }
+            if (scope.isObjectCreationExpr()) {
+                return new Owner(scope.asObjectCreationExpr().getType().getNameWithScope());
+            }
+            return null;
+        }
+
+        /**
+         * T.super.x：T是外围类时从T的父类型开始查找；否则T是直接实现的接口（调用接口的默认方法），从T本身开始查找
+         */
+        private Owner qualifiedSuper(String typeName) {
+            String simpleName = typeName.substring(typeName.lastIndexOf('.') + 1);
+            int end = className.length();
+            while (end > 0) {
+                int start = Math.max(className.lastIndexOf('$', end - 1), className.lastIndexOf('.', end - 1)) + 1;
+                if (className.substring(start, end).equals(simpleName)) {
+                    return new Owner(className.substring(0, end), true);
+                }
+                if (start == 0 || className.charAt(start - 1) == '.') {
+                    break;
+                }
+                end = start - 1;
+            }
+            return new Owner(typeName);
+        }
+
+        private Owner typed(String typeName) {
+            return typeName == null ? null : new Owner(typeName);
+        }
+
+        private boolean isQualifiedName(FieldAccessExpr fieldAccess) {
+            Expression scope = fieldAccess.getScope();
+            while (scope.isFieldAccessExpr()) {
+                scope = scope.asFieldAccessExpr().getScope();
+            }
+            return scope.isNameExpr() && !locals.containsKey(scope.asNameExpr().getNameAsString())
+                    && !fieldTypes.containsKey(scope.asNameExpr().getNameAsString());
+        }
+
+        /**
+         * 记录字段访问：作为赋值目标时是写入，复合赋值和自增自减同时是读取和写入
+         */
+        void recordAccess(Owner owner, String fieldName, Expression access) {
+            Node parent = access.getParentNode().orElse(null);
+            if (parent instanceof AssignExpr assign && assign.getTarget() == access) {
+                record(owner, fieldName, 0, "", Edge.EdgeType.WRITES);
+                if (assign.getOperator() != AssignExpr.Operator.ASSIGN) {
+                    record(owner, fieldName, 0, "", Edge.EdgeType.READS);
+                }
+            } else if (parent instanceof UnaryExpr unary && isIncrementOrDecrement(unary.getOperator())) {
+                record(owner, fieldName, 0, "", Edge.EdgeType.WRITES);
+                record(owner, fieldName, 0, "", Edge.EdgeType.READS);
+            } else {
+                record(owner, fieldName, 0, "", Edge.EdgeType.READS);
+            }
+        }
+
+        /**
+         * 记录成员引用；方法调用同时记录实参个数和实参类型提示，全局解析时据此在重载中选择
+         */
+        void record(Owner owner, String memberName, int arity, String argumentTypes, Edge.EdgeType type) {
+            String ownerName;
+            boolean written = false;
+            if (owner == Owner.SELF || owner == Owner.SUPER) {
+                ownerName = className;
+            } else if (owner.superOwner) {
+                // 限定super的外围类在提取时已确定为二进制名
+                ownerName = owner.writtenName;
+            } else {
+                ownerName = memberTypes.apply(owner.writtenName);
+                written = ownerName == null;
+                if (written) {
+                    ownerName = owner.writtenName;
+                }
+            }
+            if (seen.add(type.ordinal() + (owner.superOwner ? "super:" : "") + ownerName + "#" + memberName + "/" + arity
+                    + ":" + argumentTypes)) {
+                contribution.addMemberReference(methodName, ownerName, written, owner.superOwner, memberName, arity,
+                        argumentTypes, type);
+            }
+        }
+    }
+
+    private static boolean isIncrementOrDecrement(UnaryExpr.Operator operator) {
+        return operator == UnaryExpr.Operator.PREFIX_INCREMENT || operator == UnaryExpr.Operator.PREFIX_DECREMENT
+                || operator == UnaryExpr.Operator.POSTFIX_INCREMENT || operator == UnaryExpr.Operator.POSTFIX_DECREMENT;
+    }
+}
@@ -0,0 +1,696 @@
+package codex.graphbuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 轻量的class文件读取器，作为源码解析之外的另一个前端
+ * 只读取常量池、访问标志、父类和接口、字段表和方法表（以及其中的行号表、异常表和常量值），
+ * 不加载类、不解析方法体，生成与源码解析相同种类的包、类、方法、字段节点和边：
+ * - 类名为二进制名（外部类$内部类），父类和接口在class文件中已经是全限定名，直接生成边，无需全局解析
+ * - 签名由描述符生成，类型都是擦除后的全限定名；方法名带参数描述符（见MethodDescriptor），重载各自成为一个节点
+ * - 方法的行号取自LineNumberTable，类的行号为其全部方法行号的范围；字段没有行号
+ * - class文件本身是文件节点，声明其中的类（DECLARES）；IMPORT边从文件节点指向它引用到的其他包中的类
+ *   （java.lang除外），对应源码中的导入语句
+ * - 枚举常量和记录类的组件是字段，注解类型的元素是方法；隐式的父类型（Enum、Record、Annotation）不生成边
+ * 与源码前端一致，跳过匿名类、局部类、编译器生成的类和成员以及构造器。记录类中编译器生成的
+ * equals/hashCode/toString在class文件中与显式声明的无法区分，会作为方法出现，源码前端中则没有。
+ */
+final class ClassFileReader {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final String DEFAULT_PACKAGE = "(default package)";
+
+    // 常量池标记
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    // 访问标志
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SYNCHRONIZED = 0x0020;
+    private static final int ACC_VOLATILE = 0x0040;
+    private static final int ACC_BRIDGE = 0x0040;
+    private static final int ACC_TRANSIENT = 0x0080;
+    private static final int ACC_VARARGS = 0x0080;
+    private static final int ACC_NATIVE = 0x0100;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+    private static final int ACC_STRICT = 0x0800;
+    private static final int ACC_SYNTHETIC = 0x1000;
+    private static final int ACC_ANNOTATION = 0x2000;
+    private static final int ACC_ENUM = 0x4000;
+    private static final int ACC_MODULE = 0x8000;
+
+    private final byte[] bytes;
+    private final String fileName;
+    private int position;
+
+    // 常量池中每一项标记所在的偏移，以及已解码的UTF8常量
+    private int[] constants;
+    private String[] strings;
+
+    private ClassFileReader(byte[] bytes, String fileName) {
+        this.bytes = bytes;
+        this.fileName = fileName;
+    }
+
+    /**
+     * 读取一个class文件，返回它对图的贡献，fileName是文件节点的名称；格式错误时抛出IllegalArgumentException
+     */
+    static FileContribution read(byte[] bytes, String fileName) {
+        try {
+            return new ClassFileReader(bytes, fileName).readClass();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("class文件不完整", e);
+        }
+    }
+
+    private FileContribution readClass() {
+        if (u4() != MAGIC) {
+            throw new IllegalArgumentException("不是class文件");
+        }
+        position += 4; // 次版本号和主版本号
+        readConstantPool();
+
+        int access = u2();
+        String internalName = classNameAt(u2());
+        int superIndex = u2();
+        String superName = superIndex == 0 ? null : classNameAt(superIndex);
+        String[] interfaces = new String[u2()];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = classNameAt(u2());
+        }
+        List<Member> fields = readMembers(false);
+        List<Member> methods = readMembers(true);
+
+        // 类的属性中只关心InnerClasses和Record：内部类的真实修饰符和简单名都记录在InnerClasses中
+        String simpleName = null;
+        boolean anonymous = false;
+        StringBuilder recordComponents = null;
+        int attributeCount = u2();
+        for (int i = 0; i < attributeCount; i++) {
+            String attribute = utf8(u2());
+            int length = u4();
+            int end = position + length;
+            if (attribute.equals("InnerClasses")) {
+                int entries = u2();
+                for (int j = 0; j < entries; j++) {
+                    int inner = u2();
+                    int outer = u2();
+                    int innerName = u2();
+                    int innerAccess = u2();
+                    if (inner != 0 && classNameAt(inner).equals(internalName)) {
+                        // 匿名类没有简单名，局部类没有外部类
+                        anonymous = innerName == 0 || outer == 0;
+                        simpleName = innerName == 0 ? null : utf8(innerName);
+                        access = innerAccess | (access & ACC_SYNTHETIC);
+                    }
+                }
+            } else if (attribute.equals("Record")) {
+                recordComponents = new StringBuilder();
+                int components = u2();
+                for (int j = 0; j < components; j++) {
+                    String name = utf8(u2());
+                    String descriptor = utf8(u2());
+                    if (j > 0) {
+                        recordComponents.append(", ");
+                    }
+                    appendType(recordComponents, descriptor, 0);
+                    recordComponents.append(' ').append(name);
+                    int componentAttributes = u2();
+                    for (int k = 0; k < componentAttributes; k++) {
+                        position += 2;
+                        position += u4();
+                    }
+                }
+            }
+            position = end;
+        }
+
+        int slash = internalName.lastIndexOf('/');
+        String packageName = slash < 0 ? DEFAULT_PACKAGE : internalName.substring(0, slash).replace('/', '.');
+        FileContribution contribution = new FileContribution();
+        contribution.addPackage(packageName);
+        if (anonymous || (access & (ACC_SYNTHETIC | ACC_MODULE)) != 0) {
+            return contribution;
+        }
+
+        boolean isInterface = (access & ACC_INTERFACE) != 0;
+        boolean isAnnotation = (access & ACC_ANNOTATION) != 0;
+        boolean isEnum = (access & ACC_ENUM) != 0;
+        boolean isRecord = recordComponents != null && "java/lang/Record".equals(superName);
+        String className = internalName.replace('/', '.');
+        if (simpleName == null) {
+            simpleName = internalName.substring(slash + 1);
+        }
+        contribution.addClass(className);
+        contribution.addEdge(packageName, className, Edge.EdgeType.PACKAGE_CONTAINS);
+        contribution.addFile(fileName);
+        contribution.addEdge(fileName, className, Edge.EdgeType.DECLARES);
+
+        // 接口在class文件中的父类总是Object，它继承的接口记为EXTENDS；枚举隐式继承的Enum、记录类隐式继承的Record
+        // 和注解类型隐式继承的Annotation不生成边
+        List<String> extendsTypes = new ArrayList<>();
+        List<String> implementsTypes = new ArrayList<>();
+        if (isAnnotation) {
+            for (String type : interfaces) {
+                if (!type.equals("java/lang/annotation/Annotation")) {
+                    extendsTypes.add(type.replace('/', '.'));
+                }
+            }
+        } else if (isInterface) {
+            for (String type : interfaces) {
+                extendsTypes.add(type.replace('/', '.'));
+            }
+        } else {
+            if (superName != null && !superName.equals("java/lang/Object")
+                    && !(isEnum && superName.equals("java/lang/Enum")) && !isRecord) {
+                extendsTypes.add(superName.replace('/', '.'));
+            }
+            for (String type : interfaces) {
+                implementsTypes.add(type.replace('/', '.'));
+            }
+        }
+        for (String type : extendsTypes) {
+            contribution.addEdge(className, type, Edge.EdgeType.EXTENDS);
+        }
+        for (String type : implementsTypes) {
+            contribution.addEdge(className, type, Edge.EdgeType.IMPLEMENTS);
+        }
+
+        String packagePrefix = slash < 0 ? "" : internalName.substring(0, slash + 1);
+        Set<String> referencedTypes = new LinkedHashSet<>();
+        collectReferencedTypes(referencedTypes);
+
+        int firstLine = Integer.MAX_VALUE;
+        int lastLine = 0;
+        for (Member method : methods) {
+            if (method.firstLine > 0) {
+                firstLine = Math.min(firstLine, method.firstLine);
+                lastLine = Math.max(lastLine, method.lastLine);
+            }
+            if (!isDeclaredMethod(method, internalName, isEnum)) {
+                continue;
+            }
+            String methodName = className + "." + MethodDescriptor.fromDescriptor(method.name, method.descriptor);
+            contribution.addMethod(methodName);
+            contribution.addEdge(className, methodName, Edge.EdgeType.CONTAINS_METHOD);
+            contribution.addStringProperty(methodName, PropertyStore.Column.SIGNATURE,
+                    methodSignature(method, isInterface));
+            if (method.firstLine > 0) {
+                contribution.addIntProperty(methodName, PropertyStore.Column.START_LINE, method.firstLine);
+                contribution.addIntProperty(methodName, PropertyStore.Column.END_LINE, method.lastLine);
+            }
+            collectDescriptorTypes(method.descriptor, referencedTypes);
+            for (String exception : method.exceptions) {
+                referencedTypes.add(exception);
+            }
+        }
+
+        for (Member field : fields) {
+            if ((field.access & ACC_SYNTHETIC) != 0) {
+                continue;
+            }
+            String fieldName = className + "." + field.name;
+            contribution.addField(fieldName);
+            contribution.addEdge(className, fieldName, Edge.EdgeType.CONTAINS_FIELD);
+            contribution.addStringProperty(fieldName, PropertyStore.Column.SIGNATURE,
+                    fieldSignature(field, isInterface));
+            collectDescriptorTypes(field.descriptor, referencedTypes);
+        }
+
+        contribution.addStringProperty(className, PropertyStore.Column.SIGNATURE,
+                classSignature(access, simpleName, isAnnotation ? "@interface" : isInterface ? "interface"
+                                : isEnum ? "enum" : isRecord ? "record" : "class",
+                        isRecord ? "(" + recordComponents + ")" : "", extendsTypes, implementsTypes));
+        if (lastLine > 0) {
+            contribution.addIntProperty(className, PropertyStore.Column.START_LINE, firstLine);
+            contribution.addIntProperty(className, PropertyStore.Column.END_LINE, lastLine);
+        }
+
+        // 引用到的其他包中的类相当于源码中的导入；同包的类和java.lang中的类不需要导入
+        for (String type : referencedTypes) {
+            int typeSlash = type.lastIndexOf('/');
+            String typePackage = typeSlash < 0 ? "" : type.substring(0, typeSlash + 1);
+            if (!typePackage.equals(packagePrefix) && !typePackage.equals("java/lang/")) {
+                contribution.addEdge(fileName, type.replace('/', '.'), Edge.EdgeType.IMPORT);
+            }
+        }
+        return contribution;
+    }
+
+    /**
+     * 跳过编译器生成的方法（桥接方法、lambda等）、构造器、静态初始化块以及枚举隐式声明的values/valueOf
+     */
+    private static boolean isDeclaredMethod(Member method, String internalName, boolean isEnum) {
+        if ((method.access & (ACC_SYNTHETIC | ACC_BRIDGE)) != 0 || method.name.startsWith("<")) {
+            return false;
+        }
+        if (isEnum && (method.access & ACC_STATIC) != 0) {
+            return !(method.name.equals("values") && method.descriptor.equals("()[L" + internalName + ";"))
+                    && !(method.name.equals("valueOf")
+                    && method.descriptor.equals("(Ljava/lang/String;)L" + internalName + ";"));
+        }
+        return true;
+    }
+
+    private void readConstantPool() {
+        int count = u2();
+        constants = new int[count];
+        strings = new String[count];
+        for (int i = 1; i < count; i++) {
+            constants[i] = position;
+            int tag = u1();
+            switch (tag) {
+                case CONSTANT_UTF8 -> {
+                    int length = u2();
+                    position += length;
+                }
+                case CONSTANT_CLASS, CONSTANT_STRING, CONSTANT_METHOD_TYPE, CONSTANT_MODULE, CONSTANT_PACKAGE ->
+                        position += 2;
+                case CONSTANT_METHOD_HANDLE -> position += 3;
+                case CONSTANT_INTEGER, CONSTANT_FLOAT, CONSTANT_FIELDREF, CONSTANT_METHODREF,
+                     CONSTANT_INTERFACE_METHODREF, CONSTANT_NAME_AND_TYPE, CONSTANT_DYNAMIC,
+                     CONSTANT_INVOKE_DYNAMIC -> position += 4;
+                case CONSTANT_LONG, CONSTANT_DOUBLE -> {
+                    // 占两个常量池项
+                    position += 8;
+                    i++;
+                }
+                default -> throw new IllegalArgumentException("未知的常量池标记 " + tag + "，位于第 " + i + " 项");
+            }
+        }
+    }
+
+    /**
+     * 读取字段表或方法表；方法只读取Code中的LineNumberTable和Exceptions，字段只读取ConstantValue
+     */
+    private List<Member> readMembers(boolean methods) {
+        int count = u2();
+        List<Member> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Member member = new Member(u2(), utf8(u2()), utf8(u2()));
+            int attributeCount = u2();
+            for (int j = 0; j < attributeCount; j++) {
+                String attribute = utf8(u2());
+                int length = u4();
+                int end = position + length;
+                if (methods && attribute.equals("Code")) {
+                    readCode(member);
+                } else if (methods && attribute.equals("Exceptions")) {
+                    String[] exceptions = new String[u2()];
+                    for (int k = 0; k < exceptions.length; k++) {
+                        exceptions[k] = classNameAt(u2());
+                    }
+                    member.exceptions = exceptions;
+                } else if (!methods && attribute.equals("ConstantValue")) {
+                    member.constantValue = u2();
+                }
+                position = end;
+            }
+            members.add(member);
+        }
+        return members;
+    }
+
+    private void readCode(Member method) {
+        position += 4; // max_stack、max_locals
+        int codeLength = u4();
+        position += codeLength; // 字节码
+        int exceptionTableLength = u2();
+        position += exceptionTableLength * 8; // 异常表
+        int attributeCount = u2();
+        for (int i = 0; i < attributeCount; i++) {
+            String attribute = utf8(u2());
+            int length = u4();
+            int end = position + length;
+            if (attribute.equals("LineNumberTable")) {
+                int entries = u2();
+                for (int j = 0; j < entries; j++) {
+                    position += 2; // start_pc
+                    int line = u2();
+                    if (method.firstLine == 0 || line < method.firstLine) {
+                        method.firstLine = line;
+                    }
+                    method.lastLine = Math.max(method.lastLine, line);
+                }
+            }
+            position = end;
+        }
+    }
+
+    /**
+     * 常量池中所有CONSTANT_Class引用的类（数组取元素类型），内部名形式
+     */
+    private void collectReferencedTypes(Set<String> types) {
+        for (int i = 1; i < constants.length; i++) {
+            int offset = constants[i];
+            if (offset == 0 || (bytes[offset] & 0xFF) != CONSTANT_CLASS) {
+                continue;
+            }
+            String name = utf8(u2At(offset + 1));
+            if (name.startsWith("[")) {
+                collectDescriptorTypes(name, types);
+            } else {
+                types.add(name);
+            }
+        }
+    }
+
+    /**
+     * 描述符中出现的所有类（内部名形式）
+     */
+    private static void collectDescriptorTypes(String descriptor, Set<String> types) {
+        int start = descriptor.indexOf('L');
+        while (start >= 0) {
+            int end = descriptor.indexOf(';', start);
+            types.add(descriptor.substring(start + 1, end));
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    /**
+     * 类签名，keyword为class、interface、@interface、enum或record，记录类的组件列表写在类名之后
+     */
+    private String classSignature(int access, String simpleName, String keyword, String components,
+                                  List<String> extendsTypes, List<String> implementsTypes) {
+        StringBuilder signature = new StringBuilder();
+        // 接口隐含abstract和static，枚举和记录类隐含final和static，不写出
+        int modifiers = access & (ACC_PUBLIC | ACC_PROTECTED | ACC_PRIVATE | ACC_ABSTRACT | ACC_STATIC
+                | ACC_FINAL | ACC_STRICT);
+        if ((access & ACC_INTERFACE) != 0) {
+            modifiers &= ~(ACC_ABSTRACT | ACC_STATIC);
+        } else if (!keyword.equals("class")) {
+            modifiers &= ~(ACC_ABSTRACT | ACC_STATIC | ACC_FINAL);
+        }
+        appendModifiers(signature, modifiers);
+        signature.append(keyword).append(' ').append(simpleName).append(components);
+        appendTypeList(signature, " extends ", extendsTypes);
+        appendTypeList(signature, " implements ", implementsTypes);
+        return signature.toString();
+    }
+
+    private String methodSignature(Member method, boolean isInterface) {
+        StringBuilder signature = new StringBuilder();
+        int modifiers = method.access & (ACC_PUBLIC | ACC_PROTECTED | ACC_PRIVATE | ACC_ABSTRACT | ACC_STATIC
+                | ACC_FINAL | ACC_SYNCHRONIZED | ACC_NATIVE | ACC_STRICT);
+        if (isInterface) {
+            // 接口方法隐含public，抽象方法隐含abstract；有方法体的实例方法是default方法
+            boolean isDefault = (modifiers & (ACC_ABSTRACT | ACC_STATIC | ACC_PRIVATE)) == 0;
+            modifiers &= ~(ACC_PUBLIC | ACC_ABSTRACT);
+            appendModifiers(signature, modifiers);
+            if (isDefault) {
+                signature.append("default ");
+            }
+        } else {
+            appendModifiers(signature, modifiers);
+        }
+
+        String descriptor = method.descriptor;
+        int close = descriptor.indexOf(')');
+        appendType(signature, descriptor, close + 1);
+        signature.append(' ').append(method.name).append('(');
+        int index = 1;
+        boolean first = true;
+        while (index < close) {
+            if (!first) {
+                signature.append(", ");
+            }
+            first = false;
+            int next = skipType(descriptor, index);
+            if (next == close && (method.access & ACC_VARARGS) != 0 && descriptor.charAt(index) == '[') {
+                appendType(signature, descriptor, index + 1);
+                signature.append("...");
+            } else {
+                appendType(signature, descriptor, index);
+            }
+            index = next;
+        }
+        signature.append(')');
+        if (method.exceptions.length > 0) {
+            signature.append(" throws ");
+            for (int i = 0; i < method.exceptions.length; i++) {
+                if (i > 0) {
+                    signature.append(", ");
+                }
+                signature.append(method.exceptions[i].replace('/', '.'));
+            }
+        }
+        return signature.toString();
+    }
+
+    private String fieldSignature(Member field, boolean isInterface) {
+        StringBuilder signature = new StringBuilder();
+        int modifiers = field.access & (ACC_PUBLIC | ACC_PROTECTED | ACC_PRIVATE | ACC_STATIC | ACC_FINAL
+                | ACC_VOLATILE | ACC_TRANSIENT);
+        if (isInterface) {
+            // 接口字段隐含public static final
+            modifiers &= ~(ACC_PUBLIC | ACC_STATIC | ACC_FINAL);
+        }
+        appendModifiers(signature, modifiers);
+        appendType(signature, field.descriptor, 0);
+        signature.append(' ').append(field.name);
+        if (field.constantValue != 0) {
+            signature.append(" = ");
+            appendConstant(signature, field.constantValue, field.descriptor.charAt(0));
+        }
+        return signature.toString();
+    }
+
+    /**
+     * 按Java源码中的惯用顺序写出修饰符
+     */
+    private static void appendModifiers(StringBuilder signature, int modifiers) {
+        if ((modifiers & ACC_PUBLIC) != 0) signature.append("public ");
+        if ((modifiers & ACC_PROTECTED) != 0) signature.append("protected ");
+        if ((modifiers & ACC_PRIVATE) != 0) signature.append("private ");
+        if ((modifiers & ACC_ABSTRACT) != 0) signature.append("abstract ");
+        if ((modifiers & ACC_STATIC) != 0) signature.append("static ");
+        if ((modifiers & ACC_FINAL) != 0) signature.append("final ");
+        if ((modifiers & ACC_TRANSIENT) != 0) signature.append("transient ");
+        if ((modifiers & ACC_VOLATILE) != 0) signature.append("volatile ");
+        if ((modifiers & ACC_SYNCHRONIZED) != 0) signature.append("synchronized ");
+        if ((modifiers & ACC_NATIVE) != 0) signature.append("native ");
+        if ((modifiers & ACC_STRICT) != 0) signature.append("strictfp ");
+    }
+
+    private static void appendTypeList(StringBuilder signature, String keyword, List<String> types) {
+        if (types.isEmpty()) {
+            return;
+        }
+        signature.append(keyword);
+        for (int i = 0; i < types.size(); i++) {
+            if (i > 0) {
+                signature.append(", ");
+            }
+            signature.append(types.get(i));
+        }
+    }
+
+    /**
+     * 把描述符中从index开始的一个类型写成Java类型名，如 [Ljava/lang/String; 写成 java.lang.String[]
+     */
+    private static void appendType(StringBuilder signature, String descriptor, int index) {
+        int dimensions = 0;
+        while (descriptor.charAt(index) == '[') {
+            dimensions++;
+            index++;
+        }
+        char c = descriptor.charAt(index);
+        switch (c) {
+            case 'B' -> signature.append("byte");
+            case 'C' -> signature.append("char");
+            case 'D' -> signature.append("double");
+            case 'F' -> signature.append("float");
+            case 'I' -> signature.append("int");
+            case 'J' -> signature.append("long");
+            case 'S' -> signature.append("short");
+            case 'Z' -> signature.append("boolean");
+            case 'V' -> signature.append("void");
+            case 'L' -> {
+                int end = descriptor.indexOf(';', index);
+                for (int i = index + 1; i < end; i++) {
+                    char ch = descriptor.charAt(i);
+                    signature.append(ch == '/' ? '.' : ch);
+                }
+            }
+            default -> throw new IllegalArgumentException("无效的描述符: " + descriptor);
+        }
+        for (int i = 0; i < dimensions; i++) {
+            signature.append("[]");
+        }
+    }
+
+    /**
+     * 返回描述符中从index开始的一个类型之后的位置
+     */
+    private static int skipType(String descriptor, int index) {
+        while (descriptor.charAt(index) == '[') {
+            index++;
+        }
+        return descriptor.charAt(index) == 'L' ? descriptor.indexOf(';', index) + 1 : index + 1;
+    }
+
+    /**
+     * 写出字段的常量值，按字段类型还原成源码中的字面量形式
+     */
+    private void appendConstant(StringBuilder signature, int index, char type) {
+        int offset = constants[index];
+        int tag = bytes[offset] & 0xFF;
+        switch (tag) {
+            case CONSTANT_INTEGER -> {
+                int value = s4At(offset + 1);
+                switch (type) {
+                    case 'Z' -> signature.append(value != 0);
+                    case 'C' -> appendCharLiteral(signature, (char) value);
+                    default -> signature.append(value);
+                }
+            }
+            case CONSTANT_LONG -> signature.append(((long) s4At(offset + 1) << 32)
+                    | (s4At(offset + 5) & 0xFFFFFFFFL)).append('L');
+            case CONSTANT_FLOAT -> signature.append(Float.intBitsToFloat(s4At(offset + 1))).append('f');
+            case CONSTANT_DOUBLE -> signature.append(Double.longBitsToDouble(((long) s4At(offset + 1) << 32)
+                    | (s4At(offset + 5) & 0xFFFFFFFFL)));
+            case CONSTANT_STRING -> appendStringLiteral(signature, utf8(u2At(offset + 1)));
+            default -> throw new IllegalArgumentException("无效的常量值，常量池第 " + index + " 项");
+        }
+    }
+
+    private static void appendCharLiteral(StringBuilder signature, char value) {
+        signature.append('\'');
+        appendEscaped(signature, value, '\'');
+        signature.append('\'');
+    }
+
+    private static void appendStringLiteral(StringBuilder signature, String value) {
+        signature.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            appendEscaped(signature, value.charAt(i), '"');
+        }
+        signature.append('"');
+    }
+
+    private static void appendEscaped(StringBuilder signature, char c, char quote) {
+        switch (c) {
+            case '\n' -> signature.append("\\n");
+            case '\r' -> signature.append("\\r");
+            case '\t' -> signature.append("\\t");
+            case '\b' -> signature.append("\\b");
+            case '\f' -> signature.append("\\f");
+            case '\\' -> signature.append("\\\\");
+            default -> {
+                if (c == quote) {
+                    signature.append('\\').append(c);
+                } else if (c < 0x20 || c == 0x7F) {
+                    signature.append(String.format("\\u%04x", (int) c));
+                } else {
+                    signature.append(c);
+                }
+            }
+        }
+    }
+
+    private String classNameAt(int index) {
+        return utf8(u2At(constants[index] + 1));
+    }
+
+    /**
+     * 解码常量池中的UTF8常量（class文件使用的modified UTF-8），结果缓存
+     */
+    private String utf8(int index) {
+        String value = strings[index];
+        if (value != null) {
+            return value;
+        }
+        int offset = constants[index];
+        int length = u2At(offset + 1);
+        int start = offset + 3;
+        int end = start + length;
+        char[] chars = new char[length];
+        int count = 0;
+        int i = start;
+        // 纯ASCII的快速路径
+        while (i < end && bytes[i] > 0) {
+            chars[count++] = (char) bytes[i++];
+        }
+        while (i < end) {
+            int b = bytes[i++] & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (bytes[i++] & 0x3F));
+            } else {
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F));
+            }
+        }
+        value = new String(chars, 0, count);
+        strings[index] = value;
+        return value;
+    }
+
+    private int u1() {
+        return bytes[position++] & 0xFF;
+    }
+
+    private int u2() {
+        int value = u2At(position);
+        position += 2;
+        return value;
+    }
+
+    private int u4() {
+        int value = s4At(position);
+        position += 4;
+        return value;
+    }
+
+    private int u2At(int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private int s4At(int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    /**
+     * 字段表或方法表中的一项
+     */
+    private static final class Member {
+        private static final String[] NO_EXCEPTIONS = new String[0];
+
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private String[] exceptions = NO_EXCEPTIONS;
+        private int constantValue;
+        private int firstLine;
+        private int lastLine;
+
+        Member(int access, String name, String descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+    }
+}
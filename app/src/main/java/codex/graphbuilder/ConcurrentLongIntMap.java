@@ -0,0 +1,141 @@
+package codex.graphbuilder;
+
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+
+/**
+ * 分段加锁的long到int映射，用开放寻址的原始数组存储，避免每个条目一个包装对象和哈希表节点
+ * 键不能为-1（用作空槽标记），值不能为负数（-1表示不存在）。
+ */
+class ConcurrentLongIntMap {
+    private static final long EMPTY = -1L;
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    ConcurrentLongIntMap() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * 返回键对应的值，不存在时返回-1
+     */
+    int get(long key) {
+        long hash = mix(key);
+        return segments[segmentOf(hash)].get(key, hash);
+    }
+
+    /**
+     * 返回键对应的值，不存在时在分段锁内调用newValue生成并插入；同一个键的newValue最多调用一次
+     */
+    int computeIfAbsent(long key, IntSupplier newValue) {
+        long hash = mix(key);
+        return segments[segmentOf(hash)].computeIfAbsent(key, hash, newValue);
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 当前占用的槽位数，用于估算内存
+     */
+    long capacity() {
+        long capacity = 0;
+        for (Segment segment : segments) {
+            capacity += segment.capacity();
+        }
+        return capacity;
+    }
+
+    private static int segmentOf(long hash) {
+        return (int) (hash >>> (64 - SEGMENT_BITS));
+    }
+
+    /**
+     * MurmurHash3的64位终结函数
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static class Segment {
+        private long[] keys = newKeys(16);
+        private int[] values = new int[16];
+        private int size;
+
+        synchronized int get(long key, long hash) {
+            int slot = find(keys, key, hash);
+            return keys[slot] == EMPTY ? -1 : values[slot];
+        }
+
+        synchronized int computeIfAbsent(long key, long hash, IntSupplier newValue) {
+            int slot = find(keys, key, hash);
+            if (keys[slot] != EMPTY) {
+                return values[slot];
+            }
+            int value = newValue.getAsInt();
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize();
+                slot = find(keys, key, hash);
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+            return value;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized int capacity() {
+            return keys.length;
+        }
+
+        private void resize() {
+            long[] newKeys = newKeys(keys.length * 2);
+            int[] newValues = new int[newKeys.length];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    int slot = find(newKeys, keys[i], mix(keys[i]));
+                    newKeys[slot] = keys[i];
+                    newValues[slot] = values[i];
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        /**
+         * 键所在的槽位，不存在时返回应插入的空槽位
+         */
+        private static int find(long[] keys, long key, long hash) {
+            int mask = keys.length - 1;
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                long existing = keys[slot];
+                if (existing == EMPTY || existing == key) {
+                    return slot;
+                }
+            }
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package codex.graphbuilder;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * 分段加锁的long集合，用开放寻址的原始数组存储，避免每个元素一个包装对象
+ * 元素不能为-1（用作空槽标记）；边的打包值高32位为非负的起点ID，因此不会出现-1。
+ */
+class ConcurrentLongSet {
+    private static final long EMPTY = -1L;
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    ConcurrentLongSet() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    boolean add(long value) {
+        long hash = mix(value);
+        return segments[segmentOf(hash)].add(value, hash);
+    }
+
+    /**
+     * 批量添加：先按分段归组，每个分段只加锁一次
+     */
+    void addAll(long[] values, int count) {
+        if (count == 1) {
+            add(values[0]);
+            return;
+        }
+        long[] hashes = new long[count];
+        int[] offsets = new int[SEGMENTS + 1];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = mix(values[i]);
+            offsets[segmentOf(hashes[i]) + 1]++;
+        }
+        for (int s = 0; s < SEGMENTS; s++) {
+            offsets[s + 1] += offsets[s];
+        }
+        int[] order = new int[count];
+        int[] cursor = Arrays.copyOf(offsets, SEGMENTS);
+        for (int i = 0; i < count; i++) {
+            order[cursor[segmentOf(hashes[i])]++] = i;
+        }
+        for (int s = 0; s < SEGMENTS; s++) {
+            if (offsets[s] < offsets[s + 1]) {
+                segments[s].addAll(values, hashes, order, offsets[s], offsets[s + 1]);
+            }
+        }
+    }
+
+    boolean contains(long value) {
+        long hash = mix(value);
+        return segments[segmentOf(hash)].contains(value, hash);
+    }
+
+    boolean remove(long value) {
+        long hash = mix(value);
+        return segments[segmentOf(hash)].remove(value, hash);
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 逐段复制快照进行遍历，任意时刻只额外占用一个段的内存
+     */
+    PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int segmentIndex;
+            private long[] current = new long[0];
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                while (position >= current.length) {
+                    if (segmentIndex >= SEGMENTS) {
+                        return false;
+                    }
+                    current = segments[segmentIndex++].snapshot();
+                    position = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current[position++];
+            }
+        };
+    }
+
+    private static int segmentOf(long hash) {
+        return (int) (hash >>> (64 - SEGMENT_BITS));
+    }
+
+    /**
+     * MurmurHash3的64位终结函数
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static class Segment {
+        private long[] table = newTable(16);
+        private int size;
+
+        synchronized boolean add(long value, long hash) {
+            if ((size + 1) * 4L > table.length * 3L) {
+                resize();
+            }
+            if (insert(table, value, hash)) {
+                size++;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void addAll(long[] values, long[] hashes, int[] order, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if ((size + 1) * 4L > table.length * 3L) {
+                    resize();
+                }
+                int index = order[i];
+                if (insert(table, values[index], hashes[index])) {
+                    size++;
+                }
+            }
+        }
+
+        synchronized boolean contains(long value, long hash) {
+            int mask = table.length - 1;
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                long existing = table[slot];
+                if (existing == EMPTY) {
+                    return false;
+                }
+                if (existing == value) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 删除后把同一探测链上的后续元素前移填补空槽，不使用墓碑标记
+         */
+        synchronized boolean remove(long value, long hash) {
+            int mask = table.length - 1;
+            int slot = (int) hash & mask;
+            while (table[slot] != value) {
+                if (table[slot] == EMPTY) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int hole = slot;
+            for (int next = (hole + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+                int home = (int) mix(table[next]) & mask;
+                // 元素的初始槽位不在 (hole, next] 之间时才能前移到空槽
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    table[hole] = table[next];
+                    hole = next;
+                }
+            }
+            table[hole] = EMPTY;
+            size--;
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long[] snapshot() {
+            long[] values = new long[size];
+            int n = 0;
+            for (long value : table) {
+                if (value != EMPTY) {
+                    values[n++] = value;
+                }
+            }
+            return values;
+        }
+
+        private void resize() {
+            long[] newTable = newTable(table.length * 2);
+            for (long value : table) {
+                if (value != EMPTY) {
+                    insert(newTable, value, mix(value));
+                }
+            }
+            table = newTable;
+        }
+
+        private static boolean insert(long[] table, long value, long hash) {
+            int mask = table.length - 1;
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                long existing = table[slot];
+                if (existing == EMPTY) {
+                    table[slot] = value;
+                    return true;
+                }
+                if (existing == value) {
+                    return false;
+                }
+            }
+        }
+
+        private static long[] newTable(int capacity) {
+            long[] table = new long[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package codex.graphbuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 把GraphDelta写成可以用 cypher-shell -f 执行的Cypher脚本
+ * 每条语句用 UNWIND 批量处理至多 BATCH_SIZE 行，顺序为：删除边、删除节点、新增或更新节点、新增边。
+ * 节点按标签和name属性匹配，数据库中应为各标签的name建立索引，否则每行都是全标签扫描。
+ * 新增节点和边都用MERGE，同一个脚本重复执行的结果不变。
+ */
+class CypherDeltaWriter {
+    static final int BATCH_SIZE = 1000;
+
+    private static final NodeKind[] KINDS = NodeKind.values();
+
+    private final SymbolTable symbols;
+    private final PropertyStore properties;
+    private final boolean integerIds;
+
+    CypherDeltaWriter(SymbolTable symbols, PropertyStore properties, boolean integerIds) {
+        this.symbols = symbols;
+        this.properties = properties;
+        this.integerIds = integerIds;
+    }
+
+    /**
+     * 写出一批变化，返回写出的语句数
+     */
+    int write(GraphDelta delta, Path file, String comment) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("// " + comment + "\n");
+            int statements = 0;
+            statements += writeRemovedEdges(out, delta);
+            statements += writeRemovedNodes(out, delta);
+            statements += writeNodes(out, delta);
+            statements += writeAddedEdges(out, delta);
+            return statements;
+        }
+    }
+
+    private int writeRemovedEdges(Writer out, GraphDelta delta) throws IOException {
+        int statements = 0;
+        for (Edge.EdgeType type : Edge.EdgeType.values()) {
+            List<List<String>> rows = newGroups();
+            for (GraphDelta.EdgeChange change : delta.edges(type, -1)) {
+                // 移除时端点已经不是节点的边在数据库中本来就不存在
+                if (change.sourceSpace() < 0 || change.targetSpace() < 0) {
+                    continue;
+                }
+                rows.get(change.sourceSpace() * KINDS.length + change.targetSpace()).add(edgeRow(change.edge()));
+            }
+            statements += writeEdgeGroups(out, type, rows,
+                    "MATCH (a:%s {name: row.s})-[r:%s]->(b:%s {name: row.t}) DELETE r");
+        }
+        return statements;
+    }
+
+    private int writeRemovedNodes(Writer out, GraphDelta delta) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        for (int i = 0; i < KINDS.length; i++) {
+            rows.add(new ArrayList<>());
+        }
+        for (long key : delta.nodes(-1)) {
+            rows.get(GraphDelta.nodeKind(key).ordinal()).add(quote(symbols.name(GraphDelta.nodeId(key))));
+        }
+        int statements = 0;
+        for (NodeKind kind : KINDS) {
+            statements += writeBatches(out, rows.get(kind.ordinal()),
+                    "MATCH (n:" + kind.getLabel() + " {name: row}) DETACH DELETE n");
+        }
+        return statements;
+    }
+
+    /**
+     * 新增的节点和属性有变化的节点：按当前的种类和属性MERGE后SET，没有值的属性设为null即删除
+     */
+    private int writeNodes(Writer out, GraphDelta delta) throws IOException {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (long key : delta.nodes(1)) {
+            ids.add(GraphDelta.nodeId(key));
+        }
+        ids.addAll(delta.propertyNodes());
+
+        List<List<String>> rows = new ArrayList<>();
+        for (int i = 0; i < KINDS.length; i++) {
+            rows.add(new ArrayList<>());
+        }
+        for (int id : ids) {
+            int mask = symbols.kindMask(id);
+            for (NodeKind kind : KINDS) {
+                if ((mask & kind.mask()) != 0) {
+                    rows.get(kind.ordinal()).add(nodeRow(id, kind));
+                }
+            }
+        }
+
+        int statements = 0;
+        for (NodeKind kind : KINDS) {
+            StringBuilder set = new StringBuilder("n.nodeId = row.nodeId");
+            for (PropertyStore.Column column : PropertyStore.columnsFor(kind)) {
+                set.append(", n.").append(column.getHeader()).append(" = row.").append(column.getHeader());
+            }
+            statements += writeBatches(out, rows.get(kind.ordinal()),
+                    "MERGE (n:" + kind.getLabel() + " {name: row.name}) SET " + set);
+        }
+        return statements;
+    }
+
+    private int writeAddedEdges(Writer out, GraphDelta delta) throws IOException {
+        int statements = 0;
+        for (Edge.EdgeType type : Edge.EdgeType.values()) {
+            NodeKind preferredSource = GraphBuilder.preferredSourceKind(type);
+            NodeKind preferredTarget = GraphBuilder.preferredTargetKind(type);
+            List<List<String>> rows = newGroups();
+            for (GraphDelta.EdgeChange change : delta.edges(type, 1)) {
+                int sourceSpace = GraphBuilder.idSpace(symbols.kindMask(EdgeStore.source(change.edge())), preferredSource);
+                int targetSpace = GraphBuilder.idSpace(symbols.kindMask(EdgeStore.target(change.edge())), preferredTarget);
+                // 与CSV导出相同，端点不是节点的边不写出
+                if (sourceSpace < 0 || targetSpace < 0) {
+                    continue;
+                }
+                rows.get(sourceSpace * KINDS.length + targetSpace).add(edgeRow(change.edge()));
+            }
+            statements += writeEdgeGroups(out, type, rows,
+                    "MATCH (a:%s {name: row.s}) MATCH (b:%3$s {name: row.t}) MERGE (a)-[:%2$s]->(b)");
+        }
+        return statements;
+    }
+
+    /**
+     * 每对 (起点ID空间, 终点ID空间) 一组
+     */
+    private static List<List<String>> newGroups() {
+        List<List<String>> groups = new ArrayList<>();
+        for (int i = 0; i < KINDS.length * KINDS.length; i++) {
+            groups.add(new ArrayList<>());
+        }
+        return groups;
+    }
+
+    private static int writeEdgeGroups(Writer out, Edge.EdgeType type, List<List<String>> rows, String pattern)
+            throws IOException {
+        int statements = 0;
+        for (NodeKind sourceKind : KINDS) {
+            for (NodeKind targetKind : KINDS) {
+                List<String> group = rows.get(sourceKind.ordinal() * KINDS.length + targetKind.ordinal());
+                statements += writeBatches(out, group,
+                        String.format(pattern, sourceKind.getLabel(), type, targetKind.getLabel()));
+            }
+        }
+        return statements;
+    }
+
+    private static int writeBatches(Writer out, List<String> rows, String body) throws IOException {
+        int statements = 0;
+        for (int start = 0; start < rows.size(); start += BATCH_SIZE) {
+            out.write("UNWIND [");
+            for (int i = start; i < Math.min(rows.size(), start + BATCH_SIZE); i++) {
+                if (i > start) {
+                    out.write(",\n  ");
+                }
+                out.write(rows.get(i));
+            }
+            out.write("] AS row\n");
+            out.write(body);
+            out.write(";\n");
+            statements++;
+        }
+        return statements;
+    }
+
+    private String edgeRow(long edge) {
+        return "{s: " + quote(symbols.name(EdgeStore.source(edge))) + ", t: "
+                + quote(symbols.name(EdgeStore.target(edge))) + "}";
+    }
+
+    /**
+     * 与CSV导出的列一致：nodeId在整数ID模式下为符号表ID，行号与CSV导入后一样是字符串
+     */
+    private String nodeRow(int id, NodeKind kind) {
+        String name = quote(symbols.name(id));
+        StringBuilder row = new StringBuilder("{name: ").append(name)
+                .append(", nodeId: ").append(integerIds ? Integer.toString(id) : name);
+        for (PropertyStore.Column column : PropertyStore.columnsFor(kind)) {
+            String value = properties.format(id, column);
+            row.append(", ").append(column.getHeader()).append(": ").append(value.isEmpty() ? "null" : quote(value));
+        }
+        return row.append("}").toString();
+    }
+
+    /**
+     * Cypher字符串字面量，单引号包围并转义反斜杠、单引号和换行
+     */
+    static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('\'');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '\'' -> sb.append("\\'");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> sb.append(c);
+            }
+        }
+        return sb.append('\'').toString();
+    }
+}
@@ -40,7 +40,10 @@ public class Edge {
 
     @Override
     public int hashCode() {
-        return Objects.hash(source, target, type);
+        // 避免Objects.hash在每次调用时分配可变参数数组
+        int result = Objects.hashCode(source);
+        result = 31 * result + Objects.hashCode(target);
+        return 31 * result + type.hashCode();
     }
 
     @Override
@@ -54,6 +57,10 @@ public class Edge {
         CONTAINS_FIELD,    // 类包含字段
         EXTENDS,           // 继承关系
         IMPLEMENTS,        // 实现接口关系
-        IMPORT             // 导入关系
+        IMPORT,            // 导入关系
+        CALLS,             // 方法调用方法
+        READS,             // 方法读取字段
+        WRITES,            // 方法写入字段
+        DECLARES           // 文件声明类型
     }
 }
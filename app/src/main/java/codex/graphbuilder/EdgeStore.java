@@ -0,0 +1,168 @@
+package codex.graphbuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按边类型分桶存储的边集合，每条边打包为一个long：高32位为起点ID，低32位为终点ID
+ * 设置了缓冲区预算时改为溢出模式：边先追加到各类型的内存缓冲区，缓冲区总量超过预算时，
+ * 触发溢出的合并线程把每种类型的缓冲区排序去重后写成磁盘上的顺串；读取时再k路归并去重，按打包值升序遍历。
+ * 预算按缓冲的边数 × 8字节计算，不是实测的堆占用。
+ * 溢出模式下contains先归并再在顺串文件上二分查找，每次都要读盘；不支持remove。
+ */
+class EdgeStore {
+    private static final Edge.EdgeType[] TYPES = Edge.EdgeType.values();
+
+    private final ConcurrentLongSet[] buckets;
+
+    // 溢出模式下的各类型集合，未设置缓冲区预算时为null
+    private final SpillingLongSet[] spillBuckets;
+    private final Path spillDirectory;
+    private final long budgetEdges;
+    private final AtomicLong bufferedEdges = new AtomicLong();
+    private final AtomicInteger spills = new AtomicInteger();
+
+    EdgeStore() {
+        buckets = new ConcurrentLongSet[TYPES.length];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ConcurrentLongSet();
+        }
+        spillBuckets = null;
+        spillDirectory = null;
+        budgetEdges = 0;
+    }
+
+    /**
+     * 溢出模式：缓冲的边数 × 8字节超过budgetBytes时写到spillParent下新建的临时目录，进程退出时删除
+     */
+    EdgeStore(Path spillParent, long budgetBytes) throws IOException {
+        Files.createDirectories(spillParent);
+        buckets = null;
+        spillDirectory = Files.createTempDirectory(spillParent, "graph-spill-");
+        spillDirectory.toFile().deleteOnExit();
+        spillBuckets = new SpillingLongSet[TYPES.length];
+        for (int i = 0; i < spillBuckets.length; i++) {
+            spillBuckets[i] = new SpillingLongSet(spillDirectory, TYPES[i].name().toLowerCase(), bufferedEdges);
+        }
+        budgetEdges = Math.max(1, budgetBytes / Long.BYTES);
+    }
+
+    /**
+     * 添加一条边；溢出模式下不判断边是否已存在，总是返回true，重复的边在溢出和归并时去掉
+     */
+    boolean add(Edge.EdgeType type, int source, int target) {
+        if (spillBuckets != null) {
+            spillIfOverBudget(spillBuckets[type.ordinal()].add(pack(source, target)));
+            return true;
+        }
+        return buckets[type.ordinal()].add(pack(source, target));
+    }
+
+    /**
+     * 批量添加同一类型的边，元素为打包后的long
+     */
+    void addAll(Edge.EdgeType type, long[] packedEdges, int count) {
+        if (spillBuckets != null) {
+            spillIfOverBudget(spillBuckets[type.ordinal()].addAll(packedEdges, count));
+            return;
+        }
+        buckets[type.ordinal()].addAll(packedEdges, count);
+    }
+
+    /**
+     * 是否包含给定的边；溢出模式下在归并后的顺串文件上二分查找
+     */
+    boolean contains(Edge.EdgeType type, int source, int target) {
+        if (spillBuckets != null) {
+            return spillBuckets[type.ordinal()].contains(pack(source, target));
+        }
+        return buckets[type.ordinal()].contains(pack(source, target));
+    }
+
+    boolean remove(Edge.EdgeType type, int source, int target) {
+        if (spillBuckets != null) {
+            throw new IllegalStateException("溢出到磁盘的边集合不支持删除边");
+        }
+        return buckets[type.ordinal()].remove(pack(source, target));
+    }
+
+    /**
+     * 某种类型的边数；溢出模式下会先归并该类型的所有顺串
+     */
+    int size(Edge.EdgeType type) {
+        if (spillBuckets != null) {
+            return spillBuckets[type.ordinal()].size();
+        }
+        return buckets[type.ordinal()].size();
+    }
+
+    int size() {
+        int size = 0;
+        for (Edge.EdgeType type : TYPES) {
+            size += size(type);
+        }
+        return size;
+    }
+
+    /**
+     * 遍历某种类型的所有边，元素为打包后的long
+     * 溢出模式下直接从归并后的顺串文件流式读取，按打包值升序。
+     */
+    PrimitiveIterator.OfLong iterator(Edge.EdgeType type) {
+        if (spillBuckets != null) {
+            return spillBuckets[type.ordinal()].iterator();
+        }
+        return buckets[type.ordinal()].iterator();
+    }
+
+    boolean isSpilling() {
+        return spillBuckets != null;
+    }
+
+    /**
+     * 溢出情况，如 "溢出 3 次到 /tmp/graph-spill-123"
+     */
+    String describeSpills() {
+        return "溢出 " + spills.get() + " 次到 " + spillDirectory;
+    }
+
+    /**
+     * 缓冲的边超过预算时把所有类型的缓冲区写到磁盘
+     * 同一时刻只有一个线程溢出，其他线程等它写完后再检查一次，避免重复溢出刚清空的缓冲区。
+     */
+    private void spillIfOverBudget(long buffered) {
+        if (buffered <= budgetEdges) {
+            return;
+        }
+        synchronized (this) {
+            if (bufferedEdges.get() <= budgetEdges) {
+                return;
+            }
+            try {
+                for (SpillingLongSet bucket : spillBuckets) {
+                    bucket.spill();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("溢出边到磁盘时出错: " + e.getMessage(), e);
+            }
+            spills.incrementAndGet();
+        }
+    }
+
+    static long pack(int source, int target) {
+        return ((long) source << 32) | (target & 0xFFFFFFFFL);
+    }
+
+    static int source(long edge) {
+        return (int) (edge >>> 32);
+    }
+
+    static int target(long edge) {
+        return (int) edge;
+    }
+}
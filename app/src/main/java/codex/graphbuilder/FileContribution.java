@@ -0,0 +1,433 @@
+package codex.graphbuilder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 单个源文件对图的贡献：该文件产生的节点、边和节点属性
+ * 解析线程只写自己的实例，不触碰共享结构。名称先在文件内去重成局部ID，
+ * 节点和边存为原始int数组，合并时每个不同的名称只需访问一次全局符号表。
+ */
+class FileContribution {
+    private static final NodeKind[] KINDS = NodeKind.values();
+    private static final Edge.EdgeType[] EDGE_TYPES = Edge.EdgeType.values();
+
+    // 文件内的局部符号表
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> localIds = new HashMap<>();
+
+    // 节点：每个节点两个int（局部ID，种类序号）
+    private int[] nodes = new int[32];
+    private int nodeCount;
+
+    // 边：每条边三个int（起点局部ID，终点局部ID，边类型序号）
+    private int[] edges = new int[48];
+    private int edgeCount;
+
+    // 属性：每个三个int（节点局部ID，属性列序号，值），字符串列的值是propertyStrings中的下标
+    private int[] properties = new int[48];
+    private int propertyCount;
+    private final List<String> propertyStrings = new ArrayList<>();
+
+    // 待全局解析的类型引用：每个三个int（类局部ID，源码中的类型名局部ID，边类型序号）
+    // 继承和实现的类型要等所有文件解析完、已知类全部确定后才能准确解析
+    private int[] typeReferences = new int[0];
+    private int typeReferenceCount;
+    private ImportIndex importIndex;
+
+    // 待全局解析的成员引用（方法调用、字段读写）：每个四个int（方法局部ID，所属类型局部ID，成员名局部ID，标志）
+    // 标志的低8位是边类型序号，OWNER_WRITTEN表示所属类型是源码中写出的名字，需要按导入索引解析，
+    // OWNER_SUPER表示通过super访问，从所属类型的直接父类型开始查找，
+    // ARITY_SHIFT以上的位是方法调用的实参个数（字段访问为0）
+    static final int OWNER_WRITTEN = 1 << 8;
+    static final int OWNER_SUPER = 1 << 9;
+    static final int ARITY_SHIFT = 16;
+    private int[] memberReferences = new int[0];
+    private int memberReferenceCount;
+    // 与memberReferences一一对应的实参类型提示（见ArgumentTypes），不是节点名，不进入局部符号表
+    private final List<String> argumentTypes = new ArrayList<>();
+
+    // 合并时按全局ID重写的引用和它们的解析结果，只在监视模式保留贡献时设置；不写入缓存清单
+    private FileReferences references;
+
+    // 提取时在源码路径上查找过的同包类型源文件（见SourcePath）的键，以及当时是否存在；
+    // 这些文件出现或消失会改变本文件的提取结果，即使本文件没有变化
+    private final List<String> sourcePathChecks = new ArrayList<>();
+    private final List<Boolean> sourcePathPresence = new ArrayList<>();
+
+    // 文件的键（见SourceRoots.key），监视模式按它保留和替换文件的贡献
+    private String source;
+
+    void addPackage(String name) {
+        addNode(name, NodeKind.PACKAGE);
+    }
+
+    void addClass(String name) {
+        addNode(name, NodeKind.CLASS);
+    }
+
+    void addMethod(String name) {
+        addNode(name, NodeKind.METHOD);
+    }
+
+    void addField(String name) {
+        addNode(name, NodeKind.FIELD);
+    }
+
+    void addFile(String name) {
+        addNode(name, NodeKind.FILE);
+    }
+
+    void addNode(String name, NodeKind kind) {
+        if ((nodeCount + 1) * 2 > nodes.length) {
+            nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, 32));
+        }
+        nodes[nodeCount * 2] = localId(name);
+        nodes[nodeCount * 2 + 1] = kind.ordinal();
+        nodeCount++;
+    }
+
+    void addEdge(String source, String target, Edge.EdgeType type) {
+        if ((edgeCount + 1) * 3 > edges.length) {
+            edges = Arrays.copyOf(edges, Math.max(edges.length * 2, 48));
+        }
+        edges[edgeCount * 3] = localId(source);
+        edges[edgeCount * 3 + 1] = localId(target);
+        edges[edgeCount * 3 + 2] = type.ordinal();
+        edgeCount++;
+    }
+
+    void addStringProperty(String nodeName, PropertyStore.Column column, String value) {
+        propertyStrings.add(value);
+        addPropertyRecord(localId(nodeName), column, propertyStrings.size() - 1);
+    }
+
+    void addIntProperty(String nodeName, PropertyStore.Column column, int value) {
+        addPropertyRecord(localId(nodeName), column, value);
+    }
+
+    private void addPropertyRecord(int node, PropertyStore.Column column, int value) {
+        if ((propertyCount + 1) * 3 > properties.length) {
+            properties = Arrays.copyOf(properties, Math.max(properties.length * 2, 48));
+        }
+        properties[propertyCount * 3] = node;
+        properties[propertyCount * 3 + 1] = column.ordinal();
+        properties[propertyCount * 3 + 2] = value;
+        propertyCount++;
+    }
+
+    void addTypeReference(String className, String typeName, Edge.EdgeType type) {
+        if ((typeReferenceCount + 1) * 3 > typeReferences.length) {
+            typeReferences = Arrays.copyOf(typeReferences, Math.max(typeReferences.length * 2, 12));
+        }
+        typeReferences[typeReferenceCount * 3] = localId(className);
+        typeReferences[typeReferenceCount * 3 + 1] = localId(typeName);
+        typeReferences[typeReferenceCount * 3 + 2] = type.ordinal();
+        typeReferenceCount++;
+    }
+
+    /**
+     * 记录成员引用；argumentTypes是方法调用的实参类型提示（见ArgumentTypes），字段访问为空字符串
+     */
+    void addMemberReference(String methodName, String owner, boolean ownerWritten, boolean ownerSuper,
+                            String memberName, int arity, String argumentTypes, Edge.EdgeType type) {
+        if ((memberReferenceCount + 1) * 4 > memberReferences.length) {
+            memberReferences = Arrays.copyOf(memberReferences, Math.max(memberReferences.length * 2, 64));
+        }
+        memberReferences[memberReferenceCount * 4] = localId(methodName);
+        memberReferences[memberReferenceCount * 4 + 1] = localId(owner);
+        memberReferences[memberReferenceCount * 4 + 2] = localId(memberName);
+        memberReferences[memberReferenceCount * 4 + 3] = type.ordinal() | (ownerWritten ? OWNER_WRITTEN : 0)
+                | (ownerSuper ? OWNER_SUPER : 0) | arity << ARITY_SHIFT;
+        this.argumentTypes.add(argumentTypes);
+        memberReferenceCount++;
+    }
+
+    void setImportIndex(ImportIndex importIndex) {
+        this.importIndex = importIndex;
+    }
+
+    void addSourcePathCheck(String key, boolean present) {
+        sourcePathChecks.add(key);
+        sourcePathPresence.add(present);
+    }
+
+    private int localId(String name) {
+        Integer id = localIds.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            localIds.put(name, id);
+        }
+        return id;
+    }
+
+    int nameCount() {
+        return names.size();
+    }
+
+    String name(int localId) {
+        return names.get(localId);
+    }
+
+    /**
+     * 名称是否作为节点或边的端点出现在贡献中
+     */
+    boolean contains(String name) {
+        return localIds.containsKey(name);
+    }
+
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    int nodeName(int index) {
+        return nodes[index * 2];
+    }
+
+    NodeKind nodeKind(int index) {
+        return KINDS[nodes[index * 2 + 1]];
+    }
+
+    int edgeCount() {
+        return edgeCount;
+    }
+
+    int edgeSource(int index) {
+        return edges[index * 3];
+    }
+
+    int edgeTarget(int index) {
+        return edges[index * 3 + 1];
+    }
+
+    Edge.EdgeType edgeType(int index) {
+        return EDGE_TYPES[edges[index * 3 + 2]];
+    }
+
+    int propertyCount() {
+        return propertyCount;
+    }
+
+    int propertyNode(int index) {
+        return properties[index * 3];
+    }
+
+    PropertyStore.Column propertyColumn(int index) {
+        return PropertyStore.Column.byOrdinal(properties[index * 3 + 1]);
+    }
+
+    int propertyInt(int index) {
+        return properties[index * 3 + 2];
+    }
+
+    String propertyString(int index) {
+        return propertyStrings.get(properties[index * 3 + 2]);
+    }
+
+    int typeReferenceCount() {
+        return typeReferenceCount;
+    }
+
+    int typeReferenceSource(int index) {
+        return typeReferences[index * 3];
+    }
+
+    int typeReferenceName(int index) {
+        return typeReferences[index * 3 + 1];
+    }
+
+    Edge.EdgeType typeReferenceType(int index) {
+        return EDGE_TYPES[typeReferences[index * 3 + 2]];
+    }
+
+    int memberReferenceCount() {
+        return memberReferenceCount;
+    }
+
+    int memberReferenceSource(int index) {
+        return memberReferences[index * 4];
+    }
+
+    int memberReferenceOwner(int index) {
+        return memberReferences[index * 4 + 1];
+    }
+
+    int memberReferenceName(int index) {
+        return memberReferences[index * 4 + 2];
+    }
+
+    /**
+     * 成员引用的标志：边类型序号、OWNER_WRITTEN、OWNER_SUPER和实参个数
+     */
+    int memberReferenceFlags(int index) {
+        return memberReferences[index * 4 + 3];
+    }
+
+    String memberReferenceArgumentTypes(int index) {
+        return argumentTypes.get(index);
+    }
+
+    ImportIndex getImportIndex() {
+        return importIndex;
+    }
+
+    void setReferences(FileReferences references) {
+        this.references = references;
+    }
+
+    /**
+     * 合并时生成的引用记录，没有引用或未保留时为null
+     */
+    FileReferences getReferences() {
+        return references;
+    }
+
+    /**
+     * 提取时查找过的同包类型源文件是否仍与当时一样存在或不存在；isPresent按键判断文件现在是否存在
+     */
+    boolean isSourcePathUnchanged(Predicate<String> isPresent) {
+        for (int i = 0; i < sourcePathChecks.size(); i++) {
+            if (isPresent.test(sourcePathChecks.get(i)) != sourcePathPresence.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 提取时是否查找过键为key的源文件，该文件出现或消失时需要重新提取本文件
+     */
+    boolean checkedSourcePath(String key) {
+        return sourcePathChecks.contains(key);
+    }
+
+    void setSource(String source) {
+        this.source = source;
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * 序列化到缓存清单，名称只写一次，节点和边按局部ID写出
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+
+        out.writeInt(nodeCount);
+        for (int i = 0; i < nodeCount * 2; i++) {
+            out.writeInt(nodes[i]);
+        }
+
+        out.writeInt(edgeCount);
+        for (int i = 0; i < edgeCount * 3; i++) {
+            out.writeInt(edges[i]);
+        }
+
+        out.writeInt(propertyCount);
+        for (int i = 0; i < propertyCount * 3; i++) {
+            out.writeInt(properties[i]);
+        }
+        out.writeInt(propertyStrings.size());
+        for (String value : propertyStrings) {
+            writeLongString(out, value);
+        }
+
+        out.writeInt(typeReferenceCount);
+        for (int i = 0; i < typeReferenceCount * 3; i++) {
+            out.writeInt(typeReferences[i]);
+        }
+        out.writeInt(memberReferenceCount);
+        for (int i = 0; i < memberReferenceCount * 4; i++) {
+            out.writeInt(memberReferences[i]);
+        }
+        for (String types : argumentTypes) {
+            out.writeUTF(types);
+        }
+        out.writeBoolean(importIndex != null);
+        if (importIndex != null) {
+            importIndex.writeTo(out);
+        }
+        out.writeInt(sourcePathChecks.size());
+        for (int i = 0; i < sourcePathChecks.size(); i++) {
+            out.writeUTF(sourcePathChecks.get(i));
+            out.writeBoolean(sourcePathPresence.get(i));
+        }
+    }
+
+    /**
+     * 从缓存清单反序列化
+     */
+    static FileContribution readFrom(DataInputStream in) throws IOException {
+        FileContribution contribution = new FileContribution();
+        int nameCount = in.readInt();
+        for (int i = 0; i < nameCount; i++) {
+            contribution.localId(in.readUTF());
+        }
+
+        contribution.nodeCount = in.readInt();
+        contribution.nodes = readInts(in, contribution.nodeCount * 2);
+
+        contribution.edgeCount = in.readInt();
+        contribution.edges = readInts(in, contribution.edgeCount * 3);
+
+        contribution.propertyCount = in.readInt();
+        contribution.properties = readInts(in, contribution.propertyCount * 3);
+        int stringCount = in.readInt();
+        for (int i = 0; i < stringCount; i++) {
+            contribution.propertyStrings.add(readLongString(in));
+        }
+
+        contribution.typeReferenceCount = in.readInt();
+        contribution.typeReferences = readInts(in, contribution.typeReferenceCount * 3);
+        contribution.memberReferenceCount = in.readInt();
+        contribution.memberReferences = readInts(in, contribution.memberReferenceCount * 4);
+        for (int i = 0; i < contribution.memberReferenceCount; i++) {
+            contribution.argumentTypes.add(in.readUTF());
+        }
+        if (in.readBoolean()) {
+            contribution.importIndex = ImportIndex.readFrom(in);
+        }
+        int checkCount = in.readInt();
+        for (int i = 0; i < checkCount; i++) {
+            contribution.addSourcePathCheck(in.readUTF(), in.readBoolean());
+        }
+        return contribution;
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * 字段签名可能包含很长的初始化表达式，超出writeUTF的64KB限制
+     */
+    private static void writeLongString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readLongString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package codex.graphbuilder;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * 一个文件中待全局解析的引用，名称都已换成全局符号表中的ID
+ * 合并时从文件贡献中取出，贡献的名称表、节点、边和属性随即可以释放，解析阶段只保留这些int记录和文件的导入索引。
+ * 同时保存解析结果，监视模式下文件变化时据此撤回原来解析出的边。
+ */
+final class FileReferences {
+    private static final Edge.EdgeType[] EDGE_TYPES = Edge.EdgeType.values();
+
+    private final ImportIndex imports;
+
+    // 类型引用：每个三个int（类ID，源码中的类型名ID，边类型序号）
+    private final int[] typeReferences;
+    // 成员引用：每个四个int（方法ID，所属类型名ID，成员名ID，标志），标志的含义同FileContribution
+    private final int[] memberReferences;
+    // 与成员引用一一对应的实参类型提示，相同的提示共用一个字符串实例
+    private final String[] argumentTypes;
+
+    // 解析结果：类型引用的目标ID（-1表示尚未解析），成员引用的目标ID（无法确定时为空数组）
+    private final int[] typeTargets;
+    private final int[][] memberTargets;
+
+    private FileReferences(ImportIndex imports, int[] typeReferences, int[] memberReferences, String[] argumentTypes) {
+        this.imports = imports;
+        this.typeReferences = typeReferences;
+        this.memberReferences = memberReferences;
+        this.argumentTypes = argumentTypes;
+        this.typeTargets = new int[typeReferences.length / 3];
+        Arrays.fill(typeTargets, -1);
+        this.memberTargets = new int[memberReferences.length / 4][];
+        Arrays.fill(memberTargets, new int[0]);
+    }
+
+    /**
+     * 把贡献中的引用按全局ID重写；globalIds是贡献的局部ID到全局ID的映射，canonical用于共用相同的实参类型提示
+     */
+    static FileReferences of(FileContribution contribution, int[] globalIds, UnaryOperator<String> canonical) {
+        int[] typeReferences = new int[contribution.typeReferenceCount() * 3];
+        for (int i = 0; i < contribution.typeReferenceCount(); i++) {
+            typeReferences[i * 3] = globalIds[contribution.typeReferenceSource(i)];
+            typeReferences[i * 3 + 1] = globalIds[contribution.typeReferenceName(i)];
+            typeReferences[i * 3 + 2] = contribution.typeReferenceType(i).ordinal();
+        }
+        int[] memberReferences = new int[contribution.memberReferenceCount() * 4];
+        String[] argumentTypes = new String[contribution.memberReferenceCount()];
+        for (int i = 0; i < contribution.memberReferenceCount(); i++) {
+            memberReferences[i * 4] = globalIds[contribution.memberReferenceSource(i)];
+            memberReferences[i * 4 + 1] = globalIds[contribution.memberReferenceOwner(i)];
+            memberReferences[i * 4 + 2] = globalIds[contribution.memberReferenceName(i)];
+            memberReferences[i * 4 + 3] = contribution.memberReferenceFlags(i);
+            argumentTypes[i] = canonical.apply(contribution.memberReferenceArgumentTypes(i));
+        }
+        return new FileReferences(contribution.getImportIndex(), typeReferences, memberReferences, argumentTypes);
+    }
+
+    ImportIndex imports() {
+        return imports;
+    }
+
+    int typeReferenceCount() {
+        return typeTargets.length;
+    }
+
+    int typeReferenceSource(int index) {
+        return typeReferences[index * 3];
+    }
+
+    int typeReferenceName(int index) {
+        return typeReferences[index * 3 + 1];
+    }
+
+    Edge.EdgeType typeReferenceType(int index) {
+        return EDGE_TYPES[typeReferences[index * 3 + 2]];
+    }
+
+    int memberReferenceCount() {
+        return memberTargets.length;
+    }
+
+    int memberReferenceSource(int index) {
+        return memberReferences[index * 4];
+    }
+
+    int memberReferenceOwner(int index) {
+        return memberReferences[index * 4 + 1];
+    }
+
+    int memberReferenceName(int index) {
+        return memberReferences[index * 4 + 2];
+    }
+
+    Edge.EdgeType memberReferenceType(int index) {
+        return EDGE_TYPES[memberReferences[index * 4 + 3] & 0xFF];
+    }
+
+    boolean isMemberReferenceOwnerWritten(int index) {
+        return (memberReferences[index * 4 + 3] & FileContribution.OWNER_WRITTEN) != 0;
+    }
+
+    boolean isMemberReferenceOwnerSuper(int index) {
+        return (memberReferences[index * 4 + 3] & FileContribution.OWNER_SUPER) != 0;
+    }
+
+    int memberReferenceArity(int index) {
+        return memberReferences[index * 4 + 3] >>> FileContribution.ARITY_SHIFT;
+    }
+
+    String memberReferenceArgumentTypes(int index) {
+        return argumentTypes[index];
+    }
+
+    void setTypeReferenceTarget(int index, int target) {
+        typeTargets[index] = target;
+    }
+
+    /**
+     * 类型引用解析出的目标节点ID，尚未解析时返回-1
+     */
+    int typeReferenceTarget(int index) {
+        return typeTargets[index];
+    }
+
+    void setMemberReferenceTargets(int index, int[] targets) {
+        memberTargets[index] = targets;
+    }
+
+    /**
+     * 成员引用解析出的目标节点ID，无法确定或尚未解析时返回空数组
+     */
+    int[] memberReferenceTargets(int index) {
+        return memberTargets[index];
+    }
+}
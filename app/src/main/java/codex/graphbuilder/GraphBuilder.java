@@ -1,396 +1,1291 @@
 package codex.graphbuilder;
 
-import com.github.javaparser.JavaParser;
-import com.github.javaparser.Position;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.ImportDeclaration;
-import com.github.javaparser.ast.Node;
-import com.github.javaparser.ast.body.*;
-import com.github.javaparser.ast.type.ClassOrInterfaceType;
 
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 public class GraphBuilder {
-    // 使用ConcurrentHashMap以支持并行处理
-    private Set<String> packages = ConcurrentHashMap.newKeySet();
-    private Set<String> classes = ConcurrentHashMap.newKeySet();
-    private Set<String> methods = ConcurrentHashMap.newKeySet();
-    private Set<String> fields = ConcurrentHashMap.newKeySet();
-    private Set<Edge> edges = ConcurrentHashMap.newKeySet();
+    // 符号表：全限定名映射为稠密的int ID，并记录每个ID的节点种类，支持并行写入
+    private final SymbolTable symbols = new SymbolTable();
+    // 按边类型分桶的边集合，每条边打包为一个long；设置边缓冲区预算后改为可溢出到磁盘的版本
+    private EdgeStore edgeStore = new EdgeStore();
+
+    // 符号表和边集合之上的视图，保持原有的集合接口
+    private final Set<String> packages = new NodeSetView(NodeKind.PACKAGE);
+    private final Set<String> classes = new NodeSetView(NodeKind.CLASS);
+    private final Set<String> methods = new NodeSetView(NodeKind.METHOD);
+    private final Set<String> fields = new NodeSetView(NodeKind.FIELD);
+    private final Set<String> files = new NodeSetView(NodeKind.FILE);
+    private final Set<Edge> edges = new EdgeSetView();
+
+    // 节点的扩展属性，按列存储，以节点ID为下标
+    private final PropertyStore properties = new PropertyStore();
+
+    // 增量构建缓存，为null时每次都完整解析
+    private BuildCache buildCache;
+
+    // 每个解析线程复用一个JavaParser实例
+    private ParserPool parserPool = new ParserPool(ParserPool.defaultConfiguration());
+
+    // 解析流水线各阶段的并发度和队列容量
+    private int readerThreads = 16;
+    private int parserThreads = Runtime.getRuntime().availableProcessors();
+    private int sinkThreads = 1;
+    private int queueCapacity = 256;
+
+    // 导出时是否输出gzip压缩的.csv.gz文件（neo4j-admin可直接读取）
+    private boolean compressOutput;
+
+    // 导出时使用符号表中的稠密整数ID代替全限定名（neo4j-admin --id-type=integer）
+    private boolean integerIds;
+
+    // 基于符号求解器的类型解析（默认关闭，使用按导入语句猜测的方式）
+    private boolean symbolSolverEnabled;
+    private List<String> sourceRoots = List.of();
+    // 源码前端查找同包类型的位置：文件所在目录和sourceRoots
+    private SourcePath sourcePath = new SourcePath(List.of());
+    private List<String> libraryJars = List.of();
+    private int resolutionCacheSize = 1 << 16;
+    private TypeSolverResolver typeResolver;
+    // 符号求解器解析出的外部类型（JDK、依赖jar中的类）的ID，这些类型作为没有属性的Class节点加入图中，
+    // 指向它们的EXTENDS/IMPLEMENTS关系因此能够导出
+    private final Set<Integer> externalClasses = ConcurrentHashMap.newKeySet();
+
+    // 是否提取方法调用和字段读写（CALLS/READS/WRITES）
+    private boolean callGraphEnabled = true;
+
+    // 改用class文件前端：从目录和jar中的.class文件构建图，不解析源码
+    private boolean bytecode;
+
+    // 构建度量：阶段耗时、单文件解析耗时、计数器，导出时写入metrics.json
+    private BuildMetrics metrics = new BuildMetrics();
+
+    // 安静模式：不输出逐个文件的解析日志
+    private boolean quiet;
+
+    // 导出时是否额外写出继承闭包（INHERITS_FROM，带层数）
+    private boolean inheritsFromExport;
+
+    // 带有待解析类型引用或成员引用的文件的引用记录（按全局ID），全部文件合并后统一解析
+    // 只保留引用记录和导入索引，文件贡献本身合并后即可释放
+    private final Queue<FileReferences> pendingReferences = new ConcurrentLinkedQueue<>();
+    // 实参类型提示 -> 共用的字符串实例，不同的提示远少于调用点
+    private final Map<String, String> argumentSignatures = new ConcurrentHashMap<>();
+
+    // 监视模式：按文件保留贡献，节点和边按贡献它们的文件（和解析出的引用）计数，文件变化时撤回旧贡献
+    private Map<String, FileContribution> retainedContributions;
+    private RefCounts nodeRefs;
+    private RefCounts[] edgeRefs;
+
+    private static final int EXPORT_BUFFER_SIZE = 1 << 16;
+    // INHERITS_FROM导出时每块包含的ID数
+    private static final int INHERITS_FROM_CHUNK = 1 << 12;
 
-    // 存储节点的扩展属性
-    private Map<String, Map<String, String>> nodeProperties = new ConcurrentHashMap<>();
+    /**
+     * 启用增量构建缓存，未变化的文件将直接从清单中恢复
+     */
+    public void setCacheFile(String manifestPath) {
+        this.buildCache = manifestPath == null ? null : new BuildCache(Path.of(manifestPath));
+    }
 
     /**
-     * 解析给定目录中的所有Java文件
+     * 设置解析配置（语言级别、是否挂载注释等），需在解析前调用
      */
-    public void parseDirectory(String directoryPath) {
-        try {
-            List<Path> javaFiles = Files.walk(Path.of(directoryPath))
-                    .filter(path -> path.toString().endsWith(".java"))
-                    .collect(Collectors.toList());
+    public void setParserConfiguration(ParserConfiguration configuration) {
+        this.parserPool = new ParserPool(configuration);
+    }
+
+    /**
+     * 导出时输出.csv.gz压缩文件
+     */
+    public void setCompressOutput(boolean compressOutput) {
+        this.compressOutput = compressOutput;
+    }
+
+    /**
+     * 导出时使用整数节点ID，关系文件按ID空间拆分，导入命令使用--id-type=integer
+     */
+    public void setIntegerIds(boolean integerIds) {
+        this.integerIds = integerIds;
+    }
+
+    /**
+     * 设置流水线读取阶段的虚拟线程数
+     */
+    public void setReaderThreads(int readerThreads) {
+        this.readerThreads = readerThreads;
+    }
+
+    /**
+     * 设置流水线解析阶段的线程数，默认等于CPU核数
+     */
+    public void setParserThreads(int parserThreads) {
+        this.parserThreads = parserThreads;
+    }
+
+    /**
+     * 设置流水线合并阶段的线程数
+     */
+    public void setSinkThreads(int sinkThreads) {
+        this.sinkThreads = sinkThreads;
+    }
+
+    /**
+     * 设置流水线各阶段之间有界队列的容量
+     */
+    public void setPipelineQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * 已知类中找不到的继承和实现类型（JDK、依赖jar中的类）交给符号求解器解析
+     * 解析出的类型作为没有属性的外部Class节点加入图中，指向它们的EXTENDS/IMPLEMENTS关系才能导出。
+     */
+    public void setSymbolSolverEnabled(boolean symbolSolverEnabled) {
+        this.symbolSolverEnabled = symbolSolverEnabled;
+    }
+
+    /**
+     * 设置符号求解器使用的源码根目录；未设置时自动查找解析目录下的src/main/java、src/test/java等目录，找不到则使用解析目录本身
+     * 源码前端确定参数类型时也在这些源码根下查找同包的类型（见SourcePath）。
+     */
+    public void setSourceRoots(List<String> sourceRoots) {
+        this.sourceRoots = List.copyOf(sourceRoots);
+        List<Path> paths = new ArrayList<>();
+        for (String root : sourceRoots) {
+            paths.add(Path.of(root));
+        }
+        this.sourcePath = new SourcePath(paths);
+    }
+
+    /**
+     * 设置符号求解器使用的依赖jar
+     */
+    public void setLibraryJars(List<String> libraryJars) {
+        this.libraryJars = List.copyOf(libraryJars);
+    }
+
+    /**
+     * 设置类型解析和调用目标解析缓存的最大条目数
+     */
+    public void setResolutionCacheSize(int resolutionCacheSize) {
+        this.resolutionCacheSize = resolutionCacheSize;
+    }
+
+    /**
+     * 是否提取方法调用（CALLS）和字段读写（READS/WRITES），默认开启
+     */
+    public void setCallGraphEnabled(boolean callGraphEnabled) {
+        this.callGraphEnabled = callGraphEnabled;
+    }
+
+    /**
+     * 从.class文件而不是.java文件构建图，默认关闭
+     * 只读取class文件的常量池、父类和接口、字段表和方法表，比解析源码快得多，但不提取方法调用和字段读写
+     */
+    public void setBytecode(boolean bytecode) {
+        this.bytecode = bytecode;
+    }
+
+    /**
+     * 安静模式：不再逐个文件输出"解析文件"日志，避免解析线程争用标准输出的锁
+     */
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
 
-            System.out.println("找到 " + javaFiles.size() + " 个Java文件");
+    /**
+     * 导出时额外写出类型层次的传递闭包：每个类到它直接和间接继承、实现的每个类型一条INHERITS_FROM关系，
+     * depth为最短的继承层数，默认关闭
+     * 查询所有子类时不必在数据库中展开 [:EXTENDS|IMPLEMENTS*]，代价是关系文件变大。
+     */
+    public void setInheritsFromExport(boolean inheritsFromExport) {
+        this.inheritsFromExport = inheritsFromExport;
+    }
 
-            // 并行处理所有Java文件
-            javaFiles.parallelStream().forEach(this::parseFile);
+    /**
+     * 为监视模式保留每个文件的贡献，需在解析前调用
+     * 保留的贡献占用与缓存清单相当的内存，不启用监视模式时解析完即丢弃。
+     */
+    public void setWatchEnabled(boolean watchEnabled) {
+        this.retainedContributions = watchEnabled ? new ConcurrentHashMap<>() : null;
+    }
 
-            System.out.println("解析完成，共发现：");
-            System.out.println("- " + packages.size() + " 个包");
-            System.out.println("- " + classes.size() + " 个类");
-            System.out.println("- " + methods.size() + " 个方法");
-            System.out.println("- " + fields.size() + " 个字段");
-            System.out.println("- " + edges.size() + " 条边");
+    /**
+     * 设置边缓冲区的预算（MB）和溢出目录，需在解析或加载快照前调用
+     * 缓冲的边超过预算时，合并线程把它们按类型排序去重后写成溢出目录下的临时顺串文件；
+     * 导出时每种类型的顺串k路归并去重，CSV直接从归并结果流式写出。
+     * 预算按缓冲的边数 × 8字节计算，不是实测的堆占用，也只约束边：符号表、节点属性和待解析的引用仍全部在内存中。
+     * 溢出模式不支持删除边，因此不能与监视模式同时使用；按边查找在顺串文件上二分查找，每次都要读盘，也不适合快照比较。
+     */
+    public void setEdgeBufferBudget(long megabytes, String spillDirectory) {
+        try {
+            this.edgeStore = new EdgeStore(Path.of(spillDirectory), megabytes << 20);
         } catch (IOException e) {
-            System.err.println("解析目录时出错: " + e.getMessage());
+            System.err.println("创建溢出目录时出错，边仍保存在内存中: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
     /**
-     * 解析单个Java文件
+     * 设置解析耗时报告中列出的最慢文件数，需在解析前调用
      */
-    private void parseFile(Path filePath) {
-        try {
-            System.out.println("解析文件: " + filePath);
-            JavaParser parser = new JavaParser();
-            CompilationUnit cu = parser.parse(filePath).getResult().orElseThrow();
-
-            // 提取包信息
-            String packageName = cu.getPackageDeclaration()
-                    .map(pd -> pd.getName().asString())
-                    .orElse("(default package)");
-            packages.add(packageName);
-
-            // 处理类和接口
-            cu.findAll(ClassOrInterfaceDeclaration.class).forEach(classDecl -> {
-                String className = packageName + "." + classDecl.getNameAsString();
-                classes.add(className);
-
-                // 收集类签名
-                String signature = extractClassSignature(classDecl);
-                addNodeProperty(className, "signature", signature);
-
-                // 收集位置信息
-                extractLocationInfo(className, classDecl);
-
-                // 添加包与类的包含关系
-                edges.add(new Edge(packageName, className, Edge.EdgeType.PACKAGE_CONTAINS));
-
-                // 处理导入语句
-                for (ImportDeclaration importDecl : cu.getImports()) {
-                    String importName = importDecl.getName().asString();
-                    edges.add(new Edge(className, importName, Edge.EdgeType.IMPORT));
-                }
-
-                // 处理继承关系
-                for (ClassOrInterfaceType extendedType : classDecl.getExtendedTypes()) {
-                    String extendedTypeName = resolveTypeName(extendedType.getNameAsString(), cu);
-                    edges.add(new Edge(className, extendedTypeName, Edge.EdgeType.EXTENDS));
-                }
-
-                // 处理接口实现
-                for (ClassOrInterfaceType implementedType : classDecl.getImplementedTypes()) {
-                    String implementedTypeName = resolveTypeName(implementedType.getNameAsString(), cu);
-                    edges.add(new Edge(className, implementedTypeName, Edge.EdgeType.IMPLEMENTS));
-                }
-
-                // 处理方法
-                classDecl.getMethods().forEach(method -> {
-                    String methodName = className + "." + method.getNameAsString();
-                    methods.add(methodName);
-                    edges.add(new Edge(className, methodName, Edge.EdgeType.CONTAINS_METHOD));
-
-                    // 收集方法签名
-                    String methodSignature = extractMethodSignature(method);
-                    addNodeProperty(methodName, "signature", methodSignature);
-
-                    // 收集方法位置信息
-                    extractLocationInfo(methodName, method);
-                });
-
-                // 处理字段
-                classDecl.getFields().forEach(field -> {
-                    field.getVariables().forEach(var -> {
-                        String fieldName = className + "." + var.getNameAsString();
-                        fields.add(fieldName);
-                        edges.add(new Edge(className, fieldName, Edge.EdgeType.CONTAINS_FIELD));
-
-                        // 收集字段签名
-                        String fieldSignature = extractFieldSignature(field, var);
-                        addNodeProperty(fieldName, "signature", fieldSignature);
-
-                        // 收集字段位置信息
-                        extractLocationInfo(fieldName, var);
-                    });
-                });
-            });
+    public void setSlowestFileCount(int count) {
+        this.metrics = new BuildMetrics(count);
+    }
 
-            // 处理枚举
-            cu.findAll(EnumDeclaration.class).forEach(enumDecl -> {
-                String enumName = packageName + "." + enumDecl.getNameAsString();
-                classes.add(enumName);
+    /**
+     * 解析给定目录中的所有Java文件
+     */
+    public void parseDirectory(String directoryPath) {
+        parseSources(List.of(directoryPath));
+    }
 
-                // 收集枚举签名
-                String enumSignature = extractEnumSignature(enumDecl);
-                addNodeProperty(enumName, "signature", enumSignature);
+    /**
+     * 解析多个源码根中的所有Java文件，源码根可以是目录，也可以是 *-sources.jar 等源码包
+     * 源码包直接通过zip文件系统读取，不解压到磁盘；各源码根并发遍历
+     */
+    public void parseSources(List<String> sourcePaths) {
+        if (sourcePaths.isEmpty()) {
+            System.err.println("没有指定要解析的源码路径");
+            return;
+        }
+        SourceRoots roots;
+        try {
+            roots = SourceRoots.open(sourcePaths);
+        } catch (IOException e) {
+            System.err.println("打开源码包时出错: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+        try (roots) {
+            if (roots.archiveCount() > 0) {
+                System.out.println("直接从 " + roots.archiveCount() + " 个jar/zip包中读取，不解压到磁盘");
+            }
+            parseRoots(roots);
+        } catch (IOException e) {
+            System.err.println("关闭源码包时出错: " + e.getMessage());
+        }
+    }
 
-                // 收集位置信息
-                extractLocationInfo(enumName, enumDecl);
+    @SuppressWarnings("try")
+    private void parseRoots(SourceRoots sourceRoots) {
+        List<Path> roots = sourceRoots.paths();
+        if (buildCache != null) {
+            buildCache.load(extractionConfiguration(), sourceRoots::isRegularFile);
+        }
+        if (symbolSolverEnabled) {
+            typeResolver = createTypeResolver(roots);
+        }
 
-                edges.add(new Edge(packageName, enumName, Edge.EdgeType.PACKAGE_CONTAINS));
+        ParsePipeline pipeline = new ParsePipeline(this, buildCache, metrics);
+        pipeline.setReaderThreads(readerThreads);
+        pipeline.setParserThreads(parserThreads);
+        pipeline.setSinkThreads(sinkThreads);
+        pipeline.setQueueCapacity(queueCapacity);
+        pipeline.setClassFiles(bytecode);
+        try {
+            pipeline.run(roots);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("解析被中断");
+            return;
+        }
+        metrics.add(BuildMetrics.Counter.FILES_DISCOVERED, pipeline.getDiscovered());
+        metrics.add(BuildMetrics.Counter.FILES_PARSED, pipeline.getParsed());
+        metrics.add(BuildMetrics.Counter.FILES_REUSED, pipeline.getReused());
+        metrics.add(BuildMetrics.Counter.ERRORS, pipeline.getFailed());
+
+        // 符号求解器可能还要读取源码包中的文件，源码包在引用解析结束后才关闭
+        try (BuildMetrics.PhaseTimer timer = metrics.start(BuildMetrics.Phase.RESOLVE)) {
+            resolveTypeReferences(pendingReferences);
+            if (callGraphEnabled) {
+                resolveMemberReferences(pendingReferences);
+            }
+        }
+        pendingReferences.clear();
 
-                // 处理枚举中的方法和字段
-                enumDecl.getMethods().forEach(method -> {
-                    String methodName = enumName + "." + method.getNameAsString();
-                    methods.add(methodName);
-                    edges.add(new Edge(enumName, methodName, Edge.EdgeType.CONTAINS_METHOD));
+        if (buildCache != null) {
+            try {
+                buildCache.save();
+            } catch (IOException e) {
+                System.err.println("写入缓存清单时出错: " + e.getMessage());
+            }
+            System.out.println("增量构建：复用 " + pipeline.getReused() + " 个文件，重新解析 "
+                    + pipeline.getParsed() + " 个文件，移除 "
+                    + buildCache.countRemoved() + " 个已删除文件");
+        }
+        if (typeResolver != null) {
+            System.out.println("类型解析缓存：" + typeResolver.describeCache());
+        }
 
-                    // 收集方法签名
-                    String methodSignature = extractMethodSignature(method);
-                    addNodeProperty(methodName, "signature", methodSignature);
+        System.out.println("解析完成，共发现：");
+        printCounts();
+        System.out.println("符号表（估算）：" + symbols.describeStorage());
+        printTimings();
+    }
 
-                    // 收集方法位置信息
-                    extractLocationInfo(methodName, method);
-                });
+    /**
+     * 输出阶段耗时、单文件解析耗时分位数和最慢的文件
+     */
+    private void printTimings() {
+        System.out.println("阶段耗时：" + metrics.describePhases());
+        List<BuildMetrics.SlowFile> slowest = metrics.slowestFiles();
+        if (slowest.isEmpty()) {
+            return;
+        }
+        System.out.println("单文件解析耗时：" + metrics.describeParseLatency());
+        System.out.println("解析最慢的 " + slowest.size() + " 个文件：");
+        for (BuildMetrics.SlowFile file : slowest) {
+            System.out.printf("  %6d ms  %s%n", file.nanos() / 1_000_000, file.path());
+        }
+    }
 
-                enumDecl.getFields().forEach(field -> {
-                    field.getVariables().forEach(var -> {
-                        String fieldName = enumName + "." + var.getNameAsString();
-                        fields.add(fieldName);
-                        edges.add(new Edge(enumName, fieldName, Edge.EdgeType.CONTAINS_FIELD));
+    /**
+     * 影响单个文件贡献内容的配置，记录在缓存清单中；配置不同时缓存的贡献不能复用
+     */
+    String extractionConfiguration() {
+        ParserConfiguration configuration = parserPool.getConfiguration();
+        return "bytecode=" + bytecode + ";callGraph=" + callGraphEnabled
+                + ";languageLevel=" + configuration.getLanguageLevel()
+                + ";attributeComments=" + configuration.isAttributeComments();
+    }
 
-                        // 收集字段签名
-                        String fieldSignature = extractFieldSignature(field, var);
-                        addNodeProperty(fieldName, "signature", fieldSignature);
+    private void printCounts() {
+        System.out.println("- " + packages.size() + " 个包");
+        System.out.println("- " + classes.size() + " 个类");
+        System.out.println("- " + methods.size() + " 个方法");
+        System.out.println("- " + fields.size() + " 个字段");
+        System.out.println("- " + files.size() + " 个文件");
+        System.out.println("- " + edges.size() + " 条边");
+        if (edgeStore.isSpilling()) {
+            System.out.println("边集合：" + edgeStore.describeSpills());
+        }
+    }
 
-                        // 收集字段位置信息
-                        extractLocationInfo(fieldName, var);
-                    });
-                });
-            });
-        } catch (Exception e) {
-            System.err.println("解析文件 " + filePath + " 时出错: " + e.getMessage());
+    /**
+     * 把当前图保存为二进制快照，之后可以用loadSnapshot直接加载而不必重新解析
+     */
+    public void saveSnapshot(String snapshotPath) {
+        try {
+            GraphSnapshot.write(Path.of(snapshotPath), symbols, edgeStore, properties);
+            System.out.println("已保存图快照到 " + snapshotPath);
+        } catch (IOException e) {
+            System.err.println("保存图快照时出错: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
     /**
-     * 提取类签名
+     * 为当前的图建立内存邻接索引（每种边的正向和反向CSR），用于不经过Neo4j的本地查询
+     * 索引是当前图的只读副本，需在解析或加载快照完成后调用。
      */
-    private String extractClassSignature(ClassOrInterfaceDeclaration classDecl) {
-        StringBuilder signature = new StringBuilder();
+    public GraphIndex buildIndex() {
+        long start = System.nanoTime();
+        GraphIndex index = GraphIndex.build(symbols, edgeStore);
+        System.out.println("已建立邻接索引：" + index.nodeCount() + " 个ID，" + edgeStore.size() + " 条边，用时 "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return index;
+    }
 
-        // 添加访问修饰符
-        if (classDecl.getModifiers().isNonEmpty()) {
-            classDecl.getModifiers().forEach(modifier ->
-                    signature.append(modifier.toString()).append(" "));
+    /**
+     * 把当前图与旧版本的快照比较，差异写成Cypher脚本 outputDirectory/diff.cypher
+     * 在已导入旧版本的数据库上执行该脚本即可更新到当前版本，不必重新导入整个图。
+     */
+    public void exportDiff(String oldSnapshotPath, String outputDirectory) {
+        long start = System.nanoTime();
+        try {
+            GraphSnapshot old = GraphSnapshot.open(Path.of(oldSnapshotPath));
+            GraphDelta delta = new GraphDiff(old, symbols, edgeStore, properties).compute();
+            String summary = "与 " + oldSnapshotPath + " 相比：" + delta.describe();
+            Path file = Path.of(outputDirectory, "diff.cypher");
+            int statements = new CypherDeltaWriter(symbols, properties, integerIds).write(delta, file, summary);
+            System.out.println(summary + "，用时 " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            System.out.println("已写出 " + statements + " 条语句到 " + file);
+        } catch (IOException e) {
+            System.err.println("比较图快照时出错: " + e.getMessage());
+            e.printStackTrace();
         }
+    }
 
-        // 添加类或接口关键字
-        signature.append(classDecl.isInterface() ? "interface " : "class ");
+    /**
+     * 从二进制快照加载图，替代parseDirectory；只能加载到空的图中
+     * 父ID总是小于子ID，按ID顺序插入（父ID，片段）得到的ID与保存时一致，边无需重新映射即可批量写入。
+     */
+    public void loadSnapshot(String snapshotPath) {
+        if (symbols.size() != 0) {
+            System.err.println("图快照只能加载到空的图中");
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            GraphSnapshot snapshot = GraphSnapshot.open(Path.of(snapshotPath));
+            NodeKind[] kinds = NodeKind.values();
+            for (int id = 0; id < snapshot.nodeCount(); id++) {
+                symbols.internChild(snapshot.parent(id), snapshot.simpleName(id));
+                int mask = snapshot.kindMask(id);
+                for (NodeKind kind : kinds) {
+                    if ((mask & kind.mask()) != 0) {
+                        symbols.mark(id, kind);
+                    }
+                }
+            }
 
-        // 添加类名
-        signature.append(classDecl.getNameAsString());
+            long[] batch = new long[1 << 16];
+            for (Edge.EdgeType type : Edge.EdgeType.values()) {
+                LongBuffer buffer = snapshot.edges(type);
+                while (buffer.hasRemaining()) {
+                    int count = Math.min(buffer.remaining(), batch.length);
+                    buffer.get(batch, 0, count);
+                    edgeStore.addAll(type, batch, count);
+                }
+            }
 
-        // 添加类型参数（泛型）
-        if (classDecl.getTypeParameters().isNonEmpty()) {
-            signature.append("<");
-            for (int i = 0; i < classDecl.getTypeParameters().size(); i++) {
-                if (i > 0) {
-                    signature.append(", ");
+            for (GraphSnapshot.PropertyColumn column : snapshot.propertyColumns()) {
+                PropertyStore.Column target = PropertyStore.Column.byHeader(column.name());
+                // 快照中有当前版本不认识的属性列，忽略
+                if (target == null) {
+                    continue;
+                }
+                for (int i = 0; i < column.size(); i++) {
+                    if (target.isInt()) {
+                        properties.setInt(column.node(i), target, column.intValue(i));
+                    } else {
+                        properties.setString(column.node(i), target, column.value(i));
+                    }
                 }
-                signature.append(classDecl.getTypeParameters().get(i).toString());
             }
-            signature.append(">");
+        } catch (IOException e) {
+            System.err.println("加载图快照时出错: " + e.getMessage());
+            e.printStackTrace();
+            return;
         }
+        System.out.println("已从快照 " + snapshotPath + " 加载图，用时 "
+                + (System.nanoTime() - start) / 1_000_000 + " ms，共：");
+        printCounts();
+    }
 
-        // 添加继承关系
-        if (classDecl.getExtendedTypes().isNonEmpty()) {
-            signature.append(" extends ");
-            for (int i = 0; i < classDecl.getExtendedTypes().size(); i++) {
-                if (i > 0) {
-                    signature.append(", ");
-                }
-                signature.append(classDecl.getExtendedTypes().get(i).toString());
+    /**
+     * 为本次运行构建一个共享的符号求解器
+     */
+    private TypeSolverResolver createTypeResolver(List<Path> directories) {
+        List<Path> roots = new ArrayList<>();
+        for (String root : sourceRoots) {
+            roots.add(Path.of(root));
+        }
+        if (roots.isEmpty()) {
+            for (Path directory : directories) {
+                roots.addAll(findSourceRoots(directory));
+            }
+        }
+        List<Path> jars = new ArrayList<>();
+        for (String jar : libraryJars) {
+            jars.add(Path.of(jar));
+        }
+        try {
+            System.out.println("符号求解器源码根目录: " + roots);
+            return new TypeSolverResolver(roots, jars, parserPool.getConfiguration(), resolutionCacheSize);
+        } catch (IOException e) {
+            System.err.println("创建符号求解器时出错，改用基于导入语句的类型解析: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 查找Maven/Gradle约定的源码根目录（src/main/java、src/test/java等）
+     */
+    private List<Path> findSourceRoots(Path directory) {
+        try (var walk = Files.walk(directory)) {
+            List<Path> roots = walk
+                    .filter(Files::isDirectory)
+                    .filter(dir -> dir.getFileName() != null && dir.getFileName().toString().equals("java"))
+                    .filter(dir -> dir.getParent() != null && dir.getParent().getParent() != null
+                            && dir.getParent().getParent().getFileName() != null
+                            && dir.getParent().getParent().getFileName().toString().equals("src"))
+                    .collect(Collectors.toList());
+            if (!roots.isEmpty()) {
+                return roots;
             }
+        } catch (IOException e) {
+            System.err.println("查找源码根目录时出错: " + e.getMessage());
+        }
+        return List.of(directory);
+    }
+
+    /**
+     * 将单个文件的贡献合并到图中
+     * 每个不同的名称只访问一次符号表，边按类型打包后批量写入，每个分段只加锁一次。
+     */
+    void merge(FileContribution contribution) {
+        if (contribution == null) {
+            return;
+        }
+        int[] globalIds = new int[contribution.nameCount()];
+        for (int i = 0; i < globalIds.length; i++) {
+            globalIds[i] = symbols.intern(contribution.name(i));
+        }
+
+        for (int i = 0; i < contribution.nodeCount(); i++) {
+            symbols.mark(globalIds[contribution.nodeName(i)], contribution.nodeKind(i));
         }
 
-        // 添加实现的接口
-        if (classDecl.getImplementedTypes().isNonEmpty()) {
-            signature.append(" implements ");
-            for (int i = 0; i < classDecl.getImplementedTypes().size(); i++) {
-                if (i > 0) {
-                    signature.append(", ");
+        int edgeCount = contribution.edgeCount();
+        if (edgeCount > 0) {
+            Edge.EdgeType[] types = Edge.EdgeType.values();
+            int[] counts = new int[types.length];
+            for (int i = 0; i < edgeCount; i++) {
+                counts[contribution.edgeType(i).ordinal()]++;
+            }
+            long[][] packedByType = new long[types.length][];
+            for (int t = 0; t < types.length; t++) {
+                packedByType[t] = new long[counts[t]];
+                counts[t] = 0;
+            }
+            for (int i = 0; i < edgeCount; i++) {
+                int t = contribution.edgeType(i).ordinal();
+                packedByType[t][counts[t]++] = EdgeStore.pack(
+                        globalIds[contribution.edgeSource(i)], globalIds[contribution.edgeTarget(i)]);
+            }
+            for (int t = 0; t < types.length; t++) {
+                if (counts[t] > 0) {
+                    edgeStore.addAll(types[t], packedByType[t], counts[t]);
                 }
-                signature.append(classDecl.getImplementedTypes().get(i).toString());
             }
         }
 
-        return signature.toString();
+        for (int i = 0; i < contribution.propertyCount(); i++) {
+            int id = globalIds[contribution.propertyNode(i)];
+            PropertyStore.Column column = contribution.propertyColumn(i);
+            if (column.isInt()) {
+                properties.setInt(id, column, contribution.propertyInt(i));
+            } else {
+                properties.setString(id, column, contribution.propertyString(i));
+            }
+        }
+
+        FileReferences references = references(contribution, globalIds);
+        if (references != null) {
+            pendingReferences.add(references);
+        }
+        if (retainedContributions != null && contribution.getSource() != null) {
+            contribution.setReferences(references);
+            retainedContributions.put(contribution.getSource(), contribution);
+        }
+    }
+
+    /**
+     * 把贡献中的引用按全局ID重写成紧凑的记录，没有引用时返回null
+     */
+    private FileReferences references(FileContribution contribution, int[] globalIds) {
+        if (contribution.typeReferenceCount() == 0 && contribution.memberReferenceCount() == 0) {
+            return null;
+        }
+        return FileReferences.of(contribution, globalIds,
+                signature -> argumentSignatures.computeIfAbsent(signature, key -> key));
+    }
+
+    /**
+     * 解析单个Java文件的源码，返回该文件对图的贡献；解析失败时返回null
+     * hash是文件内容的SHA-256，为null时由源码计算。
+     */
+    FileContribution parseSource(Path filePath, String source, byte[] hash) {
+        return parseSource(filePath, source, hash, new FileContribution());
     }
 
     /**
-     * 提取枚举签名
+     * 解析单个源文件，把它对图的贡献写入给定的贡献对象；解析失败时返回null
      */
-    private String extractEnumSignature(EnumDeclaration enumDecl) {
-        StringBuilder signature = new StringBuilder();
+    FileContribution parseSource(Path filePath, String source, byte[] hash, FileContribution target) {
+        try {
+            if (!quiet) {
+                System.out.println("解析文件: " + SourceRoots.location(filePath));
+            }
+            ParseResult<CompilationUnit> result = parserPool.get().parse(source);
+            CompilationUnit cu = result.getResult().orElseThrow(() -> new IllegalStateException(
+                    result.getProblems().isEmpty() ? "无法解析" : result.getProblem(0).getVerboseMessage()));
+            String fileName = SourceRoots.key(filePath);
+            FileContribution contribution = SourceExtractor.extract(cu, fileName, callGraphEnabled, target,
+                    samePackageTypes(filePath, cu, target));
+            addFileProperties(contribution, filePath, fileName,
+                    hash != null ? hash : BuildCache.hash(source.getBytes(StandardCharsets.UTF_8)));
+            contribution.addIntProperty(fileName, PropertyStore.Column.LOC, lineCount(source));
+            return contribution;
+        } catch (Exception e) {
+            System.err.println("解析文件 " + SourceRoots.location(filePath) + " 时出错: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 简单类名是否是同包中其他文件声明的顶层类型：在源码路径上查找对应的源文件，
+     * 查找过的文件和结果记入贡献，同一个文件中重复的查找只访问一次文件系统
+     */
+    private Predicate<String> samePackageTypes(Path filePath, CompilationUnit cu, FileContribution contribution) {
+        String packageName = cu.getPackageDeclaration().map(pd -> pd.getNameAsString()).orElse("");
+        Map<String, Boolean> found = new HashMap<>();
+        return simpleName -> found.computeIfAbsent(simpleName, name -> {
+            boolean present = false;
+            for (Path candidate : sourcePath.candidates(filePath, packageName, name)) {
+                boolean exists = Files.isRegularFile(candidate);
+                contribution.addSourcePathCheck(SourceRoots.key(candidate), exists);
+                present |= exists;
+            }
+            return present;
+        });
+    }
 
-        // 添加访问修饰符
-        if (enumDecl.getModifiers().isNonEmpty()) {
-            enumDecl.getModifiers().forEach(modifier ->
-                    signature.append(modifier.toString()).append(" "));
+    /**
+     * 读取单个class文件，返回它对图的贡献；读取失败时返回null
+     * hash是文件内容的SHA-256，为null时由内容计算。class文件没有行数属性。
+     */
+    FileContribution parseClassFile(Path filePath, byte[] content, byte[] hash) {
+        try {
+            if (!quiet) {
+                System.out.println("读取class文件: " + SourceRoots.location(filePath));
+            }
+            String fileName = SourceRoots.key(filePath);
+            FileContribution contribution = ClassFileReader.read(content, fileName);
+            if (contribution.contains(fileName)) {
+                // 跳过的匿名类、局部类和编译器生成的类没有文件节点
+                addFileProperties(contribution, filePath, fileName, hash != null ? hash : BuildCache.hash(content));
+            }
+            return contribution;
+        } catch (RuntimeException e) {
+            System.err.println("读取class文件 " + SourceRoots.location(filePath) + " 时出错: " + e.getMessage());
+            e.printStackTrace();
+            return null;
         }
+    }
 
-        // 添加enum关键字和名称
-        signature.append("enum ").append(enumDecl.getNameAsString());
+    private static void addFileProperties(FileContribution contribution, Path filePath, String fileName, byte[] hash) {
+        contribution.addStringProperty(fileName, PropertyStore.Column.PATH, SourceRoots.location(filePath));
+        contribution.addStringProperty(fileName, PropertyStore.Column.HASH, HexFormat.of().formatHex(hash));
+    }
+
+    /**
+     * 源码的行数，末尾没有换行符的最后一行也计入
+     */
+    static int lineCount(String source) {
+        int lines = 0;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return source.isEmpty() || source.charAt(source.length() - 1) == '\n' ? lines : lines + 1;
+    }
 
-        // 添加实现的接口
-        if (enumDecl.getImplementedTypes().isNonEmpty()) {
-            signature.append(" implements ");
-            for (int i = 0; i < enumDecl.getImplementedTypes().size(); i++) {
-                if (i > 0) {
-                    signature.append(", ");
+    /**
+     * 全局解析阶段：所有文件合并后已知类已经确定，按各文件的导入索引在已知类中常数时间查找，
+     * 找不到时（JDK或依赖中的类型）再交给符号求解器，最后才退回猜测
+     * 符号求解器解析出的类型不是源码中的类，记为外部类型并作为Class节点加入图中；猜测出的类型不生成节点，
+     * 指向它们的边导出时被丢弃。外部类型在所有引用解析完之后才加入，不影响本轮其他引用在已知类中的查找。
+     * 监视模式下外部类型节点按解析到它的引用计数（见countResolved），这里不直接加入。
+     */
+    private void resolveTypeReferences(Collection<FileReferences> pending) {
+        LongAdder known = new LongAdder();
+        LongAdder solved = new LongAdder();
+        LongAdder guessed = new LongAdder();
+        Set<Integer> solvedTargets = ConcurrentHashMap.newKeySet();
+        pending.parallelStream().forEach(references -> {
+            ImportIndex imports = references.imports();
+            for (int i = 0; i < references.typeReferenceCount(); i++) {
+                String typeName = symbols.name(references.typeReferenceName(i));
+                String target = imports.resolve(typeName, this::isKnownClass);
+                boolean external = false;
+                if (target != null) {
+                    known.increment();
+                } else if (typeResolver != null && (target = typeResolver.resolve(typeName, imports)) != null) {
+                    solved.increment();
+                    external = true;
+                } else {
+                    target = imports.guess(typeName);
+                    guessed.increment();
                 }
-                signature.append(enumDecl.getImplementedTypes().get(i).toString());
+                int targetId = symbols.intern(target);
+                if (external) {
+                    solvedTargets.add(targetId);
+                }
+                edgeStore.add(references.typeReferenceType(i), references.typeReferenceSource(i), targetId);
+                references.setTypeReferenceTarget(i, targetId);
+            }
+        });
+        externalClasses.addAll(solvedTargets);
+        if (nodeRefs == null) {
+            for (int id : solvedTargets) {
+                symbols.mark(id, NodeKind.CLASS);
             }
         }
+        metrics.add(BuildMetrics.Counter.TYPE_REFERENCES, known.sum() + solved.sum() + guessed.sum());
+        System.out.println("继承/实现类型解析：已知类 " + known.sum() + " 个，符号求解器 " + solved.sum()
+                + " 个（外部类型节点 " + solvedTargets.size() + " 个），按导入猜测 " + guessed.sum() + " 个");
+    }
 
-        return signature.toString();
+    /**
+     * 全局解析阶段：确定方法调用和字段读写的目标
+     * 所属类型按导入索引解析后，沿继承/实现关系查找同名的字段，或同名且与实参相符的方法（见selectOverload）；
+     * 通过super访问时从所属类型的直接父类型开始查找。
+     * (种类, 类型, 是否super, 成员名, 实参类型提示) 的查找结果记录在有界缓存中，有上限的只是这个缓存；
+     * 待解析的引用记录（见FileReferences）随调用点数量线性增长。
+     */
+    private void resolveMemberReferences(Collection<FileReferences> pending) {
+        Map<Integer, int[]> supertypes = collectSupertypes();
+        Map<String, int[]> overloads = collectOverloads();
+        BoundedCache<String, int[]> memberCache = new BoundedCache<>(resolutionCacheSize);
+        LongAdder resolved = new LongAdder();
+        LongAdder ambiguous = new LongAdder();
+        LongAdder unresolved = new LongAdder();
+        pending.parallelStream().forEach(references -> {
+            ImportIndex imports = references.imports();
+            for (int i = 0; i < references.memberReferenceCount(); i++) {
+                int ownerId = references.memberReferenceOwner(i);
+                if (references.isMemberReferenceOwnerWritten(i)) {
+                    String owner = imports.resolve(symbols.name(ownerId), this::isKnownClass);
+                    ownerId = owner == null ? -1 : symbols.find(owner);
+                }
+                if (ownerId < 0) {
+                    references.setMemberReferenceTargets(i, new int[0]);
+                    unresolved.increment();
+                    continue;
+                }
+                Edge.EdgeType type = references.memberReferenceType(i);
+                NodeKind kind = type == Edge.EdgeType.CALLS ? NodeKind.METHOD : NodeKind.FIELD;
+                String member = symbols.simpleName(references.memberReferenceName(i));
+                int arity = references.memberReferenceArity(i);
+                String argumentTypes = references.memberReferenceArgumentTypes(i);
+                boolean superOwner = references.isMemberReferenceOwnerSuper(i);
+                int classId = ownerId;
+                int[] targets = memberCache.get(kind.ordinal() + (superOwner ? "super:" : "") + ownerId + "#" + member
+                                + "/" + arity + ":" + argumentTypes,
+                        key -> findMember(classId, superOwner, member, arity, ArgumentTypes.split(argumentTypes),
+                                kind, supertypes, overloads));
+                references.setMemberReferenceTargets(i, targets);
+                if (targets.length == 0) {
+                    unresolved.increment();
+                    continue;
+                }
+                for (int target : targets) {
+                    edgeStore.add(type, references.memberReferenceSource(i), target);
+                }
+                resolved.increment();
+                if (targets.length > 1) {
+                    ambiguous.increment();
+                }
+            }
+        });
+        metrics.add(BuildMetrics.Counter.MEMBER_REFERENCES_RESOLVED, resolved.sum());
+        metrics.add(BuildMetrics.Counter.MEMBER_REFERENCES_UNRESOLVED, unresolved.sum());
+        System.out.println("调用/字段访问解析：确定 " + resolved.sum() + " 个（其中 " + ambiguous.sum()
+                + " 个有多个同样符合的重载），无法确定 " + unresolved.sum()
+                + " 个，缓存" + String.format("命中率 %.1f%%", memberCache.hitRate() * 100));
     }
 
     /**
-     * 提取方法签名
+     * 类ID -> 直接父类和接口的ID
      */
-    private String extractMethodSignature(MethodDeclaration method) {
-        StringBuilder signature = new StringBuilder();
+    private Map<Integer, int[]> collectSupertypes() {
+        Map<Integer, int[]> supertypes = new HashMap<>();
+        for (Edge.EdgeType type : List.of(Edge.EdgeType.EXTENDS, Edge.EdgeType.IMPLEMENTS)) {
+            PrimitiveIterator.OfLong it = edgeStore.iterator(type);
+            while (it.hasNext()) {
+                long edge = it.nextLong();
+                int[] existing = supertypes.get(EdgeStore.source(edge));
+                int[] updated = existing == null ? new int[1] : Arrays.copyOf(existing, existing.length + 1);
+                updated[updated.length - 1] = EdgeStore.target(edge);
+                supertypes.put(EdgeStore.source(edge), updated);
+            }
+        }
+        return supertypes;
+    }
 
-        // 添加访问修饰符
-        if (method.getModifiers().isNonEmpty()) {
-            method.getModifiers().forEach(modifier ->
-                    signature.append(modifier.toString()).append(" "));
+    /**
+     * "类ID#方法名" -> 该类中这个名字的各个重载方法的ID，按节点名排序
+     */
+    private Map<String, int[]> collectOverloads() {
+        Map<String, int[]> overloads = new HashMap<>();
+        PrimitiveIterator.OfLong it = edgeStore.iterator(Edge.EdgeType.CONTAINS_METHOD);
+        while (it.hasNext()) {
+            long edge = it.nextLong();
+            int method = EdgeStore.target(edge);
+            String key = EdgeStore.source(edge) + "#" + MethodDescriptor.methodName(symbols.simpleName(method));
+            int[] existing = overloads.get(key);
+            int[] updated = existing == null ? new int[1] : Arrays.copyOf(existing, existing.length + 1);
+            updated[updated.length - 1] = method;
+            overloads.put(key, updated);
+        }
+        for (int[] methods : overloads.values()) {
+            if (methods.length > 1) {
+                int[] sorted = Arrays.stream(methods).boxed()
+                        .sorted(Comparator.comparing(symbols::simpleName))
+                        .mapToInt(Integer::intValue).toArray();
+                System.arraycopy(sorted, 0, methods, 0, methods.length);
+            }
         }
+        return overloads;
+    }
 
-        // 添加类型参数（泛型）
-        if (method.getTypeParameters().isNonEmpty()) {
-            signature.append("<");
-            for (int i = 0; i < method.getTypeParameters().size(); i++) {
-                if (i > 0) {
-                    signature.append(", ");
+    /**
+     * 在一个类的同名重载中选择与实参相符的方法
+     * 先看参数个数等于实参个数的，再看最后一个参数为数组、可以作为可变参数接收这些实参的；
+     * 按实参类型提示给每个候选打分（见ArgumentTypes），排除有不兼容实参的，保留得分最高的。
+     * 提示不足以区分时同样符合的重载全部返回，调用点对每个都连边；提示排除了所有候选时不看类型，只按参数个数选择。
+     * 没有符合的返回空数组
+     */
+    private int[] selectOverload(int[] methods, int arity, String[] argumentTypes) {
+        if (methods == null) {
+            return new int[0];
+        }
+        String[] unknown = new String[arity];
+        Arrays.fill(unknown, ArgumentTypes.UNKNOWN);
+        for (String[] hints : List.of(argumentTypes.length == arity ? argumentTypes : unknown, unknown)) {
+            for (boolean varargs : new boolean[]{false, true}) {
+                int[] best = bestOverloads(methods, hints, varargs);
+                if (best.length > 0) {
+                    return best;
                 }
-                signature.append(method.getTypeParameters().get(i).toString());
             }
-            signature.append("> ");
         }
+        return new int[0];
+    }
 
-        // 添加返回类型和方法名
-        signature.append(method.getType().toString())
-                .append(" ")
-                .append(method.getNameAsString());
-
-        // 添加参数列表
-        signature.append("(");
-        for (int i = 0; i < method.getParameters().size(); i++) {
-            if (i > 0) {
-                signature.append(", ");
+    private int[] bestOverloads(int[] methods, String[] argumentTypes, boolean varargs) {
+        int bestScore = -1;
+        List<Integer> best = new ArrayList<>();
+        for (int method : methods) {
+            String segment = symbols.simpleName(method);
+            String[] parameters = MethodDescriptor.parameterTypes(segment);
+            int score = 0;
+            if (varargs) {
+                if (!MethodDescriptor.endsWithArray(segment) || argumentTypes.length < parameters.length - 1) {
+                    continue;
+                }
+                String last = parameters[parameters.length - 1];
+                String component = last.substring(0, last.length() - 2);
+                for (int i = 0; i < argumentTypes.length && score >= 0; i++) {
+                    int argumentScore = ArgumentTypes.score(argumentTypes[i],
+                            i < parameters.length - 1 ? parameters[i] : component);
+                    score = argumentScore == ArgumentTypes.INCOMPATIBLE ? -1 : score + argumentScore;
+                }
+            } else {
+                if (parameters.length != argumentTypes.length) {
+                    continue;
+                }
+                for (int i = 0; i < argumentTypes.length && score >= 0; i++) {
+                    int argumentScore = ArgumentTypes.score(argumentTypes[i], parameters[i]);
+                    score = argumentScore == ArgumentTypes.INCOMPATIBLE ? -1 : score + argumentScore;
+                }
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best.clear();
+            }
+            if (score >= 0 && score == bestScore) {
+                best.add(method);
             }
-            Parameter param = method.getParameters().get(i);
-            signature.append(param.toString());
         }
-        signature.append(")");
+        return best.stream().mapToInt(Integer::intValue).toArray();
+    }
 
-        // 添加throws声明
-        if (method.getThrownExceptions().isNonEmpty()) {
-            signature.append(" throws ");
-            for (int i = 0; i < method.getThrownExceptions().size(); i++) {
-                if (i > 0) {
-                    signature.append(", ");
+    /**
+     * 从给定类开始沿继承/实现关系广度优先查找成员，返回最先找到的类中符合的成员，找不到返回空数组
+     * skipSelf为true（super.x）时从给定类的直接父类型开始，给定类本身不参与查找。
+     */
+    private int[] findMember(int classId, boolean skipSelf, String member, int arity, String[] argumentTypes,
+                             NodeKind kind, Map<Integer, int[]> supertypes, Map<String, int[]> overloads) {
+        Deque<Integer> queue = new ArrayDeque<>();
+        Set<Integer> visited = new HashSet<>();
+        if (skipSelf) {
+            visited.add(classId);
+            for (int supertype : supertypes.getOrDefault(classId, new int[0])) {
+                queue.add(supertype);
+            }
+        } else {
+            queue.add(classId);
+        }
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+            if (kind == NodeKind.METHOD) {
+                int[] methods = selectOverload(overloads.get(current + "#" + member), arity, argumentTypes);
+                if (methods.length > 0) {
+                    return methods;
+                }
+            } else {
+                int id = symbols.findChild(current, member);
+                if (id >= 0 && symbols.hasKind(id, kind)) {
+                    return new int[]{id};
                 }
-                signature.append(method.getThrownExceptions().get(i).toString());
+            }
+            for (int supertype : supertypes.getOrDefault(current, new int[0])) {
+                queue.add(supertype);
             }
         }
+        return new int[0];
+    }
 
-        return signature.toString();
+    private boolean isKnownClass(String name) {
+        int id = symbols.find(name);
+        return id >= 0 && symbols.hasKind(id, NodeKind.CLASS);
     }
 
     /**
-     * 提取字段签名
+     * 监视源码目录，文件新增、修改或删除时增量更新图，每批变化写成一个Cypher脚本到 outputDirectory/deltas
+     * 需先调用setWatchEnabled(true)并完成一次完整解析。源码包不会变化，不监视。此方法一直运行到线程被中断。
      */
-    private String extractFieldSignature(FieldDeclaration field, VariableDeclarator var) {
-        StringBuilder signature = new StringBuilder();
+    public void watch(List<String> sourcePaths, String outputDirectory, long debounceMillis) {
+        if (retainedContributions == null) {
+            System.err.println("监视模式需要在解析前启用");
+            return;
+        }
+        if (edgeStore.isSpilling()) {
+            System.err.println("边集合已溢出到磁盘，不支持删除边，不能启用监视模式");
+            return;
+        }
+        List<Path> directories = new ArrayList<>();
+        for (String path : sourcePaths) {
+            Path root = Path.of(path);
+            if (SourceRoots.isArchive(root)) {
+                System.out.println("源码包不会变化，不监视: " + path);
+                // 源码包的zip文件系统已在解析结束后关闭，符号求解器不能再读取其中的文件
+                typeResolver = null;
+            } else {
+                directories.add(root);
+            }
+        }
+        if (directories.isEmpty()) {
+            System.err.println("没有可监视的目录");
+            return;
+        }
 
-        // 添加访问修饰符
-        if (field.getModifiers().isNonEmpty()) {
-            field.getModifiers().forEach(modifier ->
-                    signature.append(modifier.toString()).append(" "));
+        initRefCounts();
+        CypherDeltaWriter writer = new CypherDeltaWriter(symbols, properties, integerIds);
+        GraphWatcher watcher = new GraphWatcher(this, directories, Path.of(outputDirectory, "deltas"), writer,
+                bytecode, debounceMillis);
+        try {
+            watcher.run();
+        } catch (IOException e) {
+            System.err.println("监视目录时出错: " + e.getMessage());
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("监视已停止");
         }
+    }
 
-        // 添加类型和变量名
-        signature.append(var.getType().toString())
-                .append(" ")
-                .append(var.getNameAsString());
+    boolean isRetained(String source) {
+        return retainedContributions.containsKey(source);
+    }
 
-        // 添加初始化值（如果有）
-        var.getInitializer().ifPresent(init ->
-                signature.append(" = ").append(init.toString()));
+    /**
+     * 给定目录下所有保留了贡献的文件的键，用于目录被整体删除的情况
+     */
+    List<String> retainedSourcesUnder(String directoryKey) {
+        String prefix = directoryKey.endsWith(File.separator) ? directoryKey : directoryKey + File.separator;
+        List<String> sources = new ArrayList<>();
+        for (String source : retainedContributions.keySet()) {
+            if (source.startsWith(prefix)) {
+                sources.add(source);
+            }
+        }
+        return sources;
+    }
 
-        return signature.toString();
+    /**
+     * 提取时查找过给定文件的已保留文件的键：这些文件出现或消失后，同包类型的判断可能变化，需要重新提取
+     */
+    List<String> retainedSourcesChecking(Collection<String> keys) {
+        List<String> sources = new ArrayList<>();
+        for (Map.Entry<String, FileContribution> e : retainedContributions.entrySet()) {
+            for (String key : keys) {
+                if (e.getValue().checkedSourcePath(key)) {
+                    sources.add(e.getKey());
+                    break;
+                }
+            }
+        }
+        return sources;
     }
 
     /**
-     * 提取位置信息
+     * 应用一批文件变化：文件的键映射到新的贡献，已删除的文件映射到null；返回这批变化对图的净影响
+     * 先撤回旧贡献的边和节点，再合并新贡献。已知类、方法或字段有变化时，其他文件的引用可能解析到不同的目标，
+     * 此时重新解析所有文件的引用，否则只解析变化的文件。
      */
-    private void extractLocationInfo(String nodeName, Node node) {
-        node.getRange().ifPresent(range -> {
-            Position begin = range.begin;
-            Position end = range.end;
+    GraphDelta applyChanges(Map<String, FileContribution> changes) {
+        GraphDelta delta = new GraphDelta();
+        List<FileContribution> removed = new ArrayList<>();
+        List<FileContribution> added = new ArrayList<>();
+        for (Map.Entry<String, FileContribution> change : changes.entrySet()) {
+            FileContribution old = retainedContributions.remove(change.getKey());
+            if (old != null) {
+                removed.add(old);
+            }
+            if (change.getValue() != null) {
+                change.getValue().setSource(change.getKey());
+                added.add(change.getValue());
+            }
+        }
 
-            addNodeProperty(nodeName, "startLine", String.valueOf(begin.line));
-            addNodeProperty(nodeName, "endLine", String.valueOf(end.line));
-//            addNodeProperty(nodeName, "startColumn", String.valueOf(begin.column));
-//            addNodeProperty(nodeName, "endColumn", String.valueOf(end.column));
+        // 先撤回所有旧边再撤回节点，移除的边按撤回前的节点种类记录ID空间
+        for (FileContribution old : removed) {
+            retractEdges(old, delta);
+        }
+        for (FileContribution old : removed) {
+            retractNodes(old, delta);
+        }
+        for (FileContribution contribution : added) {
+            addCounted(contribution, delta);
+            retainedContributions.put(contribution.getSource(), contribution);
+        }
+        // 属性在新贡献合并后才清空，修改后仍然存在的节点按属性值是否变化判断是否需要更新
+        for (long key : delta.nodes(-1)) {
+            int id = GraphDelta.nodeId(key);
+            if (symbols.kindMask(id) == 0) {
+                properties.clear(id);
+            }
+        }
 
-            // 计算代码块长度（行数）
-//            int lineCount = end.line - begin.line + 1;
-//            addNodeProperty(nodeName, "lineCount", String.valueOf(lineCount));
-        });
+        // 撤回范围内旧的解析结果，重新解析后再计数；新贡献还没有解析结果，撤回时跳过
+        List<FileReferences> typeScope = withReferences(delta.hasNodeChanges(NodeKind.CLASS)
+                ? retainedContributions.values() : added);
+        for (FileReferences references : typeScope) {
+            retractResolved(references, true, false, delta);
+        }
+        resolveTypeReferences(typeScope);
+        for (FileReferences references : typeScope) {
+            countResolved(references, true, false, delta);
+        }
+
+        if (callGraphEnabled) {
+            boolean targetsChanged = delta.hasNodeChanges(NodeKind.CLASS, NodeKind.METHOD, NodeKind.FIELD)
+                    || delta.hasEdgeChanges(Edge.EdgeType.EXTENDS) || delta.hasEdgeChanges(Edge.EdgeType.IMPLEMENTS);
+            List<FileReferences> memberScope = withReferences(targetsChanged ? retainedContributions.values() : added);
+            for (FileReferences references : memberScope) {
+                retractResolved(references, false, true, delta);
+            }
+            resolveMemberReferences(memberScope);
+            for (FileReferences references : memberScope) {
+                countResolved(references, false, true, delta);
+            }
+        }
+
+        revealEdges(delta);
+        return delta;
+    }
+
+    private static List<FileReferences> withReferences(Collection<FileContribution> contributions) {
+        List<FileReferences> result = new ArrayList<>();
+        for (FileContribution contribution : contributions) {
+            if (contribution.getReferences() != null) {
+                result.add(contribution.getReferences());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按保留的贡献建立引用计数；此时图中已经包含这些节点和边，只计数不修改
+     */
+    private void initRefCounts() {
+        nodeRefs = new RefCounts();
+        edgeRefs = new RefCounts[Edge.EdgeType.values().length];
+        for (int t = 0; t < edgeRefs.length; t++) {
+            edgeRefs[t] = new RefCounts();
+        }
+        for (FileContribution contribution : retainedContributions.values()) {
+            addCounted(contribution, null);
+            if (contribution.getReferences() != null) {
+                countResolved(contribution.getReferences(), true, true, null);
+            }
+        }
     }
 
     /**
-     * 添加节点属性
+     * 计入一个文件的节点、边和属性；delta不为null时，计数从0变为1的节点和边加入图中并记入delta
      */
-    private void addNodeProperty(String nodeName, String propertyName, String propertyValue) {
-        nodeProperties.computeIfAbsent(nodeName, k -> new ConcurrentHashMap<>())
-                .put(propertyName, propertyValue);
+    private void addCounted(FileContribution contribution, GraphDelta delta) {
+        int[] globalIds = new int[contribution.nameCount()];
+        for (int i = 0; i < globalIds.length; i++) {
+            globalIds[i] = symbols.intern(contribution.name(i));
+        }
+        if (contribution.getReferences() == null) {
+            contribution.setReferences(references(contribution, globalIds));
+        }
+        for (int i = 0; i < contribution.nodeCount(); i++) {
+            int id = globalIds[contribution.nodeName(i)];
+            NodeKind kind = contribution.nodeKind(i);
+            if (nodeRefs.increment(GraphDelta.nodeKey(id, kind)) == 1 && delta != null) {
+                symbols.mark(id, kind);
+                delta.nodeAdded(id, kind);
+            }
+        }
+        for (int i = 0; i < contribution.edgeCount(); i++) {
+            Edge.EdgeType type = contribution.edgeType(i);
+            int source = globalIds[contribution.edgeSource(i)];
+            int target = globalIds[contribution.edgeTarget(i)];
+            if (edgeRefs[type.ordinal()].increment(EdgeStore.pack(source, target)) == 1 && delta != null) {
+                edgeStore.add(type, source, target);
+                delta.edgeAdded(type, EdgeStore.pack(source, target));
+            }
+        }
+        if (delta == null) {
+            return;
+        }
+        // 只记录值真正变化的属性，修改一个方法体不会重写整个文件所有节点的属性
+        for (int i = 0; i < contribution.propertyCount(); i++) {
+            int id = globalIds[contribution.propertyNode(i)];
+            PropertyStore.Column column = contribution.propertyColumn(i);
+            if (column.isInt()) {
+                if (properties.getInt(id, column) != contribution.propertyInt(i)) {
+                    properties.setInt(id, column, contribution.propertyInt(i));
+                    delta.propertiesChanged(id);
+                }
+            } else if (!contribution.propertyString(i).equals(properties.getString(id, column))) {
+                properties.setString(id, column, contribution.propertyString(i));
+                delta.propertiesChanged(id);
+            }
+        }
+    }
+
+    /**
+     * 撤回一个文件的边，包括它的引用解析出的边
+     */
+    private void retractEdges(FileContribution contribution, GraphDelta delta) {
+        for (int i = 0; i < contribution.edgeCount(); i++) {
+            decrementEdge(contribution.edgeType(i), symbols.find(contribution.name(contribution.edgeSource(i))),
+                    symbols.find(contribution.name(contribution.edgeTarget(i))), delta);
+        }
+        if (contribution.getReferences() != null) {
+            retractResolved(contribution.getReferences(), true, true, delta);
+        }
+    }
+
+    /**
+     * 撤回一个文件的节点，没有其他文件贡献的节点从图中移除
+     */
+    private void retractNodes(FileContribution contribution, GraphDelta delta) {
+        for (int i = 0; i < contribution.nodeCount(); i++) {
+            int id = symbols.find(contribution.name(contribution.nodeName(i)));
+            NodeKind kind = contribution.nodeKind(i);
+            if (nodeRefs.decrement(GraphDelta.nodeKey(id, kind)) == 0) {
+                symbols.unmark(id, kind);
+                delta.nodeRemoved(id, kind);
+            }
+        }
+    }
+
+    private void retractResolved(FileReferences references, boolean types, boolean members, GraphDelta delta) {
+        if (types) {
+            for (int i = 0; i < references.typeReferenceCount(); i++) {
+                int target = references.typeReferenceTarget(i);
+                if (target >= 0) {
+                    decrementEdge(references.typeReferenceType(i), references.typeReferenceSource(i), target, delta);
+                    if (externalClasses.contains(target)
+                            && nodeRefs.decrement(GraphDelta.nodeKey(target, NodeKind.CLASS)) == 0) {
+                        symbols.unmark(target, NodeKind.CLASS);
+                        delta.nodeRemoved(target, NodeKind.CLASS);
+                    }
+                }
+            }
+        }
+        if (members) {
+            for (int i = 0; i < references.memberReferenceCount(); i++) {
+                for (int target : references.memberReferenceTargets(i)) {
+                    decrementEdge(references.memberReferenceType(i), references.memberReferenceSource(i), target, delta);
+                }
+            }
+        }
     }
 
     /**
-     * 尝试解析完整类型名称
+     * 计入引用解析出的边；解析时边已经加入图中，这里只计数
+     * 外部类型节点按解析到它的类型引用计数，delta不为null时计数从0变为1的节点加入图中并记入delta
      */
-    private String resolveTypeName(String typeName, CompilationUnit cu) {
-        // 检查是否为已导入的类型
-        for (ImportDeclaration importDecl : cu.getImports()) {
-            String importName = importDecl.getName().asString();
-            if (importName.endsWith("." + typeName)) {
-                return importName;
+    private void countResolved(FileReferences references, boolean types, boolean members, GraphDelta delta) {
+        if (types) {
+            for (int i = 0; i < references.typeReferenceCount(); i++) {
+                int target = references.typeReferenceTarget(i);
+                if (target >= 0) {
+                    countResolvedEdge(references.typeReferenceType(i), references.typeReferenceSource(i), target, delta);
+                    if (externalClasses.contains(target)
+                            && nodeRefs.increment(GraphDelta.nodeKey(target, NodeKind.CLASS)) == 1 && delta != null) {
+                        symbols.mark(target, NodeKind.CLASS);
+                        delta.nodeAdded(target, NodeKind.CLASS);
+                    }
+                }
             }
-            // 处理通配符导入
-            if (importName.endsWith(".*")) {
-                String packageName = importName.substring(0, importName.length() - 2);
-                // 我们不能确定这是否是正确的完整路径，但这是最佳猜测
-                return packageName + "." + typeName;
+        }
+        if (members) {
+            for (int i = 0; i < references.memberReferenceCount(); i++) {
+                for (int target : references.memberReferenceTargets(i)) {
+                    countResolvedEdge(references.memberReferenceType(i), references.memberReferenceSource(i), target, delta);
+                }
             }
         }
+    }
 
-        // 如果找不到导入，假设它在同一个包中
-        return cu.getPackageDeclaration()
-                .map(pd -> pd.getName().asString() + "." + typeName)
-                .orElse(typeName);
+    private void countResolvedEdge(Edge.EdgeType type, int source, int target, GraphDelta delta) {
+        long edge = EdgeStore.pack(source, target);
+        if (edgeRefs[type.ordinal()].increment(edge) == 1 && delta != null) {
+            delta.edgeAdded(type, edge);
+        }
+    }
+
+    private void decrementEdge(Edge.EdgeType type, int source, int target, GraphDelta delta) {
+        long edge = EdgeStore.pack(source, target);
+        if (edgeRefs[type.ordinal()].decrement(edge) == 0) {
+            edgeStore.remove(type, source, target);
+            delta.edgeRemoved(type, edge, idSpace(symbols.kindMask(source), preferredSourceKind(type)),
+                    idSpace(symbols.kindMask(target), preferredTargetKind(type)));
+        }
+    }
+
+    /**
+     * 新出现的节点可能让图中已有的边变得可见（例如这次才加入的类早已被其他类继承），这些边按新增写出
+     */
+    private void revealEdges(GraphDelta delta) {
+        BitSet appeared = new BitSet();
+        for (long key : delta.nodes(1)) {
+            appeared.set(GraphDelta.nodeId(key));
+        }
+        if (appeared.isEmpty()) {
+            return;
+        }
+        for (Edge.EdgeType type : Edge.EdgeType.values()) {
+            PrimitiveIterator.OfLong it = edgeStore.iterator(type);
+            while (it.hasNext()) {
+                long edge = it.nextLong();
+                if (appeared.get(EdgeStore.source(edge)) || appeared.get(EdgeStore.target(edge))) {
+                    delta.edgeRevealed(type, edge);
+                }
+            }
+        }
     }
 
     /**
@@ -400,17 +1295,18 @@ public class GraphBuilder {
         try {
             Files.createDirectories(Path.of(directory));
 
-            // 导出包节点
-            exportNodeTypeWithProperties(directory + "/packages.csv", packages, "Package", "Package");
-
-            // 导出类节点
-            exportNodeTypeWithProperties(directory + "/classes.csv", classes, "Class", "Class");
-
-            // 导出方法节点
-            exportNodeTypeWithProperties(directory + "/methods.csv", methods, "Method", "Method");
-
-            // 导出字段节点
-            exportNodeTypeWithProperties(directory + "/fields.csv", fields, "Field", "Field");
+            // 各种节点文件互不依赖，并发写出
+            runConcurrently(List.of(
+                    // 导出包节点
+                    () -> exportNodeTypeWithProperties(directory + "/" + csvFileName("packages"), NodeKind.PACKAGE),
+                    // 导出类节点
+                    () -> exportNodeTypeWithProperties(directory + "/" + csvFileName("classes"), NodeKind.CLASS),
+                    // 导出方法节点
+                    () -> exportNodeTypeWithProperties(directory + "/" + csvFileName("methods"), NodeKind.METHOD),
+                    // 导出字段节点
+                    () -> exportNodeTypeWithProperties(directory + "/" + csvFileName("fields"), NodeKind.FIELD),
+                    // 导出文件节点
+                    () -> exportNodeTypeWithProperties(directory + "/" + csvFileName("files"), NodeKind.FILE)));
 
             System.out.println("已导出所有节点数据到 " + directory);
         } catch (IOException e) {
@@ -420,202 +1316,428 @@ public class GraphBuilder {
     }
 
     /**
-     * 导出带属性的节点类型
+     * 导出带属性的节点类型，属性列及其顺序由节点种类决定
      */
-    private void exportNodeTypeWithProperties(String filePath, Set<String> nodes, String label, String idSpace) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        // 基本CSV头部
-        sb.append("nodeId:ID(").append(idSpace).append("),name");
-
-        // 收集此节点类型的所有可能属性
-        Set<String> propertyKeys = new HashSet<>();
-        for (String node : nodes) {
-            Map<String, String> props = nodeProperties.getOrDefault(node, Collections.emptyMap());
-            propertyKeys.addAll(props.keySet());
-        }
-
-        // 添加所有属性作为列
-        for (String key : propertyKeys) {
-            sb.append(",").append(key);
-        }
+    private void exportNodeTypeWithProperties(String filePath, NodeKind kind) throws IOException {
+        List<PropertyStore.Column> columns = PropertyStore.columnsFor(kind);
+        String label = kind.getLabel();
+        int count = 0;
+
+        try (Writer out = newCsvWriter(Path.of(filePath))) {
+            // 基本CSV头部
+            out.write("nodeId:ID(" + label + "),name");
+
+            // 添加所有属性作为列
+            for (PropertyStore.Column column : columns) {
+                out.write(",");
+                out.write(column.getHeader());
+            }
 
-        // 添加标签列
-        sb.append(",:LABEL\n");
+            // 添加标签列
+            out.write(",:LABEL\n");
 
-        // 添加所有节点行
-        for (String node : nodes) {
-            // 基本ID和名称
-            sb.append(escapeCSV(node)).append(",")
-                    .append(escapeCSV(node));
+            // 按ID顺序逐行写出该种类的所有节点
+            int limit = symbols.size();
+            for (int id = 0; id < limit; id++) {
+                if (!symbols.hasKind(id, kind)) {
+                    continue;
+                }
+                // 基本ID和名称，整数ID模式下ID为符号表中的稠密ID
+                String escapedNode = escapeCSV(symbols.name(id));
+                out.write(integerIds ? Integer.toString(id) : escapedNode);
+                out.write(",");
+                out.write(escapedNode);
+
+                // 添加所有属性值，整数列无需转义
+                for (PropertyStore.Column column : columns) {
+                    out.write(",");
+                    String value = properties.format(id, column);
+                    out.write(column.isInt() ? value : escapeCSV(value));
+                }
 
-            // 添加所有属性值
-            Map<String, String> props = nodeProperties.getOrDefault(node, Collections.emptyMap());
-            for (String key : propertyKeys) {
-                String value = props.getOrDefault(key, "");
-                sb.append(",").append(escapeCSV(value));
+                // 添加标签
+                out.write(",");
+                out.write(label);
+                out.write("\n");
+                count++;
             }
-
-            // 添加标签
-            sb.append(",").append(label).append("\n");
         }
-
-        Files.writeString(Path.of(filePath), sb.toString());
-        System.out.println("已导出 " + nodes.size() + " 个 " + label + " 节点到 " + filePath);
+        System.out.println("已导出 " + count + " 个 " + label + " 节点到 " + filePath);
     }
 
     /**
      * 导出关系数据到CSV格式，符合Neo4j导入格式
      */
     public void exportRelationshipsToCsv(String filePath) {
-        try {
-            StringBuilder sb = new StringBuilder();
+        try (Writer out = newCsvWriter(Path.of(filePath))) {
             // 添加ID空间引用到START_ID和END_ID
-            sb.append(":START_ID,:END_ID,:TYPE\n");
+            out.write(":START_ID,:END_ID,:TYPE\n");
 
-            for (Edge edge : edges) {
-                // 确定起点和终点的ID空间
-                String sourceIdSpace = determineIdSpace(edge.getSource());
-                String targetIdSpace = determineIdSpace(edge.getTarget());
-
-                // 添加带有ID空间的起点和终点
-                sb.append(escapeCSV(edge.getSource())).append(",")
-                        .append(escapeCSV(edge.getTarget())).append(",")
-                        .append(edge.getType()).append("\n");
-            }
-
-            Files.writeString(Path.of(filePath), sb.toString());
-            System.out.println("已导出 " + edges.size() + " 条关系到 " + filePath);
+            writeAllRelationshipRows(out);
         } catch (IOException e) {
             System.err.println("导出关系数据时出错: " + e.getMessage());
             e.printStackTrace();
+            return;
         }
+        System.out.println("已导出 " + edges.size() + " 条关系到 " + filePath);
     }
 
     /**
-     * 根据节点名称确定其所属的ID空间
+     * 按类型逐桶写出所有关系
      */
-    private String determineIdSpace(String nodeName) {
-        // 确定节点所属的类型（包、类、方法或字段）
-        if (packages.contains(nodeName)) {
-            return "Package";
-        } else if (classes.contains(nodeName)) {
-            return "Class";
-        } else if (methods.contains(nodeName)) {
-            return "Method";
-        } else if (fields.contains(nodeName)) {
-            return "Field";
+    private void writeAllRelationshipRows(Writer out) throws IOException {
+        for (Edge.EdgeType type : Edge.EdgeType.values()) {
+            PrimitiveIterator.OfLong it = edgeStore.iterator(type);
+            while (it.hasNext()) {
+                long edge = it.nextLong();
+                writeRelationshipRow(out, symbols.name(EdgeStore.source(edge)), symbols.name(EdgeStore.target(edge)), type);
+            }
         }
-        // 如果找不到匹配的类型，默认返回空
-        return "";
+    }
+
+    /**
+     * 写出一行关系数据
+     */
+    private void writeRelationshipRow(Writer out, String source, String target, Edge.EdgeType type) throws IOException {
+        out.write(escapeCSV(source));
+        out.write(",");
+        out.write(escapeCSV(target));
+        out.write(",");
+        out.write(type.name());
+        out.write("\n");
     }
 
     /**
      * 导出所有数据（节点和关系）为Neo4j导入格式
      */
+    @SuppressWarnings("try")
     public void exportToNeo4j(String outputDirectory) {
-        try {
+        try (BuildMetrics.PhaseTimer timer = metrics.start(BuildMetrics.Phase.EXPORT)) {
             Files.createDirectories(Path.of(outputDirectory));
 
             // 导出节点
             exportNodesToCsv(outputDirectory);
 
-            // 创建修正的关系文件，使用ID空间
-            exportCorrectRelationships(outputDirectory);
+            // 创建修正的关系文件，使用ID空间；整数ID模式下按ID空间拆分关系文件
+            if (integerIds) {
+                exportRelationshipsWithIdSpaces(outputDirectory);
+            } else {
+                exportCorrectRelationships(outputDirectory);
+            }
+            if (inheritsFromExport) {
+                exportInheritsFrom(outputDirectory);
+            }
 
             // 创建Neo4j导入命令示例文件
             createImportCommandFile(outputDirectory);
 
             System.out.println("已完成所有Neo4j格式数据导出到 " + outputDirectory);
         } catch (IOException e) {
+            metrics.increment(BuildMetrics.Counter.ERRORS);
             System.err.println("导出Neo4j数据时出错: " + e.getMessage());
             e.printStackTrace();
         }
+        writeMetrics(outputDirectory);
+    }
+
+    /**
+     * 在导出目录中写出机器可读的构建度量metrics.json
+     */
+    private void writeMetrics(String outputDirectory) {
+        Map<String, Integer> nodeCounts = new LinkedHashMap<>();
+        for (NodeKind kind : NodeKind.values()) {
+            nodeCounts.put(kind.getLabel(), symbols.count(kind));
+        }
+        Map<String, Integer> edgeCounts = new LinkedHashMap<>();
+        for (Edge.EdgeType type : Edge.EdgeType.values()) {
+            edgeCounts.put(type.name(), edgeStore.size(type));
+        }
+        Path file = Path.of(outputDirectory, "metrics.json");
+        try {
+            metrics.writeJson(file, nodeCounts, edgeCounts);
+            System.out.println("已写出构建度量到 " + file);
+        } catch (IOException e) {
+            System.err.println("写出构建度量时出错: " + e.getMessage());
+            e.printStackTrace();
+        }
     }
 
     /**
      * 导出正确的关系数据，处理ID空间
      */
     private void exportCorrectRelationships(String outputDirectory) throws IOException {
-        // 为不同类型的关系创建单独的文件
-        Map<Edge.EdgeType, List<Edge>> relationshipsByType = edges.stream()
-                .collect(Collectors.groupingBy(Edge::getType));
-
-        for (Map.Entry<Edge.EdgeType, List<Edge>> entry : relationshipsByType.entrySet()) {
-            String relType = entry.getKey().toString();
-            String filePath = outputDirectory + "/" + relType.toLowerCase() + "_rels.csv";
-
-            StringBuilder sb = new StringBuilder();
-            // 添加带有ID空间的标题行
-            sb.append(":START_ID,:END_ID,:TYPE\n");
-
-            for (Edge edge : entry.getValue()) {
-                String sourceIdSpace = determineIdSpace(edge.getSource());
-                String targetIdSpace = determineIdSpace(edge.getTarget());
-
-                // 仅当能确定ID空间时才添加关系
-                if (!sourceIdSpace.isEmpty() && !targetIdSpace.isEmpty()) {
-                    sb.append(escapeCSV(edge.getSource())).append(",")
-                            .append(escapeCSV(edge.getTarget())).append(",")
-                            .append(edge.getType()).append("\n");
-                }
+        // 为不同类型的关系创建单独的文件，每种类型直接遍历自己的桶，各文件并发写出
+        List<ExportTask> tasks = new ArrayList<>();
+        for (Edge.EdgeType type : Edge.EdgeType.values()) {
+            int count = edgeStore.size(type);
+            if (count == 0) {
+                continue;
             }
-
-            Files.writeString(Path.of(filePath), sb.toString());
-            System.out.println("已导出 " + entry.getValue().size() + " 条 " + relType + " 关系到 " + filePath);
+            String filePath = outputDirectory + "/" + csvFileName(type.toString().toLowerCase() + "_rels");
+            tasks.add(() -> {
+                try (Writer out = newCsvWriter(Path.of(filePath))) {
+                    // 添加带有ID空间的标题行
+                    out.write(":START_ID,:END_ID,:TYPE\n");
+
+                    PrimitiveIterator.OfLong it = edgeStore.iterator(type);
+                    while (it.hasNext()) {
+                        long edge = it.nextLong();
+                        int source = EdgeStore.source(edge);
+                        int target = EdgeStore.target(edge);
+
+                        // 仅当能确定ID空间时才添加关系
+                        if (symbols.kindMask(source) != 0 && symbols.kindMask(target) != 0) {
+                            writeRelationshipRow(out, symbols.name(source), symbols.name(target), type);
+                        }
+                    }
+                }
+                System.out.println("已导出 " + count + " 条 " + type + " 关系到 " + filePath);
+            });
         }
+        runConcurrently(tasks);
     }
 
     /**
      * 创建支持ID空间的关系导出文件
+     * 每种关系按 (起点ID空间, 终点ID空间) 拆分成独立文件，表头为 :START_ID(Space),:END_ID(Space)。
+     * 所有节点的种类掩码在导出前统一读取一次，写出每条边时只需数组访问。
+     * 一个节点ID有多种类型时（如与类同名的包），按关系类型选择端点所在的ID空间（如PACKAGE_CONTAINS的起点取Package）。
      */
     private void exportRelationshipsWithIdSpaces(String outputDirectory) throws IOException {
-        Map<Edge.EdgeType, List<Edge>> relationshipsByType = edges.stream()
-                .collect(Collectors.groupingBy(Edge::getType));
+        byte[] kindMasks = new byte[symbols.size()];
+        for (int id = 0; id < kindMasks.length; id++) {
+            kindMasks[id] = (byte) symbols.kindMask(id);
+        }
+        NodeKind[] kinds = NodeKind.values();
 
-        for (Map.Entry<Edge.EdgeType, List<Edge>> entry : relationshipsByType.entrySet()) {
-            String relType = entry.getKey().toString();
-            String filePath = outputDirectory + "/" + relType.toLowerCase() + "_rels.csv";
+        List<ExportTask> tasks = new ArrayList<>();
+        for (Edge.EdgeType type : Edge.EdgeType.values()) {
+            if (edgeStore.size(type) == 0) {
+                continue;
+            }
+            String relType = type.toString();
+            NodeKind preferredSource = preferredSourceKind(type);
+            NodeKind preferredTarget = preferredTargetKind(type);
+            tasks.add(() -> {
+                Writer[][] writers = new Writer[kinds.length][kinds.length];
+                int[][] counts = new int[kinds.length][kinds.length];
+                try {
+                    PrimitiveIterator.OfLong it = edgeStore.iterator(type);
+                    while (it.hasNext()) {
+                        long edge = it.nextLong();
+                        int source = EdgeStore.source(edge);
+                        int target = EdgeStore.target(edge);
+                        int sourceSpace = idSpace(kindMasks[source], preferredSource);
+                        int targetSpace = idSpace(kindMasks[target], preferredTarget);
+
+                        // 仅当能确定ID空间时才添加关系
+                        if (sourceSpace < 0 || targetSpace < 0) {
+                            continue;
+                        }
+                        Writer out = writers[sourceSpace][targetSpace];
+                        if (out == null) {
+                            out = newCsvWriter(Path.of(idSpaceFileName(outputDirectory, relType,
+                                    kinds[sourceSpace], kinds[targetSpace])));
+                            writers[sourceSpace][targetSpace] = out;
+                            // 使用正确的ID空间引用
+                            out.write(":START_ID(" + kinds[sourceSpace].getLabel() + "),:END_ID("
+                                    + kinds[targetSpace].getLabel() + "),:TYPE\n");
+                        }
+                        out.write(integerIds ? Integer.toString(source) : escapeCSV(symbols.name(source)));
+                        out.write(",");
+                        out.write(integerIds ? Integer.toString(target) : escapeCSV(symbols.name(target)));
+                        out.write(",");
+                        out.write(relType);
+                        out.write("\n");
+                        counts[sourceSpace][targetSpace]++;
+                    }
+                } finally {
+                    for (Writer[] row : writers) {
+                        for (Writer out : row) {
+                            if (out != null) {
+                                out.close();
+                            }
+                        }
+                    }
+                }
 
-            // 收集此类型关系的有效关系（源和目标都有ID空间）
-            List<Triple<String, String, String>> validRels = new ArrayList<>();
+                for (NodeKind sourceKind : kinds) {
+                    for (NodeKind targetKind : kinds) {
+                        int count = counts[sourceKind.ordinal()][targetKind.ordinal()];
+                        if (count > 0) {
+                            System.out.println("已导出 " + count + " 条 " + relType + " 关系 (从 " + sourceKind.getLabel()
+                                    + " 到 " + targetKind.getLabel() + ") 到 "
+                                    + idSpaceFileName(outputDirectory, relType, sourceKind, targetKind));
+                        }
+                    }
+                }
+            });
+        }
+        runConcurrently(tasks);
+    }
 
-            for (Edge edge : entry.getValue()) {
-                String sourceIdSpace = determineIdSpace(edge.getSource());
-                String targetIdSpace = determineIdSpace(edge.getTarget());
+    /**
+     * 写出继承闭包INHERITS_FROM：由类型层次索引并行计算每个类的所有祖先和最短层数，按块的顺序写出
+     * 只写出两端都是类的关系，端点ID空间固定为Class。
+     * 同时在计算的块不超过线程数的两倍，写出线程按顺序等待最早提交的块，内存中只有这个窗口内的块。
+     */
+    private void exportInheritsFrom(String outputDirectory) throws IOException {
+        long start = System.nanoTime();
+        TypeHierarchy hierarchy = GraphIndex.build(symbols, edgeStore).typeHierarchy();
+        int nodeCount = symbols.size();
+        int chunks = (nodeCount + INHERITS_FROM_CHUNK - 1) / INHERITS_FROM_CHUNK;
+        int threads = Runtime.getRuntime().availableProcessors();
+        LongAdder rows = new LongAdder();
+
+        String filePath = integerIds
+                ? idSpaceFileName(outputDirectory, "INHERITS_FROM", NodeKind.CLASS, NodeKind.CLASS)
+                : outputDirectory + "/" + csvFileName("inherits_from_rels");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (Writer out = newCsvWriter(Path.of(filePath))) {
+            String label = NodeKind.CLASS.getLabel();
+            out.write(integerIds ? ":START_ID(" + label + "),:END_ID(" + label + "),depth:int,:TYPE\n"
+                    : ":START_ID,:END_ID,depth:int,:TYPE\n");
+            Deque<Future<String>> window = new ArrayDeque<>();
+            int next = 0;
+            while (next < chunks || !window.isEmpty()) {
+                while (next < chunks && window.size() < threads * 2) {
+                    int chunk = next++;
+                    window.add(executor.submit(() -> inheritsFromBlock(hierarchy, chunk, nodeCount, rows)));
+                }
+                out.write(await(window.poll()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.println("已导出 " + rows.sum() + " 条 INHERITS_FROM 关系到 " + filePath + "（层次中 " + hierarchy.size()
+                + " 个类型，多重继承补充 " + hierarchy.extraPairCount() + " 对祖先，用时 "
+                + (System.nanoTime() - start) / 1_000_000 + " ms）");
+    }
 
-                if (!sourceIdSpace.isEmpty() && !targetIdSpace.isEmpty()) {
-                    validRels.add(new Triple<>(edge.getSource(), edge.getTarget(), sourceIdSpace + "," + targetIdSpace));
+    /**
+     * 第chunk块ID范围内的类的INHERITS_FROM行
+     */
+    private String inheritsFromBlock(TypeHierarchy hierarchy, int chunk, int nodeCount, LongAdder rows) {
+        StringBuilder sb = new StringBuilder();
+        for (int id = chunk * INHERITS_FROM_CHUNK; id < Math.min(nodeCount, (chunk + 1) * INHERITS_FROM_CHUNK); id++) {
+            if (!hierarchy.contains(id) || !symbols.hasKind(id, NodeKind.CLASS)) {
+                continue;
+            }
+            String source = integerIds ? Integer.toString(id) : escapeCSV(symbols.name(id));
+            int[] depths = hierarchy.ancestorDepths(id);
+            for (int i = 0; i < depths.length; i += 2) {
+                int ancestor = depths[i];
+                if (!symbols.hasKind(ancestor, NodeKind.CLASS)) {
+                    continue;
                 }
+                sb.append(source).append(',')
+                        .append(integerIds ? Integer.toString(ancestor) : escapeCSV(symbols.name(ancestor)))
+                        .append(',').append(depths[i + 1]).append(",INHERITS_FROM\n");
+                rows.increment();
             }
+        }
+        return sb.toString();
+    }
+
+    private String idSpaceFileName(String outputDirectory, String relType, NodeKind sourceKind, NodeKind targetKind) {
+        return outputDirectory + "/" + csvFileName(relType.toLowerCase() + "_" +
+                sourceKind.getLabel().toLowerCase() + "_to_" +
+                targetKind.getLabel().toLowerCase());
+    }
+
+    /**
+     * 节点所在的ID空间（NodeKind序号）：具有首选种类时取首选种类，否则取主种类，无法确定时为-1
+     */
+    static int idSpace(int kindMask, NodeKind preferred) {
+        if ((kindMask & preferred.mask()) != 0) {
+            return preferred.ordinal();
+        }
+        NodeKind kind = NodeKind.primary(kindMask);
+        return kind == null ? -1 : kind.ordinal();
+    }
 
-            // 按ID空间组合分组
-            Map<String, List<Triple<String, String, String>>> relsByIdSpaces = validRels.stream()
-                    .collect(Collectors.groupingBy(Triple::getThird));
+    static NodeKind preferredSourceKind(Edge.EdgeType type) {
+        return switch (type) {
+            case PACKAGE_CONTAINS -> NodeKind.PACKAGE;
+            case CALLS, READS, WRITES -> NodeKind.METHOD;
+            case IMPORT, DECLARES -> NodeKind.FILE;
+            default -> NodeKind.CLASS;
+        };
+    }
 
-            // 为每个ID空间组合创建一个文件
-            for (Map.Entry<String, List<Triple<String, String, String>>> idSpaceGroup : relsByIdSpaces.entrySet()) {
-                String[] idSpaces = idSpaceGroup.getKey().split(",");
-                String sourceIdSpace = idSpaces[0];
-                String targetIdSpace = idSpaces[1];
+    static NodeKind preferredTargetKind(Edge.EdgeType type) {
+        return switch (type) {
+            case CONTAINS_METHOD, CALLS -> NodeKind.METHOD;
+            case CONTAINS_FIELD, READS, WRITES -> NodeKind.FIELD;
+            default -> NodeKind.CLASS;
+        };
+    }
 
-                String idSpaceFilePath = outputDirectory + "/" + relType.toLowerCase() + "_" +
-                        sourceIdSpace.toLowerCase() + "_to_" +
-                        targetIdSpace.toLowerCase() + ".csv";
+    /**
+     * 根据是否压缩决定导出文件的扩展名
+     */
+    private String csvFileName(String baseName) {
+        return baseName + (compressOutput ? ".csv.gz" : ".csv");
+    }
 
-                StringBuilder sb = new StringBuilder();
-                // 使用正确的ID空间引用
-                sb.append(":START_ID(" + sourceIdSpace + "),:END_ID(" + targetIdSpace + "),:TYPE\n");
+    /**
+     * 打开带缓冲的CSV写出流，文件名以.gz结尾时使用gzip压缩
+     */
+    private static Writer newCsvWriter(Path path) throws IOException {
+        OutputStream out = Files.newOutputStream(path);
+        if (path.getFileName().toString().endsWith(".gz")) {
+            out = new GZIPOutputStream(out, EXPORT_BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+    }
 
-                for (Triple<String, String, String> rel : idSpaceGroup.getValue()) {
-                    sb.append(escapeCSV(rel.getFirst())).append(",")
-                            .append(escapeCSV(rel.getSecond())).append(",")
-                            .append(relType).append("\n");
-                }
+    /**
+     * 写出单个导出文件的任务
+     */
+    @FunctionalInterface
+    private interface ExportTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * 并发执行多个导出任务，每个任务写一个独立的文件
+     */
+    private static void runConcurrently(List<ExportTask> tasks) throws IOException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (ExportTask task : tasks) {
+                futures.add(executor.submit(() -> {
+                    task.run();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                Files.writeString(Path.of(idSpaceFilePath), sb.toString());
-                System.out.println("已导出 " + idSpaceGroup.getValue().size() + " 条 " + relType +
-                        " 关系 (从 " + sourceIdSpace + " 到 " + targetIdSpace + ") 到 " + idSpaceFilePath);
+    /**
+     * 等待导出任务完成并取得结果，任务中的IOException原样抛出
+     */
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("导出被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
             }
+            throw new IOException(e.getCause());
         }
     }
 
@@ -630,15 +1752,16 @@ public class GraphBuilder {
         // Neo4j 5.x语法
         command.append("# Neo4j 5.x\n");
         command.append("neo4j-admin database import full \\\n");
-        command.append("  --nodes=").append(directory).append("/packages.csv \\\n");
-        command.append("  --nodes=").append(directory).append("/classes.csv \\\n");
-        command.append("  --nodes=").append(directory).append("/methods.csv \\\n");
-        command.append("  --nodes=").append(directory).append("/fields.csv \\\n");
+        command.append("  --nodes=").append(directory).append("/").append(csvFileName("packages")).append(" \\\n");
+        command.append("  --nodes=").append(directory).append("/").append(csvFileName("classes")).append(" \\\n");
+        command.append("  --nodes=").append(directory).append("/").append(csvFileName("methods")).append(" \\\n");
+        command.append("  --nodes=").append(directory).append("/").append(csvFileName("fields")).append(" \\\n");
+        command.append("  --nodes=").append(directory).append("/").append(csvFileName("files")).append(" \\\n");
 
         // 递归查找目录中所有关系文件
         try {
             List<Path> relationshipFiles = Files.walk(Path.of(directory))
-                    .filter(p -> p.toString().endsWith(".csv") && !p.getFileName().toString().matches("(packages|classes|methods|fields)\\.csv"))
+                    .filter(p -> p.toString().matches(".*\\.csv(\\.gz)?") && !p.getFileName().toString().matches("(packages|classes|methods|fields|files)\\.csv(\\.gz)?"))
                     .collect(Collectors.toList());
 
             for (Path relFile : relationshipFiles) {
@@ -648,7 +1771,7 @@ public class GraphBuilder {
             // 如果无法列出文件，则使用一个通用模板
             for (Edge.EdgeType type : Edge.EdgeType.values()) {
                 command.append("  --relationships=").append(directory).append("/")
-                        .append(type.toString().toLowerCase()).append("_*.csv \\\n");
+                        .append(csvFileName(type.toString().toLowerCase() + "_*")).append(" \\\n");
             }
         }
 
@@ -657,22 +1780,23 @@ public class GraphBuilder {
         command.append("  --quote=\"\\\"\" \\\n");
         command.append("  --multiline-fields=true \\\n");
         command.append("  --ignore-empty-strings=true \\\n");
-        command.append("  --id-type=string \\\n");
+        command.append("  --id-type=").append(integerIds ? "integer" : "string").append(" \\\n");
         command.append("  --database=java-knowledge\n\n");
 
         // Neo4j 4.x语法
         command.append("# Neo4j 4.x\n");
         command.append("neo4j-admin import \\\n");
         command.append("  --database=java-knowledge \\\n");
-        command.append("  --nodes=").append(directory).append("/packages.csv \\\n");
-        command.append("  --nodes=").append(directory).append("/classes.csv \\\n");
-        command.append("  --nodes=").append(directory).append("/methods.csv \\\n");
-        command.append("  --nodes=").append(directory).append("/fields.csv \\\n");
+        command.append("  --nodes=").append(directory).append("/").append(csvFileName("packages")).append(" \\\n");
+        command.append("  --nodes=").append(directory).append("/").append(csvFileName("classes")).append(" \\\n");
+        command.append("  --nodes=").append(directory).append("/").append(csvFileName("methods")).append(" \\\n");
+        command.append("  --nodes=").append(directory).append("/").append(csvFileName("fields")).append(" \\\n");
+        command.append("  --nodes=").append(directory).append("/").append(csvFileName("files")).append(" \\\n");
 
         // 再次添加关系文件，但使用Neo4j 4.x语法
         try {
             List<Path> relationshipFiles = Files.walk(Path.of(directory))
-                    .filter(p -> p.toString().endsWith(".csv") && !p.getFileName().toString().matches("(packages|classes|methods|fields)\\.csv"))
+                    .filter(p -> p.toString().matches(".*\\.csv(\\.gz)?") && !p.getFileName().toString().matches("(packages|classes|methods|fields|files)\\.csv(\\.gz)?"))
                     .collect(Collectors.toList());
 
             for (Path relFile : relationshipFiles) {
@@ -681,14 +1805,14 @@ public class GraphBuilder {
         } catch (IOException e) {
             for (Edge.EdgeType type : Edge.EdgeType.values()) {
                 command.append("  --relationships=").append(directory).append("/")
-                        .append(type.toString().toLowerCase()).append("_*.csv \\\n");
+                        .append(csvFileName(type.toString().toLowerCase() + "_*")).append(" \\\n");
             }
         }
 
         command.append("  --delimiter=\",\" \\\n");
         command.append("  --array-delimiter=\";\" \\\n");
         command.append("  --quote=\"\\\"\" \\\n");
-        command.append("  --id-type=string\n");
+        command.append("  --id-type=").append(integerIds ? "integer" : "string").append("\n");
 
         Files.writeString(Path.of(directory + "/import-command.txt"), command.toString());
 
@@ -726,13 +1850,29 @@ public class GraphBuilder {
         sb.append("WHERE NOT (parent)-[:EXTENDS]->() // 找到最顶层的父类\n");
         sb.append("RETURN path;\n\n");
 
+        sb.append("// 7. 查找被调用最多的方法\n");
+        sb.append("MATCH (caller:Method)-[:CALLS]->(m:Method)\n");
+        sb.append("RETURN m.name AS method, count(caller) AS callers\n");
+        sb.append("ORDER BY callers DESC LIMIT 10;\n\n");
+
+        sb.append("// 8. 查找声明某个类的文件及该文件导入的类\n");
+        sb.append("MATCH (f:File)-[:DECLARES]->(c:Class {name: 'com.example.Foo'})\n");
+        sb.append("OPTIONAL MATCH (f)-[:IMPORT]->(i:Class)\n");
+        sb.append("RETURN f.path AS file, f.loc AS loc, collect(i.name) AS imports;\n\n");
+
+        if (inheritsFromExport) {
+            sb.append("// 9. 查找直接和间接的所有子类（使用预先计算的继承闭包，无需展开路径）\n");
+            sb.append("MATCH (sub:Class)-[r:INHERITS_FROM]->(c:Class {name: 'com.example.Base'})\n");
+            sb.append("RETURN sub.name AS subclass, r.depth AS depth ORDER BY depth;\n\n");
+        }
+
         Files.writeString(Path.of(directory + "/cypher-examples.txt"), sb.toString());
     }
 
     /**
      * 转义CSV字段中的特殊字符
      */
-    private String escapeCSV(String value) {
+    static String escapeCSV(String value) {
         if (value == null) {
             return "";
         }
@@ -749,22 +1889,16 @@ public class GraphBuilder {
      * 导出到CSV格式（旧版本保留，用于向后兼容）
      */
     public void exportToCsv(String filePath) {
-        try {
-            StringBuilder sb = new StringBuilder();
-            sb.append("Source,Target,Type\n");
+        try (Writer out = newCsvWriter(Path.of(filePath))) {
+            out.write("Source,Target,Type\n");
 
-            for (Edge edge : edges) {
-                sb.append(escapeCSV(edge.getSource())).append(",")
-                        .append(escapeCSV(edge.getTarget())).append(",")
-                        .append(edge.getType()).append("\n");
-            }
-
-            Files.writeString(Path.of(filePath), sb.toString());
-            System.out.println("已导出图数据到 " + filePath);
+            writeAllRelationshipRows(out);
         } catch (IOException e) {
             System.err.println("导出CSV时出错: " + e.getMessage());
             e.printStackTrace();
+            return;
         }
+        System.out.println("已导出图数据到 " + filePath);
     }
 
     public Set<String> getPackages() {
@@ -783,34 +1917,119 @@ public class GraphBuilder {
         return fields;
     }
 
+    public Set<String> getFiles() {
+        return files;
+    }
+
+    /**
+     * 所有边的只读视图，修改方法抛出UnsupportedOperationException
+     * 设置了边缓冲区预算时，size和遍历会先归并溢出的顺串，contains在归并后的顺串文件上二分查找，每次都要读盘。
+     */
     public Set<Edge> getEdges() {
         return edges;
     }
 
     /**
-     * 简单的Triple类，用于存储关系的源、目标和ID空间信息
+     * 某种节点的只读视图，遍历时按ID顺序扫描符号表
      */
-    private static class Triple<A, B, C> {
-        private final A first;
-        private final B second;
-        private final C third;
+    private class NodeSetView extends AbstractSet<String> {
+        private final NodeKind kind;
 
-        public Triple(A first, B second, C third) {
-            this.first = first;
-            this.second = second;
-            this.third = third;
+        NodeSetView(NodeKind kind) {
+            this.kind = kind;
         }
 
-        public A getFirst() {
-            return first;
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String name)) {
+                return false;
+            }
+            int id = symbols.find(name);
+            return id >= 0 && symbols.hasKind(id, kind);
         }
 
-        public B getSecond() {
-            return second;
+        @Override
+        public int size() {
+            return symbols.count(kind);
         }
 
-        public C getThird() {
-            return third;
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<>() {
+                private final int limit = symbols.size();
+                private int nextId = advance(0);
+
+                private int advance(int from) {
+                    while (from < limit && !symbols.hasKind(from, kind)) {
+                        from++;
+                    }
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return nextId < limit;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    String name = symbols.name(nextId);
+                    nextId = advance(nextId + 1);
+                    return name;
+                }
+            };
+        }
+    }
+
+    /**
+     * 边集合的只读视图，遍历时才按需创建Edge对象
+     */
+    private class EdgeSetView extends AbstractSet<Edge> {
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Edge edge)) {
+                return false;
+            }
+            int source = symbols.find(edge.getSource());
+            int target = symbols.find(edge.getTarget());
+            return source >= 0 && target >= 0 && edgeStore.contains(edge.getType(), source, target);
+        }
+
+        @Override
+        public int size() {
+            return edgeStore.size();
+        }
+
+        @Override
+        public Iterator<Edge> iterator() {
+            return new Iterator<>() {
+                private final Edge.EdgeType[] types = Edge.EdgeType.values();
+                private int typeIndex;
+                private PrimitiveIterator.OfLong current = edgeStore.iterator(types[0]);
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext()) {
+                        if (++typeIndex >= types.length) {
+                            return false;
+                        }
+                        current = edgeStore.iterator(types[typeIndex]);
+                    }
+                    return true;
+                }
+
+                @Override
+                public Edge next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    long edge = current.nextLong();
+                    return new Edge(symbols.name(EdgeStore.source(edge)), symbols.name(EdgeStore.target(edge)), types[typeIndex]);
+                }
+            };
         }
     }
 }
@@ -0,0 +1,197 @@
+package codex.graphbuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 一批文件变化对图的净影响：新增和移除的节点、属性有变化的节点、新增和移除的边
+ * 同一批中先移除后又加回的节点或边互相抵消，不出现在结果中。
+ * 移除的边在移除时就记下两端的ID空间，写出时端点可能已经不在图中。
+ */
+class GraphDelta {
+    private static final Edge.EdgeType[] TYPES = Edge.EdgeType.values();
+
+    // 节点：键为 ID<<8|种类序号，值为净变化（+1新增，-1移除）
+    private final Map<Long, Integer> nodes = new LinkedHashMap<>();
+    private final Set<Integer> propertyNodes = new LinkedHashSet<>();
+
+    // 边：每种类型一个表，键为打包后的边
+    private final List<Map<Long, EdgeChange>> edges = new ArrayList<>();
+
+    GraphDelta() {
+        for (int i = 0; i < TYPES.length; i++) {
+            edges.add(new LinkedHashMap<>());
+        }
+    }
+
+    static long nodeKey(int id, NodeKind kind) {
+        return ((long) id << 8) | kind.ordinal();
+    }
+
+    static int nodeId(long key) {
+        return (int) (key >>> 8);
+    }
+
+    static NodeKind nodeKind(long key) {
+        return NodeKind.values()[(int) (key & 0xFF)];
+    }
+
+    void nodeAdded(int id, NodeKind kind) {
+        changeNode(nodeKey(id, kind), 1);
+    }
+
+    void nodeRemoved(int id, NodeKind kind) {
+        changeNode(nodeKey(id, kind), -1);
+    }
+
+    void propertiesChanged(int id) {
+        propertyNodes.add(id);
+    }
+
+    void edgeAdded(Edge.EdgeType type, long edge) {
+        changeEdge(type, edge, 1, -1, -1);
+    }
+
+    /**
+     * 记录移除的边，sourceSpace和targetSpace是移除时两端的ID空间，-1表示该端当时就不是节点
+     */
+    void edgeRemoved(Edge.EdgeType type, long edge, int sourceSpace, int targetSpace) {
+        changeEdge(type, edge, -1, sourceSpace, targetSpace);
+    }
+
+    /**
+     * 端点新出现后变得可见的已有边，按新增写出（写出的语句可以重复执行）
+     */
+    void edgeRevealed(Edge.EdgeType type, long edge) {
+        edges.get(type.ordinal()).putIfAbsent(edge, new EdgeChange(edge, 1, -1, -1));
+    }
+
+    private void changeNode(long key, int change) {
+        nodes.merge(key, change, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private void changeEdge(Edge.EdgeType type, long edge, int change, int sourceSpace, int targetSpace) {
+        Map<Long, EdgeChange> changes = edges.get(type.ordinal());
+        EdgeChange existing = changes.get(edge);
+        if (existing == null) {
+            changes.put(edge, new EdgeChange(edge, change, sourceSpace, targetSpace));
+        } else if (existing.net + change == 0) {
+            changes.remove(edge);
+        } else {
+            existing.net += change;
+        }
+    }
+
+    /**
+     * 净新增（sign>0）或净移除（sign<0）的节点键
+     */
+    List<Long> nodes(int sign) {
+        List<Long> result = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : nodes.entrySet()) {
+            if (Integer.signum(entry.getValue()) == Integer.signum(sign)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    Set<Integer> propertyNodes() {
+        return propertyNodes;
+    }
+
+    /**
+     * 某种类型净新增（sign>0）或净移除（sign<0）的边
+     */
+    List<EdgeChange> edges(Edge.EdgeType type, int sign) {
+        List<EdgeChange> result = new ArrayList<>();
+        for (EdgeChange change : edges.get(type.ordinal()).values()) {
+            if (Integer.signum(change.net) == Integer.signum(sign)) {
+                result.add(change);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 是否有给定种类的节点新增或移除
+     */
+    boolean hasNodeChanges(NodeKind... kinds) {
+        for (long key : nodes.keySet()) {
+            for (NodeKind kind : kinds) {
+                if (nodeKind(key) == kind) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    boolean hasEdgeChanges(Edge.EdgeType type) {
+        return !edges.get(type.ordinal()).isEmpty();
+    }
+
+    int nodeCount(int sign) {
+        return nodes(sign).size();
+    }
+
+    int edgeCount(int sign) {
+        int count = 0;
+        for (Edge.EdgeType type : TYPES) {
+            count += edges(type, sign).size();
+        }
+        return count;
+    }
+
+    /**
+     * 变化的汇总，如"节点 +3 -1，属性变化 5，关系 +10 -2"
+     */
+    String describe() {
+        return "节点 +" + nodeCount(1) + " -" + nodeCount(-1) + "，属性变化 " + propertyNodes.size()
+                + "，关系 +" + edgeCount(1) + " -" + edgeCount(-1);
+    }
+
+    boolean isEmpty() {
+        if (!nodes.isEmpty() || !propertyNodes.isEmpty()) {
+            return false;
+        }
+        for (Map<Long, EdgeChange> changes : edges) {
+            if (!changes.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 一条边的净变化；新增的边写出时再按当时的节点种类确定ID空间
+     */
+    static final class EdgeChange {
+        private final long edge;
+        private int net;
+        private final int sourceSpace;
+        private final int targetSpace;
+
+        EdgeChange(long edge, int net, int sourceSpace, int targetSpace) {
+            this.edge = edge;
+            this.net = net;
+            this.sourceSpace = sourceSpace;
+            this.targetSpace = targetSpace;
+        }
+
+        long edge() {
+            return edge;
+        }
+
+        int sourceSpace() {
+            return sourceSpace;
+        }
+
+        int targetSpace() {
+            return targetSpace;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package codex.graphbuilder;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+
+/**
+ * 两个版本的图之间的差异：旧版本是快照，新版本是当前内存中的图，结果表示为GraphDelta
+ * 节点按名称连接：按ID顺序用（父ID，片段）在当前符号表的哈希索引中查找旧快照的每个名称，
+ * 当前图中没有的名称也登记到符号表（不标记种类），之后两边的节点和边都在同一个ID空间中比较。
+ * 节点种类、属性和每种边都按分块并行比较：旧的边映射后探测当前的边存储，同时建成哈希集合，
+ * 再由当前的边反向探测。两边都只比较导出时可见的边，即两端都能确定ID空间的边。
+ */
+class GraphDiff {
+    private static final int CHUNK_SIZE = 1 << 14;
+    private static final NodeKind[] KINDS = NodeKind.values();
+
+    private final GraphSnapshot old;
+    private final SymbolTable symbols;
+    private final EdgeStore edgeStore;
+    private final PropertyStore properties;
+
+    // 旧快照ID -> 当前ID，当前ID -> 旧快照ID（旧快照中没有时为-1）
+    private int[] oldToNew;
+    private int[] newToOld;
+
+    GraphDiff(GraphSnapshot old, SymbolTable symbols, EdgeStore edgeStore, PropertyStore properties) {
+        this.old = old;
+        this.symbols = symbols;
+        this.edgeStore = edgeStore;
+        this.properties = properties;
+    }
+
+    GraphDelta compute() {
+        mapNames();
+        GraphDelta delta = new GraphDelta();
+        compareNodes(delta);
+        compareProperties(delta);
+        for (Edge.EdgeType type : Edge.EdgeType.values()) {
+            compareEdges(type, delta);
+        }
+        return delta;
+    }
+
+    /**
+     * 父ID总是小于子ID，按ID顺序处理时父名称已经映射好，每个名称只需一次哈希查找
+     */
+    private void mapNames() {
+        oldToNew = new int[old.nodeCount()];
+        for (int id = 0; id < oldToNew.length; id++) {
+            int parent = old.parent(id);
+            oldToNew[id] = symbols.internChild(parent == SymbolTable.ROOT ? SymbolTable.ROOT : oldToNew[parent],
+                    old.simpleName(id));
+        }
+        newToOld = new int[symbols.size()];
+        Arrays.fill(newToOld, -1);
+        for (int id = 0; id < oldToNew.length; id++) {
+            newToOld[oldToNew[id]] = id;
+        }
+    }
+
+    private int oldKindMask(int newId) {
+        int oldId = newToOld[newId];
+        return oldId < 0 ? 0 : old.kindMask(oldId);
+    }
+
+    /**
+     * 种类掩码不同的节点：新图多出的种类为新增，旧图多出的种类为移除
+     */
+    private void compareNodes(GraphDelta delta) {
+        List<long[]> changed = inChunks(newToOld.length, (from, to) -> {
+            LongList result = new LongList();
+            for (int id = from; id < to; id++) {
+                int oldMask = oldKindMask(id);
+                int newMask = symbols.kindMask(id);
+                if (oldMask != newMask) {
+                    result.add(((long) id << 16) | (oldMask << 8) | newMask);
+                }
+            }
+            return result.toArray();
+        });
+        for (long[] chunk : changed) {
+            for (long entry : chunk) {
+                int id = (int) (entry >>> 16);
+                int oldMask = (int) (entry >>> 8) & 0xFF;
+                int newMask = (int) entry & 0xFF;
+                for (NodeKind kind : KINDS) {
+                    if ((newMask & ~oldMask & kind.mask()) != 0) {
+                        delta.nodeAdded(id, kind);
+                    } else if ((oldMask & ~newMask & kind.mask()) != 0) {
+                        delta.nodeRemoved(id, kind);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 两边都存在的节点中，任意一列属性的有无或取值不同的节点
+     * 旧快照的属性列是稀疏的（节点ID，值）条目，先按旧ID建立到条目下标的索引。
+     */
+    private void compareProperties(GraphDelta delta) {
+        List<PropertyStore.Column> columns = new ArrayList<>();
+        List<GraphSnapshot.PropertyColumn> oldColumns = new ArrayList<>();
+        List<int[]> oldEntries = new ArrayList<>();
+        for (GraphSnapshot.PropertyColumn oldColumn : old.propertyColumns()) {
+            PropertyStore.Column column = PropertyStore.Column.byHeader(oldColumn.name());
+            if (column == null) {
+                continue;
+            }
+            // 条目下标加一，0表示旧节点没有该属性
+            int[] entries = new int[old.nodeCount()];
+            for (int i = 0; i < oldColumn.size(); i++) {
+                entries[oldColumn.node(i)] = i + 1;
+            }
+            columns.add(column);
+            oldColumns.add(oldColumn);
+            oldEntries.add(entries);
+        }
+
+        List<long[]> changed = inChunks(newToOld.length, (from, to) -> {
+            LongList result = new LongList();
+            for (int id = from; id < to; id++) {
+                int oldId = newToOld[id];
+                if (oldId < 0 || old.kindMask(oldId) == 0 || symbols.kindMask(id) == 0) {
+                    continue;
+                }
+                for (int c = 0; c < columns.size(); c++) {
+                    if (!sameProperty(id, columns.get(c), oldColumns.get(c), oldEntries.get(c)[oldId] - 1)) {
+                        result.add(id);
+                        break;
+                    }
+                }
+            }
+            return result.toArray();
+        });
+        for (long[] chunk : changed) {
+            for (long id : chunk) {
+                delta.propertiesChanged((int) id);
+            }
+        }
+    }
+
+    private boolean sameProperty(int id, PropertyStore.Column column, GraphSnapshot.PropertyColumn oldColumn,
+                                 int oldEntry) {
+        boolean has = properties.has(id, column);
+        if (oldEntry < 0 || !has) {
+            return oldEntry < 0 && !has;
+        }
+        if (column.isInt()) {
+            return properties.getInt(id, column) == oldColumn.intValue(oldEntry);
+        }
+        return properties.getString(id, column).equals(oldColumn.value(oldEntry));
+    }
+
+    /**
+     * 一种边的差异：旧图可见而新图中不存在或端点ID空间不同的边为移除，反之为新增
+     */
+    private void compareEdges(Edge.EdgeType type, GraphDelta delta) {
+        NodeKind preferredSource = GraphBuilder.preferredSourceKind(type);
+        NodeKind preferredTarget = GraphBuilder.preferredTargetKind(type);
+
+        // 旧的边映射到当前ID空间，探测当前的边存储，同时建成哈希集合
+        LongBuffer oldEdges = old.edges(type);
+        ConcurrentLongSet visibleOld = new ConcurrentLongSet();
+        List<long[]> removed = inChunks(oldEdges.limit(), (from, to) -> {
+            LongList result = new LongList();
+            long[] mapped = new long[to - from];
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                long edge = oldEdges.get(i);
+                int oldSourceSpace = GraphBuilder.idSpace(old.kindMask(EdgeStore.source(edge)), preferredSource);
+                int oldTargetSpace = GraphBuilder.idSpace(old.kindMask(EdgeStore.target(edge)), preferredTarget);
+                // 旧版本导出时没有写出这条边
+                if (oldSourceSpace < 0 || oldTargetSpace < 0) {
+                    continue;
+                }
+                int source = oldToNew[EdgeStore.source(edge)];
+                int target = oldToNew[EdgeStore.target(edge)];
+                long packed = EdgeStore.pack(source, target);
+                mapped[count++] = packed;
+                // 端点所在的节点被删除时，DETACH DELETE会一并删除这条边，无需单独写出
+                if ((symbols.kindMask(source) & (1 << oldSourceSpace)) == 0
+                        || (symbols.kindMask(target) & (1 << oldTargetSpace)) == 0) {
+                    continue;
+                }
+                if (!edgeStore.contains(type, source, target)
+                        || GraphBuilder.idSpace(symbols.kindMask(source), preferredSource) != oldSourceSpace
+                        || GraphBuilder.idSpace(symbols.kindMask(target), preferredTarget) != oldTargetSpace) {
+                    result.add(packed);
+                    result.add(((long) oldSourceSpace << 32) | oldTargetSpace);
+                }
+            }
+            visibleOld.addAll(mapped, count);
+            return result.toArray();
+        });
+        for (long[] chunk : removed) {
+            for (int i = 0; i < chunk.length; i += 2) {
+                delta.edgeRemoved(type, chunk[i], (int) (chunk[i + 1] >>> 32), (int) chunk[i + 1]);
+            }
+        }
+
+        // 当前的边反向探测旧边集合
+        long[] current = new long[edgeStore.size(type)];
+        PrimitiveIterator.OfLong it = edgeStore.iterator(type);
+        int size = 0;
+        while (it.hasNext() && size < current.length) {
+            current[size++] = it.nextLong();
+        }
+        List<long[]> added = inChunks(size, (from, to) -> {
+            LongList result = new LongList();
+            for (int i = from; i < to; i++) {
+                long edge = current[i];
+                int source = EdgeStore.source(edge);
+                int target = EdgeStore.target(edge);
+                int sourceSpace = GraphBuilder.idSpace(symbols.kindMask(source), preferredSource);
+                int targetSpace = GraphBuilder.idSpace(symbols.kindMask(target), preferredTarget);
+                if (sourceSpace < 0 || targetSpace < 0) {
+                    continue;
+                }
+                if (!visibleOld.contains(edge)
+                        || GraphBuilder.idSpace(oldKindMask(source), preferredSource) != sourceSpace
+                        || GraphBuilder.idSpace(oldKindMask(target), preferredTarget) != targetSpace) {
+                    result.add(edge);
+                }
+            }
+            return result.toArray();
+        });
+        for (long[] chunk : added) {
+            for (long edge : chunk) {
+                delta.edgeAdded(type, edge);
+            }
+        }
+    }
+
+    private interface ChunkTask {
+        long[] run(int from, int to);
+    }
+
+    /**
+     * 把 [0, size) 分块并行处理，按块的顺序返回结果，输出与线程数无关
+     */
+    private static List<long[]> inChunks(int size, ChunkTask task) {
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> task.run(chunk * CHUNK_SIZE, Math.min(size, (chunk + 1) * CHUNK_SIZE)))
+                .toList();
+    }
+
+    /**
+     * 只追加的long数组
+     */
+    private static final class LongList {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
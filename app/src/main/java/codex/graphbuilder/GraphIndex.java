@@ -0,0 +1,298 @@
+package codex.graphbuilder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+
+/**
+ * 图的内存索引：每种边的正向和反向邻接表，按压缩稀疏行（CSR）格式存放，用于不经过Neo4j的本地查询
+ * 节点v的出边终点是 neighbors[offsets[v] .. offsets[v+1])，按ID升序排列，判断边是否存在时二分查找。
+ * 索引是建立时刻的图的只读副本，可以被多个线程同时查询；之后图再变化（例如监视模式）需要重新建立。
+ */
+public class GraphIndex {
+    private static final Edge.EdgeType[] TYPES = Edge.EdgeType.values();
+    private static final Edge.EdgeType[] SUPERTYPE_EDGES = {Edge.EdgeType.EXTENDS, Edge.EdgeType.IMPLEMENTS};
+
+    /**
+     * 沿边的方向（出边）或逆着边的方向（入边）查询
+     */
+    public enum Direction {
+        OUTGOING,
+        INCOMING
+    }
+
+    private final SymbolTable symbols;
+    private final int nodeCount;
+    private final Adjacency[] forward = new Adjacency[TYPES.length];
+    private final Adjacency[] reverse = new Adjacency[TYPES.length];
+    private TypeHierarchy typeHierarchy;
+
+    private GraphIndex(SymbolTable symbols, int nodeCount) {
+        this.symbols = symbols;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * 为当前的图建立索引，各类型的边并行处理
+     * 每种边先复制为打包的long数组：按（起点，终点）排序即得到正向邻接表，交换两端后排序即得到反向邻接表。
+     */
+    static GraphIndex build(SymbolTable symbols, EdgeStore edgeStore) {
+        GraphIndex index = new GraphIndex(symbols, symbols.size());
+        IntStream.range(0, TYPES.length).parallel().forEach(t -> {
+            long[] edges = new long[edgeStore.size(TYPES[t])];
+            PrimitiveIterator.OfLong it = edgeStore.iterator(TYPES[t]);
+            int count = 0;
+            while (it.hasNext() && count < edges.length) {
+                edges[count++] = it.nextLong();
+            }
+            long[] packed = Arrays.copyOf(edges, count);
+            Arrays.parallelSort(packed);
+            index.forward[t] = Adjacency.of(packed, index.nodeCount);
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = EdgeStore.pack(EdgeStore.target(packed[i]), EdgeStore.source(packed[i]));
+            }
+            Arrays.parallelSort(packed);
+            index.reverse[t] = Adjacency.of(packed, index.nodeCount);
+        });
+        return index;
+    }
+
+    /**
+     * 名称对应的节点ID，不存在时返回-1
+     */
+    public int nodeId(String name) {
+        int id = symbols.find(name);
+        return id < nodeCount ? id : -1;
+    }
+
+    public String name(int id) {
+        return symbols.name(id);
+    }
+
+    public List<String> names(int[] ids) {
+        List<String> names = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            names.add(symbols.name(id));
+        }
+        return names;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int edgeCount(Edge.EdgeType type) {
+        return forward[type.ordinal()].neighbors.length;
+    }
+
+    /**
+     * 节点在某种边上的邻居，按ID升序
+     */
+    public int[] neighbors(int node, Edge.EdgeType type, Direction direction) {
+        return adjacency(type, direction).neighbors(node);
+    }
+
+    public int degree(int node, Edge.EdgeType type, Direction direction) {
+        return adjacency(type, direction).degree(node);
+    }
+
+    public boolean hasEdge(int source, int target, Edge.EdgeType type) {
+        return forward[type.ordinal()].contains(source, target);
+    }
+
+    /**
+     * 从start出发沿给定类型的边走至多k步能到达的节点（不含start），按广度优先的顺序
+     */
+    public int[] kHop(int start, int k, Direction direction, Edge.EdgeType... types) {
+        if (start < 0 || start >= nodeCount) {
+            return new int[0];
+        }
+        BitSet visited = new BitSet();
+        visited.set(start);
+        int[] frontier = {start};
+        int[] reached = new int[16];
+        int size = 0;
+        for (int hop = 0; hop < k && frontier.length > 0; hop++) {
+            int[] next = new int[16];
+            int nextSize = 0;
+            for (int node : frontier) {
+                for (Edge.EdgeType type : types) {
+                    Adjacency adjacency = adjacency(type, direction);
+                    for (int i = adjacency.start(node); i < adjacency.end(node); i++) {
+                        int neighbor = adjacency.neighbors[i];
+                        if (!visited.get(neighbor)) {
+                            visited.set(neighbor);
+                            if (nextSize == next.length) {
+                                next = Arrays.copyOf(next, nextSize * 2);
+                            }
+                            next[nextSize++] = neighbor;
+                        }
+                    }
+                }
+            }
+            frontier = Arrays.copyOf(next, nextSize);
+            if (size + nextSize > reached.length) {
+                reached = Arrays.copyOf(reached, Math.max(reached.length * 2, size + nextSize));
+            }
+            System.arraycopy(frontier, 0, reached, size, nextSize);
+            size += nextSize;
+        }
+        return Arrays.copyOf(reached, size);
+    }
+
+    /**
+     * 沿给定类型的边从from到to的一条最短路径（含两端），不可达时返回空数组
+     */
+    public int[] shortestPath(int from, int to, Direction direction, Edge.EdgeType... types) {
+        if (from < 0 || to < 0 || from >= nodeCount || to >= nodeCount) {
+            return new int[0];
+        }
+        Map<Integer, Integer> parents = new HashMap<>();
+        parents.put(from, from);
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(from);
+        while (!queue.isEmpty() && !parents.containsKey(to)) {
+            int node = queue.poll();
+            for (Edge.EdgeType type : types) {
+                Adjacency adjacency = adjacency(type, direction);
+                for (int i = adjacency.start(node); i < adjacency.end(node); i++) {
+                    int neighbor = adjacency.neighbors[i];
+                    if (parents.putIfAbsent(neighbor, node) == null) {
+                        queue.add(neighbor);
+                    }
+                }
+            }
+        }
+        if (!parents.containsKey(to)) {
+            return new int[0];
+        }
+        List<Integer> path = new ArrayList<>();
+        for (int node = to; node != from; node = parents.get(node)) {
+            path.add(node);
+        }
+        path.add(from);
+        int[] result = new int[path.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = path.get(result.length - 1 - i);
+        }
+        return result;
+    }
+
+    /**
+     * 类型层次索引，第一次调用时建立
+     */
+    public synchronized TypeHierarchy typeHierarchy() {
+        if (typeHierarchy == null) {
+            typeHierarchy = TypeHierarchy.build(this);
+        }
+        return typeHierarchy;
+    }
+
+    /**
+     * 直接继承或实现给定类型的类
+     */
+    public List<String> subtypes(String className) {
+        int id = nodeId(className);
+        return id < 0 ? List.of() : names(kHop(id, 1, Direction.INCOMING, SUPERTYPE_EDGES));
+    }
+
+    /**
+     * 直接或间接继承、实现给定类型的所有类
+     */
+    public List<String> allSubtypes(String className) {
+        int id = nodeId(className);
+        return id < 0 ? List.of() : names(kHop(id, Integer.MAX_VALUE, Direction.INCOMING, SUPERTYPE_EDGES));
+    }
+
+    /**
+     * 从给定类沿EXTENDS向上直到最顶层父类的继承链（含该类本身）
+     */
+    public List<String> superclassChain(String className) {
+        List<String> chain = new ArrayList<>();
+        BitSet visited = new BitSet();
+        for (int id = nodeId(className); id >= 0 && !visited.get(id); ) {
+            visited.set(id);
+            chain.add(symbols.name(id));
+            int[] parents = neighbors(id, Edge.EdgeType.EXTENDS, Direction.OUTGOING);
+            id = parents.length == 0 ? -1 : parents[0];
+        }
+        return chain;
+    }
+
+    public List<String> methodsOf(String className) {
+        return outgoing(className, Edge.EdgeType.CONTAINS_METHOD);
+    }
+
+    public List<String> fieldsOf(String className) {
+        return outgoing(className, Edge.EdgeType.CONTAINS_FIELD);
+    }
+
+    public List<String> packageContents(String packageName) {
+        return outgoing(packageName, Edge.EdgeType.PACKAGE_CONTAINS);
+    }
+
+    private List<String> outgoing(String name, Edge.EdgeType type) {
+        int id = nodeId(name);
+        return id < 0 ? List.of() : names(neighbors(id, type, Direction.OUTGOING));
+    }
+
+    Adjacency adjacency(Edge.EdgeType type, Direction direction) {
+        return direction == Direction.OUTGOING ? forward[type.ordinal()] : reverse[type.ordinal()];
+    }
+
+    /**
+     * 一种边在一个方向上的CSR邻接表
+     */
+    static final class Adjacency {
+        private final int[] offsets;
+        private final int[] neighbors;
+
+        private Adjacency(int[] offsets, int[] neighbors) {
+            this.offsets = offsets;
+            this.neighbors = neighbors;
+        }
+
+        /**
+         * 由按（起点，终点）排好序的打包边建立
+         */
+        static Adjacency of(long[] sortedEdges, int nodeCount) {
+            int[] offsets = new int[nodeCount + 1];
+            int[] neighbors = new int[sortedEdges.length];
+            for (int i = 0; i < sortedEdges.length; i++) {
+                offsets[EdgeStore.source(sortedEdges[i]) + 1]++;
+                neighbors[i] = EdgeStore.target(sortedEdges[i]);
+            }
+            for (int v = 0; v < nodeCount; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            return new Adjacency(offsets, neighbors);
+        }
+
+        int start(int node) {
+            return node < 0 || node + 1 >= offsets.length ? 0 : offsets[node];
+        }
+
+        int end(int node) {
+            return node < 0 || node + 1 >= offsets.length ? 0 : offsets[node + 1];
+        }
+
+        int degree(int node) {
+            return end(node) - start(node);
+        }
+
+        int[] neighbors(int node) {
+            return Arrays.copyOfRange(neighbors, start(node), end(node));
+        }
+
+        boolean contains(int source, int target) {
+            return Arrays.binarySearch(neighbors, start(source), end(source), target) >= 0;
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package codex.graphbuilder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+
+/**
+ * 图的二进制快照
+ * 文件由头部的段目录和若干段组成：名称表、节点种类表、属性列、每种边一个段。
+ * 名称表与符号表的存储方式相同，每个ID只存（父ID，最后一个片段），片段文本去重。
+ * 读取时每个段通过FileChannel映射为只读内存，节点名、边和属性都直接在映射的内存上按偏移访问，
+ * 打开快照只需读取段目录，不需要逐条解码。
+ *
+ * 布局（大端序）：
+ * 头部      int MAGIC, int VERSION, int 段数, 每段 (int 段类型, long 偏移, long 长度)
+ * NAMES     int 节点数 N, int[N] 父ID（顶层为-1）, int[N] 片段下标, 片段字符串表 (int 大小 S, int[S+1] 偏移, 字节区)
+ * KINDS     byte[N] 种类掩码
+ * PROPERTY  int 列数, 每列: 名称, byte 列类型, int 条目数 M, int[M] 节点ID,
+ *           整数列 int[M] 值；字符串列 去重后的字典 (int 大小 D, int[D+1] 偏移, 字节区) 和 int[M] 字典下标
+ * EDGES     每种边一段: 边类型名称, int 边数 E, long[E] 打包的边（高32位起点ID，低32位终点ID）
+ */
+class GraphSnapshot {
+    private static final int MAGIC = 0x4347534E; // "CGSN"
+    private static final int VERSION = 2;
+
+    private static final int SECTION_NAMES = 1;
+    private static final int SECTION_KINDS = 2;
+    private static final int SECTION_PROPERTIES = 3;
+    private static final int SECTION_EDGES = 4;
+
+    private static final byte COLUMN_INT = 0;
+    private static final byte COLUMN_STRING = 1;
+
+    private final int nodeCount;
+    private final IntBuffer parents;
+    private final IntBuffer segmentIndices;
+    private final String[] segments;
+    private final ByteBuffer kinds;
+    private final List<PropertyColumn> propertyColumns;
+    private final Map<Edge.EdgeType, LongBuffer> edges;
+
+    private GraphSnapshot(int nodeCount, IntBuffer parents, IntBuffer segmentIndices, String[] segments,
+                          ByteBuffer kinds, List<PropertyColumn> propertyColumns, Map<Edge.EdgeType, LongBuffer> edges) {
+        this.nodeCount = nodeCount;
+        this.parents = parents;
+        this.segmentIndices = segmentIndices;
+        this.segments = segments;
+        this.kinds = kinds;
+        this.propertyColumns = propertyColumns;
+        this.edges = edges;
+    }
+
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * 父名称的ID，顶层名称返回SymbolTable.ROOT
+     */
+    int parent(int id) {
+        return parents.get(id);
+    }
+
+    String simpleName(int id) {
+        return segments[segmentIndices.get(id)];
+    }
+
+    /**
+     * 按父指针拼接完整名称
+     */
+    String name(int id) {
+        int parent = parent(id);
+        return parent == SymbolTable.ROOT ? simpleName(id) : name(parent) + "." + simpleName(id);
+    }
+
+    int kindMask(int id) {
+        return kinds.get(id);
+    }
+
+    int edgeCount(Edge.EdgeType type) {
+        LongBuffer buffer = edges.get(type);
+        return buffer == null ? 0 : buffer.limit();
+    }
+
+    /**
+     * 某种类型的所有边（打包的long），返回独立的只读视图
+     */
+    LongBuffer edges(Edge.EdgeType type) {
+        LongBuffer buffer = edges.get(type);
+        return buffer == null ? LongBuffer.allocate(0) : buffer.duplicate();
+    }
+
+    List<PropertyColumn> propertyColumns() {
+        return propertyColumns;
+    }
+
+    /**
+     * 一列节点属性：第i个条目属于节点node(i)
+     */
+    static final class PropertyColumn {
+        private final String name;
+        private final IntBuffer nodes;
+        private final IntBuffer values;
+        // 字符串列的字典，整数列为null
+        private final IntBuffer dictionaryOffsets;
+        private final ByteBuffer dictionaryBytes;
+
+        PropertyColumn(String name, IntBuffer nodes, IntBuffer values, IntBuffer dictionaryOffsets,
+                       ByteBuffer dictionaryBytes) {
+            this.name = name;
+            this.nodes = nodes;
+            this.values = values;
+            this.dictionaryOffsets = dictionaryOffsets;
+            this.dictionaryBytes = dictionaryBytes;
+        }
+
+        String name() {
+            return name;
+        }
+
+        int size() {
+            return nodes.limit();
+        }
+
+        int node(int index) {
+            return nodes.get(index);
+        }
+
+        boolean isInt() {
+            return dictionaryOffsets == null;
+        }
+
+        int intValue(int index) {
+            return values.get(index);
+        }
+
+        String value(int index) {
+            if (isInt()) {
+                return Integer.toString(values.get(index));
+            }
+            int entry = values.get(index);
+            int start = dictionaryOffsets.get(entry);
+            return decode(dictionaryBytes, start, dictionaryOffsets.get(entry + 1) - start);
+        }
+    }
+
+    /**
+     * 把当前图写成快照：先写入临时文件，完成后原子替换
+     */
+    static void write(Path path, SymbolTable symbols, EdgeStore edgeStore, PropertyStore properties)
+            throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+        int nodeCount = symbols.size();
+
+        List<Integer> sectionTypes = new ArrayList<>();
+        List<long[]> sectionBounds = new ArrayList<>();
+        int sectionCount = 3 + Edge.EdgeType.values().length;
+        int headerSize = 12 + sectionCount * 20;
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(headerSize);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+
+            // 名称表：父指针和去重的片段
+            long start = channel.position();
+            Map<String, Integer> segmentIndices = new HashMap<>();
+            List<byte[]> segments = new ArrayList<>();
+            int[] indices = new int[nodeCount];
+            out.writeInt(nodeCount);
+            for (int id = 0; id < nodeCount; id++) {
+                out.writeInt(symbols.parent(id));
+                indices[id] = segmentIndices.computeIfAbsent(symbols.simpleName(id), v -> {
+                    segments.add(v.getBytes(StandardCharsets.UTF_8));
+                    return segments.size() - 1;
+                });
+            }
+            for (int index : indices) {
+                out.writeInt(index);
+            }
+            writeStringTable(out, segments);
+            out.flush();
+            addSection(sectionTypes, sectionBounds, SECTION_NAMES, start, channel.position());
+
+            // 节点种类
+            start = channel.position();
+            for (int id = 0; id < nodeCount; id++) {
+                out.writeByte(symbols.kindMask(id));
+            }
+            out.flush();
+            addSection(sectionTypes, sectionBounds, SECTION_KINDS, start, channel.position());
+
+            // 属性列
+            start = channel.position();
+            writeProperties(out, nodeCount, properties);
+            out.flush();
+            addSection(sectionTypes, sectionBounds, SECTION_PROPERTIES, start, channel.position());
+
+            // 每种边一个段
+            for (Edge.EdgeType type : Edge.EdgeType.values()) {
+                start = channel.position();
+                writeString(out, type.name());
+                // 先写边数，迭代过程中边集合不再变化
+                out.writeInt(edgeStore.size(type));
+                PrimitiveIterator.OfLong it = edgeStore.iterator(type);
+                while (it.hasNext()) {
+                    out.writeLong(it.nextLong());
+                }
+                out.flush();
+                addSection(sectionTypes, sectionBounds, SECTION_EDGES, start, channel.position());
+            }
+
+            // 回到文件开头写段目录
+            ByteBuffer header = ByteBuffer.allocate(headerSize);
+            header.putInt(MAGIC).putInt(VERSION).putInt(sectionTypes.size());
+            for (int i = 0; i < sectionTypes.size(); i++) {
+                header.putInt(sectionTypes.get(i)).putLong(sectionBounds.get(i)[0]).putLong(sectionBounds.get(i)[1]);
+            }
+            header.flip();
+            channel.write(header, 0);
+        }
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void addSection(List<Integer> types, List<long[]> bounds, int type, long start, long end) {
+        types.add(type);
+        bounds.add(new long[]{start, end - start});
+    }
+
+    /**
+     * 每个属性列写成一列：整数列直接写值，字符串列写去重的字典和下标
+     */
+    private static void writeProperties(DataOutputStream out, int nodeCount, PropertyStore properties)
+            throws IOException {
+        PropertyStore.Column[] columns = PropertyStore.Column.values();
+        out.writeInt(columns.length);
+        for (PropertyStore.Column column : columns) {
+            int[] nodes = new int[64];
+            int entries = 0;
+            for (int id = 0; id < nodeCount; id++) {
+                if (properties.has(id, column)) {
+                    if (entries == nodes.length) {
+                        nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    }
+                    nodes[entries++] = id;
+                }
+            }
+
+            writeString(out, column.getHeader());
+            out.writeByte(column.isInt() ? COLUMN_INT : COLUMN_STRING);
+            out.writeInt(entries);
+            for (int i = 0; i < entries; i++) {
+                out.writeInt(nodes[i]);
+            }
+            if (column.isInt()) {
+                for (int i = 0; i < entries; i++) {
+                    out.writeInt(properties.getInt(nodes[i], column));
+                }
+            } else {
+                Map<String, Integer> dictionary = new HashMap<>();
+                List<byte[]> values = new ArrayList<>();
+                int[] indices = new int[entries];
+                for (int i = 0; i < entries; i++) {
+                    indices[i] = dictionary.computeIfAbsent(properties.getString(nodes[i], column), v -> {
+                        values.add(v.getBytes(StandardCharsets.UTF_8));
+                        return values.size() - 1;
+                    });
+                }
+                writeStringTable(out, values);
+                for (int index : indices) {
+                    out.writeInt(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * 字符串表：int 数量 N, int[N+1] 偏移, 字节区
+     */
+    private static void writeStringTable(DataOutputStream out, List<byte[]> strings) throws IOException {
+        out.writeInt(strings.size());
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] string : strings) {
+            offset += string.length;
+            out.writeInt(offset);
+        }
+        for (byte[] string : strings) {
+            out.write(string);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 打开快照：读取段目录并把各段映射到内存
+     */
+    static GraphSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(12);
+            channel.read(prefix, 0);
+            prefix.flip();
+            if (prefix.remaining() < 12 || prefix.getInt() != MAGIC) {
+                throw new IOException("不是图快照文件: " + path);
+            }
+            if (prefix.getInt() != VERSION) {
+                throw new IOException("快照版本不匹配: " + path);
+            }
+            int sectionCount = prefix.getInt();
+            ByteBuffer directory = ByteBuffer.allocate(sectionCount * 20);
+            channel.read(directory, 12);
+            directory.flip();
+
+            int nodeCount = 0;
+            IntBuffer parents = null;
+            IntBuffer segmentIndices = null;
+            String[] segments = null;
+            ByteBuffer kinds = null;
+            List<PropertyColumn> propertyColumns = new ArrayList<>();
+            Map<Edge.EdgeType, LongBuffer> edges = new EnumMap<>(Edge.EdgeType.class);
+
+            for (int i = 0; i < sectionCount; i++) {
+                int type = directory.getInt();
+                long offset = directory.getLong();
+                long length = directory.getLong();
+                MappedByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                switch (type) {
+                    case SECTION_NAMES -> {
+                        nodeCount = section.getInt(0);
+                        parents = slice(section, 4, nodeCount * 4).asIntBuffer();
+                        segmentIndices = slice(section, 4 + nodeCount * 4, nodeCount * 4).asIntBuffer();
+                        segments = readStringTable(section, 4 + nodeCount * 8);
+                    }
+                    case SECTION_KINDS -> kinds = section;
+                    case SECTION_PROPERTIES -> readProperties(section, propertyColumns);
+                    case SECTION_EDGES -> {
+                        int nameLength = section.getInt(0);
+                        String typeName = decode(section, 4, nameLength);
+                        int count = section.getInt(4 + nameLength);
+                        LongBuffer buffer = slice(section, 8 + nameLength, count * 8).asLongBuffer();
+                        try {
+                            edges.put(Edge.EdgeType.valueOf(typeName), buffer);
+                        } catch (IllegalArgumentException e) {
+                            // 快照中有当前版本不认识的边类型，忽略
+                        }
+                    }
+                    default -> {
+                        // 未知段，忽略
+                    }
+                }
+            }
+            if (parents == null || kinds == null) {
+                throw new IOException("快照缺少节点段: " + path);
+            }
+            return new GraphSnapshot(nodeCount, parents, segmentIndices, segments, kinds, propertyColumns, edges);
+        }
+    }
+
+    private static void readProperties(ByteBuffer section, List<PropertyColumn> columns) {
+        int position = 0;
+        int columnCount = section.getInt(position);
+        position += 4;
+        for (int c = 0; c < columnCount; c++) {
+            int nameLength = section.getInt(position);
+            String name = decode(section, position + 4, nameLength);
+            position += 4 + nameLength;
+            byte columnType = section.get(position);
+            int entries = section.getInt(position + 1);
+            position += 5;
+            IntBuffer nodes = slice(section, position, entries * 4).asIntBuffer();
+            position += entries * 4;
+            if (columnType == COLUMN_INT) {
+                IntBuffer values = slice(section, position, entries * 4).asIntBuffer();
+                position += entries * 4;
+                columns.add(new PropertyColumn(name, nodes, values, null, null));
+            } else {
+                int dictionarySize = section.getInt(position);
+                IntBuffer offsets = slice(section, position + 4, (dictionarySize + 1) * 4).asIntBuffer();
+                position += 4 + (dictionarySize + 1) * 4;
+                int bytesLength = offsets.get(dictionarySize);
+                ByteBuffer bytes = slice(section, position, bytesLength);
+                position += bytesLength;
+                IntBuffer indices = slice(section, position, entries * 4).asIntBuffer();
+                position += entries * 4;
+                columns.add(new PropertyColumn(name, nodes, indices, offsets, bytes));
+            }
+        }
+    }
+
+    /**
+     * 读取字符串表并全部解码；用于数量较少的名称片段
+     */
+    private static String[] readStringTable(ByteBuffer section, int position) {
+        int count = section.getInt(position);
+        int bytesStart = position + 4 + (count + 1) * 4;
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            int start = section.getInt(position + 4 + i * 4);
+            int end = section.getInt(position + 8 + i * 4);
+            strings[i] = decode(section, bytesStart + start, end - start);
+        }
+        return strings;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        return buffer.slice(offset, length);
+    }
+
+    private static String decode(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
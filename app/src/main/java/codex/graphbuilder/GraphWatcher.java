@@ -0,0 +1,258 @@
+package codex.graphbuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 监视模式：用WatchService递归监视源码目录，把一段时间内的文件变化合成一批交给GraphBuilder增量更新，
+ * 每批的净变化写成一个Cypher脚本
+ * 收到第一个事件后继续收集，直到debounceMillis毫秒内没有新事件，编辑器保存时的多次写入只处理一次。
+ */
+class GraphWatcher {
+    private final GraphBuilder graphBuilder;
+    private final List<Path> roots;
+    private final Path deltaDirectory;
+    private final CypherDeltaWriter writer;
+    private final boolean classFiles;
+    private final long debounceMillis;
+
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private int sequence;
+
+    GraphWatcher(GraphBuilder graphBuilder, List<Path> roots, Path deltaDirectory, CypherDeltaWriter writer,
+                 boolean classFiles, long debounceMillis) {
+        this.graphBuilder = graphBuilder;
+        this.roots = roots;
+        this.deltaDirectory = deltaDirectory;
+        this.writer = writer;
+        this.classFiles = classFiles;
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * 一直运行到线程被中断
+     */
+    void run() throws IOException, InterruptedException {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            for (Path root : roots) {
+                registerTree(service, root, null);
+            }
+            sequence = lastSequence();
+            System.out.println("正在监视 " + directories.size() + " 个目录，变化写入 " + deltaDirectory
+                    + "，按Ctrl+C退出");
+
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = collect(service, service.take(), changed);
+                WatchKey key;
+                while ((key = service.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collect(service, key, changed);
+                }
+                if (overflow) {
+                    System.out.println("文件变化事件过多，重新扫描所有目录");
+                    changed.clear();
+                    for (Path root : roots) {
+                        registerTree(service, root, changed);
+                    }
+                }
+                process(changed, overflow);
+            }
+        }
+    }
+
+    /**
+     * 处理一个WatchKey上的事件，返回是否发生了事件溢出
+     */
+    private boolean collect(WatchService service, WatchKey key, Set<Path> changed) throws IOException {
+        Path directory = directories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            if (directory == null) {
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // 新目录（包括整个移动进来的目录树）：注册监视并把其中已有的文件作为新增
+                registerTree(service, path, changed);
+            } else {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        return overflow;
+    }
+
+    /**
+     * 递归注册目录，files不为null时同时收集其中的源文件
+     */
+    private void registerTree(WatchService service, Path root, Set<Path> files) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(path)) {
+                    WatchKey key = path.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    directories.put(key, path);
+                } else if (files != null && isSourceFile(path)) {
+                    files.add(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * 接着已有的脚本编号，重新启动监视时不覆盖上次写出、可能还没执行的脚本
+     */
+    private int lastSequence() throws IOException {
+        if (!Files.isDirectory(deltaDirectory)) {
+            return 0;
+        }
+        int last = 0;
+        try (Stream<Path> files = Files.list(deltaDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.matches("delta-\\d+\\.cypher")) {
+                    last = Math.max(last, Integer.parseInt(name.substring(6, name.length() - 7)));
+                }
+            }
+        }
+        return last;
+    }
+
+    private boolean isSourceFile(Path path) {
+        return path.getFileName().toString().endsWith(classFiles ? ".class" : ".java");
+    }
+
+    /**
+     * 解析一批变化的文件并应用到图中；rescan为true时changed是所有现存的文件，未出现的已保留文件视为删除
+     */
+    private void process(Set<Path> changed, boolean rescan) throws IOException {
+        long start = System.nanoTime();
+        List<Path> existing = new ArrayList<>();
+        Set<String> deleted = new LinkedHashSet<>();
+        for (Path path : changed) {
+            String key = SourceRoots.key(path);
+            if (Files.isRegularFile(path)) {
+                if (isSourceFile(path)) {
+                    existing.add(path);
+                }
+            } else if (graphBuilder.isRetained(key)) {
+                deleted.add(key);
+            } else {
+                // 可能是被删除的目录，撤回其下的所有文件
+                deleted.addAll(graphBuilder.retainedSourcesUnder(key));
+            }
+        }
+        if (rescan) {
+            Set<String> present = new LinkedHashSet<>();
+            for (Path path : existing) {
+                present.add(SourceRoots.key(path));
+            }
+            for (Path root : roots) {
+                for (String key : graphBuilder.retainedSourcesUnder(SourceRoots.key(root))) {
+                    if (!present.contains(key)) {
+                        deleted.add(key);
+                    }
+                }
+            }
+        }
+        addSamePackageDependents(existing, deleted);
+        if (existing.isEmpty() && deleted.isEmpty()) {
+            return;
+        }
+
+        // 并行解析；解析失败的文件保留上一次的贡献，修好之后再更新
+        List<FileContribution> parsed = existing.parallelStream().map(this::parse).toList();
+        Map<String, FileContribution> changes = new LinkedHashMap<>();
+        int failed = 0;
+        for (int i = 0; i < existing.size(); i++) {
+            if (parsed.get(i) == null) {
+                failed++;
+            } else {
+                changes.put(SourceRoots.key(existing.get(i)), parsed.get(i));
+            }
+        }
+        for (String key : deleted) {
+            changes.put(key, null);
+        }
+        if (changes.isEmpty()) {
+            System.out.println(failed + " 个文件解析失败，保留上一次的结果");
+            return;
+        }
+
+        GraphDelta delta = graphBuilder.applyChanges(changes);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        String summary = "更新 " + (changes.size() - deleted.size()) + " 个文件，删除 " + deleted.size()
+                + " 个文件，解析失败 " + failed + " 个；" + delta.describe() + "，耗时 " + millis + " ms";
+        if (delta.isEmpty()) {
+            System.out.println(summary + "，图没有变化");
+            return;
+        }
+        Path file = deltaDirectory.resolve(String.format("delta-%06d.cypher", ++sequence));
+        int statements = writer.write(delta, file, summary);
+        System.out.println(summary + "，写出 " + statements + " 条语句到 " + file);
+    }
+
+    /**
+     * 新出现或被删除的文件可能遮蔽或不再遮蔽同包中其他文件引用的同名JDK类型（见SourcePath），
+     * 提取时查找过这些文件的已保留文件即使没有变化也一起重新解析
+     */
+    private void addSamePackageDependents(List<Path> existing, Set<String> deleted) {
+        Set<String> parsed = new LinkedHashSet<>();
+        Set<String> presenceChanged = new LinkedHashSet<>(deleted);
+        for (Path path : existing) {
+            String key = SourceRoots.key(path);
+            parsed.add(key);
+            if (!graphBuilder.isRetained(key)) {
+                presenceChanged.add(key);
+            }
+        }
+        if (presenceChanged.isEmpty()) {
+            return;
+        }
+        for (String key : graphBuilder.retainedSourcesChecking(presenceChanged)) {
+            Path path = Path.of(key);
+            if (!deleted.contains(key) && parsed.add(key) && Files.isRegularFile(path)) {
+                existing.add(path);
+            }
+        }
+    }
+
+    private FileContribution parse(Path path) {
+        try {
+            byte[] content = Files.readAllBytes(path);
+            byte[] hash = BuildCache.hash(content);
+            return classFiles
+                    ? graphBuilder.parseClassFile(path, content, hash)
+                    : graphBuilder.parseSource(path, new String(content, StandardCharsets.UTF_8), hash);
+        } catch (IOException e) {
+            // 文件可能在收集事件后又被删除或仍在写入，下一批事件会再处理它
+            System.err.println("读取文件 " + path + " 时出错: " + e.getMessage());
+            return null;
+        }
+    }
+}
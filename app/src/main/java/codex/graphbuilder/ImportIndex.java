@@ -0,0 +1,248 @@
+package codex.graphbuilder;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 单个编译单元的导入索引：简单类名到全限定名的映射，以及按需导入的包列表
+ * 每个文件只构建一次，解析类型名时不再线性扫描导入语句。
+ */
+class ImportIndex {
+    private static final String DEFAULT_PACKAGE = "(default package)";
+
+    // 二进制名 -> 运行时的JDK中是否有这个类
+    private static final Map<String, Boolean> PLATFORM_CLASSES = new ConcurrentHashMap<>();
+
+    // 源码中声明的包名，默认包为空字符串
+    private final String packageName;
+    // 导入语句原文（不含星号）及是否为按需导入，用于序列化
+    private final List<String> importNames;
+    private final List<Boolean> onDemandFlags;
+
+    // 单类型导入：简单类名 -> 全限定名，同名时先出现的优先
+    private final Map<String, String> singleTypeImports = new HashMap<>();
+    // 按需导入（import a.b.*）的包名
+    private final List<String> onDemandPackages = new ArrayList<>();
+
+    ImportIndex(String packageName, List<String> importNames, List<Boolean> onDemandFlags) {
+        this.packageName = packageName;
+        this.importNames = importNames;
+        this.onDemandFlags = onDemandFlags;
+        for (int i = 0; i < importNames.size(); i++) {
+            String importName = importNames.get(i);
+            if (onDemandFlags.get(i)) {
+                onDemandPackages.add(importName);
+            } else {
+                singleTypeImports.putIfAbsent(simpleName(importName), importName);
+            }
+        }
+    }
+
+    static ImportIndex of(CompilationUnit cu) {
+        String packageName = cu.getPackageDeclaration().map(pd -> pd.getNameAsString()).orElse("");
+        List<String> importNames = new ArrayList<>();
+        List<Boolean> onDemandFlags = new ArrayList<>();
+        for (ImportDeclaration importDecl : cu.getImports()) {
+            // 静态按需导入引入的是成员，不参与类型解析
+            if (importDecl.isStatic() && importDecl.isAsterisk()) {
+                continue;
+            }
+            importNames.add(importDecl.getNameAsString());
+            onDemandFlags.add(importDecl.isAsterisk());
+        }
+        return new ImportIndex(packageName, importNames, onDemandFlags);
+    }
+
+    /**
+     * 在已知类中查找类型名（可能带外层限定，如Outer.Inner），按单类型导入、同包、按需导入的顺序；找不到返回null
+     * 图中的类节点名为二进制名（包名.外部类$内部类），成员类型先确认外层类存在，再查找外层类的成员类型。
+     */
+    String resolve(String typeName, Predicate<String> isKnownClass) {
+        int dot = typeName.indexOf('.');
+        String first = dot < 0 ? typeName : typeName.substring(0, dot);
+
+        String imported = singleTypeImports.get(first);
+        if (imported != null) {
+            String resolved = toKnownClass(binaryName(imported), typeName, dot, isKnownClass);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+
+        String samePackage = toKnownClass(nodePackage() + "." + first, typeName, dot, isKnownClass);
+        if (samePackage != null) {
+            return samePackage;
+        }
+
+        for (String onDemandPackage : onDemandPackages) {
+            String resolved = toKnownClass(binaryName(onDemandPackage + "." + first), typeName, dot, isKnownClass);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+
+        // 源码中直接写出的全限定名
+        if (dot >= 0) {
+            String binaryName = binaryName(typeName);
+            if (isKnownClass.test(binaryName)) {
+                return binaryName;
+            }
+        }
+        return null;
+    }
+
+    private static String toKnownClass(String firstQualified, String typeName, int dot, Predicate<String> isKnownClass) {
+        if (!isKnownClass.test(firstQualified)) {
+            return null;
+        }
+        if (dot < 0) {
+            return firstQualified;
+        }
+        String nested = firstQualified + typeName.substring(dot).replace('.', '$');
+        return isKnownClass.test(nested) ? nested : null;
+    }
+
+    /**
+     * 把规范名（a.b.Outer.Inner）转换成二进制名（a.b.Outer$Inner）：按命名惯例，第一个大写开头的片段是顶层类，
+     * 之后的片段都是成员类型
+     */
+    static String binaryName(String canonicalName) {
+        int start = 0;
+        while (start < canonicalName.length() && !Character.isUpperCase(canonicalName.charAt(start))) {
+            int dot = canonicalName.indexOf('.', start);
+            if (dot < 0) {
+                return canonicalName;
+            }
+            start = dot + 1;
+        }
+        int nested = canonicalName.indexOf('.', start);
+        return nested < 0 ? canonicalName
+                : canonicalName.substring(0, nested) + canonicalName.substring(nested).replace('.', '$');
+    }
+
+    /**
+     * 按Java作用域规则生成候选全限定名，供符号求解器使用：
+     * 单类型导入 -> 同包 -> 按需导入 -> java.lang -> 原样视为全限定名
+     */
+    List<String> candidates(String typeName) {
+        int dot = typeName.indexOf('.');
+        String first = dot < 0 ? typeName : typeName.substring(0, dot);
+        String rest = dot < 0 ? "" : typeName.substring(dot);
+        List<String> candidates = new ArrayList<>();
+
+        String imported = singleTypeImports.get(first);
+        if (imported != null) {
+            candidates.add(imported + rest);
+        }
+        candidates.add(packageName.isEmpty() ? typeName : packageName + "." + typeName);
+        for (String onDemandPackage : onDemandPackages) {
+            candidates.add(onDemandPackage + "." + typeName);
+        }
+        candidates.add("java.lang." + typeName);
+        if (dot >= 0) {
+            candidates.add(typeName);
+        }
+        return candidates;
+    }
+
+    /**
+     * 已知类和符号求解器都无法确定时的猜测：第一段匹配单类型导入时取导入的类，否则假设在同一个包中；
+     * 带外层限定的名称（Outer.Inner）按成员类型转换为二进制名
+     */
+    String guess(String typeName) {
+        int dot = typeName.indexOf('.');
+        String first = dot < 0 ? typeName : typeName.substring(0, dot);
+        String imported = singleTypeImports.get(first);
+        if (imported != null) {
+            return binaryName(dot < 0 ? imported : imported + typeName.substring(dot));
+        }
+        if (dot >= 0 && !Character.isUpperCase(first.charAt(0))) {
+            // 源码中直接写出的全限定名
+            return binaryName(typeName);
+        }
+        String nested = typeName.replace('.', '$');
+        return packageName.isEmpty() ? nested : packageName + "." + nested;
+    }
+
+    /**
+     * 提取时确定类型名的二进制名，不依赖全局的已知类（方法参数类型在提取时就要写入方法节点名）
+     * 按JLS 6.4.1的遮蔽顺序：单类型导入和写出的全限定名是确定的；其次是同包的类型，由isSamePackageType按源码路径判断；
+     * 然后在按需导入的包和java.lang中查找JDK自带的类型，都找不到时假设在同一个包中。
+     * 只有在按需导入或java.lang中找到同名的JDK类型时才需要查询同包类型，其余情况两种结果相同。
+     * 按需导入的非JDK类型因此会被当作同包的类型。
+     */
+    String qualify(String typeName, Predicate<String> isSamePackageType) {
+        int dot = typeName.indexOf('.');
+        String first = dot < 0 ? typeName : typeName.substring(0, dot);
+        if (!singleTypeImports.containsKey(first) && (dot < 0 || Character.isUpperCase(first.charAt(0)))) {
+            String platformClass = platformClass(first);
+            if (platformClass != null && !isSamePackageType.test(first)) {
+                return platformClass + (dot < 0 ? "" : typeName.substring(dot).replace('.', '$'));
+            }
+        }
+        return guess(typeName);
+    }
+
+    /**
+     * 按需导入的包和java.lang中名为simpleName的JDK类型，依次查找，找不到返回null
+     */
+    private String platformClass(String simpleName) {
+        for (String onDemandPackage : onDemandPackages) {
+            String candidate = binaryName(onDemandPackage + "." + simpleName);
+            if (isPlatformClass(candidate)) {
+                return candidate;
+            }
+        }
+        return isPlatformClass("java.lang." + simpleName) ? "java.lang." + simpleName : null;
+    }
+
+    private static boolean isPlatformClass(String binaryName) {
+        return PLATFORM_CLASSES.computeIfAbsent(binaryName, name -> {
+            try {
+                Class.forName(name, false, ClassLoader.getPlatformClassLoader());
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        });
+    }
+
+    private String nodePackage() {
+        return packageName.isEmpty() ? DEFAULT_PACKAGE : packageName;
+    }
+
+    private static String simpleName(String qualifiedName) {
+        return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeUTF(packageName);
+        out.writeInt(importNames.size());
+        for (int i = 0; i < importNames.size(); i++) {
+            out.writeUTF(importNames.get(i));
+            out.writeBoolean(onDemandFlags.get(i));
+        }
+    }
+
+    static ImportIndex readFrom(DataInputStream in) throws IOException {
+        String packageName = in.readUTF();
+        int count = in.readInt();
+        List<String> importNames = new ArrayList<>(count);
+        List<Boolean> onDemandFlags = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            importNames.add(in.readUTF());
+            onDemandFlags.add(in.readBoolean());
+        }
+        return new ImportIndex(packageName, importNames, onDemandFlags);
+    }
+}
@@ -0,0 +1,95 @@
+package codex.graphbuilder;
+
+/**
+ * 方法节点名称的最后一段：方法名加擦除后的参数描述符，如 put(Ljava/lang/Object;[I)
+ * 参数按JVM描述符的写法（基本类型一个字母，数组前缀'['，引用类型 L内部名;），同名的重载各自成为一个节点。
+ * 内部名是二进制名中的'.'换成'/'，如 java/util/Map$Entry，与class文件中的写法相同。
+ * 名称中不含'.'，在符号表中是类名下的一个片段。
+ */
+final class MethodDescriptor {
+    private MethodDescriptor() {
+    }
+
+    /**
+     * 由class文件中的方法名和描述符生成，如 (Ljava/util/Map$Entry;I)V 生成 name(Ljava/util/Map$Entry;I)
+     */
+    static String fromDescriptor(String name, String descriptor) {
+        return name + descriptor.substring(0, descriptor.indexOf(')') + 1);
+    }
+
+    /**
+     * 写出一个引用类型参数，binaryName是二进制名（包名.外部类$内部类）
+     */
+    static void appendReference(StringBuilder descriptor, String binaryName) {
+        descriptor.append('L').append(binaryName.replace('.', '/')).append(';');
+    }
+
+    /**
+     * 各参数类型的简单名：基本类型为描述符字母，引用类型为内部名的最后一段，数组加 "[]" 后缀（写法同ArgumentTypes）
+     */
+    static String[] parameterTypes(String segment) {
+        String[] types = new String[parameterCount(segment)];
+        int index = segment.indexOf('(') + 1;
+        for (int i = 0; i < types.length; i++) {
+            int dimensions = 0;
+            while (segment.charAt(index) == '[') {
+                dimensions++;
+                index++;
+            }
+            String type;
+            if (segment.charAt(index) == 'L') {
+                int end = segment.indexOf(';', index);
+                int start = Math.max(segment.lastIndexOf('/', end), segment.lastIndexOf('$', end));
+                type = segment.substring(Math.max(start, index) + 1, end);
+                index = end + 1;
+            } else {
+                type = String.valueOf(segment.charAt(index));
+                index++;
+            }
+            types[i] = type + "[]".repeat(dimensions);
+        }
+        return types;
+    }
+
+    /**
+     * 名称中的方法名部分
+     */
+    static String methodName(String segment) {
+        int open = segment.indexOf('(');
+        return open < 0 ? segment : segment.substring(0, open);
+    }
+
+    /**
+     * 参数个数
+     */
+    static int parameterCount(String segment) {
+        int count = 0;
+        int index = segment.indexOf('(') + 1;
+        int close = segment.length() - 1;
+        while (index > 0 && index < close) {
+            while (segment.charAt(index) == '[') {
+                index++;
+            }
+            index = segment.charAt(index) == 'L' ? segment.indexOf(';', index) + 1 : index + 1;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 最后一个参数是否是数组，可变参数方法编译后就是这样
+     */
+    static boolean endsWithArray(String segment) {
+        int index = segment.indexOf('(') + 1;
+        int close = segment.length() - 1;
+        boolean array = false;
+        while (index > 0 && index < close) {
+            array = segment.charAt(index) == '[';
+            while (segment.charAt(index) == '[') {
+                index++;
+            }
+            index = segment.charAt(index) == 'L' ? segment.indexOf(';', index) + 1 : index + 1;
+        }
+        return array;
+    }
+}
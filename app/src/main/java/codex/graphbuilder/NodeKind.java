@@ -0,0 +1,38 @@
+package codex.graphbuilder;
+
+/**
+ * 图中节点的种类，同时作为Neo4j导入时的标签和ID空间
+ */
+public enum NodeKind {
+    PACKAGE("Package"),  // 包
+    CLASS("Class"),      // 类、接口或枚举
+    METHOD("Method"),    // 方法
+    FIELD("Field"),      // 字段
+    FILE("File");        // 源文件（编译单元）或class文件
+
+    private static final NodeKind[] VALUES = values();
+
+    private final String label;
+
+    NodeKind(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * 在种类掩码中对应的位
+     */
+    int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * 取掩码中优先级最高的种类（包 > 类 > 方法 > 字段 > 文件），掩码为空时返回null
+     */
+    static NodeKind primary(int mask) {
+        return mask == 0 ? null : VALUES[Integer.numberOfTrailingZeros(mask)];
+    }
+}
@@ -0,0 +1,300 @@
+package codex.graphbuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 有界的分阶段解析流水线：
+ * 发现文件 -> 读取（虚拟线程）-> 解析（固定大小的CPU线程池）-> 合并到图
+ * 各阶段之间用有界队列连接，下游处理不过来时上游阻塞，内存占用保持有界。
+ * 解析在遍历目录尚未结束时就已经开始。
+ * 源码包中的条目和普通文件走同一条流水线，读取时直接从zip文件系统解压，不写临时文件。
+ */
+class ParsePipeline {
+    // 队列中的结束标记
+    private static final Object END = new Object();
+
+    private final GraphBuilder graphBuilder;
+    private final BuildCache buildCache;
+    private final BuildMetrics metrics;
+
+    private int readerThreads = 16;
+    private int parserThreads = Runtime.getRuntime().availableProcessors();
+    private int sinkThreads = 1;
+    private int queueCapacity = 256;
+    private boolean classFiles;
+
+    // 统计信息
+    private final AtomicInteger discovered = new AtomicInteger();
+    private final AtomicInteger reused = new AtomicInteger();
+    private final AtomicInteger parsed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    ParsePipeline(GraphBuilder graphBuilder, BuildCache buildCache, BuildMetrics metrics) {
+        this.graphBuilder = graphBuilder;
+        this.buildCache = buildCache;
+        this.metrics = metrics;
+    }
+
+    void setReaderThreads(int readerThreads) {
+        this.readerThreads = Math.max(1, readerThreads);
+    }
+
+    void setParserThreads(int parserThreads) {
+        this.parserThreads = Math.max(1, parserThreads);
+    }
+
+    void setSinkThreads(int sinkThreads) {
+        this.sinkThreads = Math.max(1, sinkThreads);
+    }
+
+    void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * 改用class文件前端：只发现和读取.class文件，不再处理.java文件
+     */
+    void setClassFiles(boolean classFiles) {
+        this.classFiles = classFiles;
+    }
+
+    int getDiscovered() {
+        return discovered.get();
+    }
+
+    int getReused() {
+        return reused.get();
+    }
+
+    int getParsed() {
+        return parsed.get();
+    }
+
+    int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * 运行整个流水线，所有阶段结束后返回
+     * 每个源码根（目录或已打开的源码包根目录）由一个发现线程遍历，多个源码包并发读取
+     */
+    void run(List<Path> roots) throws InterruptedException {
+        BlockingQueue<Object> paths = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Object> sources = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Object> results = new ArrayBlockingQueue<>(queueCapacity);
+
+        List<Thread> threads = new ArrayList<>();
+        AtomicInteger remainingRoots = new AtomicInteger(roots.size());
+        for (int i = 0; i < roots.size(); i++) {
+            Path root = roots.get(i);
+            threads.add(Thread.ofPlatform().name("pipeline-discovery-" + i)
+                    .start(() -> discover(root, paths, remainingRoots)));
+        }
+        // 命中缓存的文件由读取阶段直接交给合并阶段
+        threads.addAll(startStage("pipeline-reader-", readerThreads, true, paths, sources,
+                item -> read((Path) item, sources, results)));
+        threads.addAll(startStage("pipeline-parser-", parserThreads, false, sources, results,
+                item -> parse((SourceFile) item, results)));
+        threads.addAll(startStage("pipeline-sink-", sinkThreads, false, results, null,
+                item -> merge((FileContribution) item)));
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * 阶段一：遍历一个源码根，逐个把Java文件路径放入队列；最后一个结束的发现线程放入结束标记
+     */
+    private void discover(Path root, BlockingQueue<Object> out, AtomicInteger remainingRoots) {
+        try (BuildMetrics.PhaseTimer timer = metrics.start(BuildMetrics.Phase.DISCOVERY);
+             Stream<Path> walk = Files.walk(root)) {
+            String extension = classFiles ? ".class" : ".java";
+            Iterator<Path> it = walk.filter(path -> path.toString().endsWith(extension)).iterator();
+            while (it.hasNext()) {
+                Path path = it.next();
+                // 下游来不及处理时put会阻塞，阻塞的时间不算作遍历目录的时间
+                long putStart = System.nanoTime();
+                out.put(path);
+                timer.blocked(System.nanoTime() - putStart);
+                discovered.incrementAndGet();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("解析目录 " + SourceRoots.location(root) + " 时出错: " + e.getMessage());
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (remainingRoots.decrementAndGet() == 0) {
+                System.out.println("找到 " + discovered.get() + (classFiles ? " 个class文件" : " 个Java文件"));
+                putQuietly(out, END);
+            }
+        }
+    }
+
+    /**
+     * 阶段二：读取文件内容；启用缓存时命中的文件直接跳过解析阶段
+     */
+    private void read(Path filePath, BlockingQueue<Object> out, BlockingQueue<Object> cached) throws InterruptedException {
+        try {
+            if (buildCache == null) {
+                byte[] content = Files.readAllBytes(filePath);
+                out.put(new SourceFile(filePath, SourceRoots.key(filePath), content.length, 0,
+                        BuildCache.hash(content), content, classFiles));
+                return;
+            }
+
+            String key = SourceRoots.key(filePath);
+            long size = Files.size(filePath);
+            long lastModified = Files.getLastModifiedTime(filePath).toMillis();
+            FileContribution contribution = buildCache.lookup(key, size, lastModified);
+            if (contribution == null) {
+                byte[] content = Files.readAllBytes(filePath);
+                byte[] hash = BuildCache.hash(content);
+                contribution = buildCache.lookup(key, content.length, lastModified, hash);
+                if (contribution == null) {
+                    out.put(new SourceFile(filePath, key, content.length, lastModified, hash, content, classFiles));
+                    return;
+                }
+            }
+            contribution.setSource(key);
+            reused.incrementAndGet();
+            cached.put(contribution);
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            System.err.println("读取文件 " + SourceRoots.location(filePath) + " 时出错: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 阶段三：在CPU线程上解析源码或class文件
+     */
+    private void parse(SourceFile file, BlockingQueue<Object> out) throws InterruptedException {
+        BuildEvents.FileParsed event = new BuildEvents.FileParsed();
+        event.begin();
+        long start = System.nanoTime();
+        FileContribution contribution = file.classFile != null
+                ? graphBuilder.parseClassFile(file.path, file.classFile, file.hash)
+                : graphBuilder.parseSource(file.path, file.source, file.hash);
+        metrics.recordParse(file.path, start);
+        if (event.shouldCommit()) {
+            event.path = file.path.toString();
+            event.bytes = file.size;
+            event.failed = contribution == null;
+            if (contribution != null) {
+                event.nodes = contribution.nodeCount();
+                event.edges = contribution.edgeCount();
+            }
+            event.commit();
+        }
+        if (contribution == null) {
+            failed.incrementAndGet();
+            return;
+        }
+        contribution.setSource(file.key);
+        parsed.incrementAndGet();
+        if (buildCache != null) {
+            buildCache.store(file.key, file.size, file.lastModified, file.hash, contribution);
+        }
+        out.put(contribution);
+    }
+
+    /**
+     * 阶段四：合并到全局符号表和边存储
+     */
+    private void merge(FileContribution contribution) {
+        long start = System.nanoTime();
+        graphBuilder.merge(contribution);
+        metrics.record(BuildMetrics.Phase.MERGE, start);
+    }
+
+    /**
+     * 启动一个阶段的全部工作线程
+     * 结束标记在同阶段的工作线程之间传递，最后一个退出的线程负责通知下游阶段。
+     * 读取阶段直接交给合并阶段的结果总是先于结束标记入队：合并阶段的结束标记
+     * 要等所有解析线程退出后才会放入，而解析线程要等所有读取线程退出后才会退出。
+     */
+    private List<Thread> startStage(String name, int workers, boolean virtual,
+                                    BlockingQueue<Object> in, BlockingQueue<Object> next, Stage stage) {
+        AtomicInteger remaining = new AtomicInteger(workers);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            Runnable worker = () -> {
+                try {
+                    while (true) {
+                        Object item = in.take();
+                        if (item == END) {
+                            in.put(END);
+                            break;
+                        }
+                        try {
+                            stage.process(item);
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                            System.err.println("处理 " + item + " 时出错: " + e.getMessage());
+                            e.printStackTrace();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (remaining.decrementAndGet() == 0 && next != null) {
+                        putQuietly(next, END);
+                    }
+                }
+            };
+            threads.add(virtual
+                    ? Thread.ofVirtual().name(name + i).start(worker)
+                    : Thread.ofPlatform().name(name + i).start(worker));
+        }
+        return threads;
+    }
+
+    private static void putQuietly(BlockingQueue<Object> queue, Object item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+        void process(Object item) throws InterruptedException;
+    }
+
+    /**
+     * 读取阶段的输出：待解析的源码（或class文件的内容）及其缓存元数据
+     */
+    private static final class SourceFile {
+        private final Path path;
+        private final String key;
+        private final long size;
+        private final long lastModified;
+        private final byte[] hash;
+        private final String source;
+        private final byte[] classFile;
+
+        SourceFile(Path path, String key, long size, long lastModified, byte[] hash, byte[] content,
+                   boolean classFile) {
+            this.path = path;
+            this.key = key;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            // 源码在读取线程中解码；class文件直接交给解析线程读取
+            this.source = classFile ? null : new String(content, StandardCharsets.UTF_8);
+            this.classFile = classFile ? content : null;
+        }
+    }
+}
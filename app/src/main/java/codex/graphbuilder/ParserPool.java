@@ -0,0 +1,40 @@
+package codex.graphbuilder;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+
+/**
+ * 每个工作线程复用一个JavaParser实例，所有实例共享同一份解析配置
+ * JavaParser实例本身不是线程安全的，但可以在同一线程内反复使用。
+ */
+class ParserPool {
+    private final ParserConfiguration configuration;
+    private final ThreadLocal<JavaParser> parsers;
+
+    ParserPool(ParserConfiguration configuration) {
+        this.configuration = configuration;
+        this.parsers = ThreadLocal.withInitial(() -> new JavaParser(configuration));
+    }
+
+    JavaParser get() {
+        return parsers.get();
+    }
+
+    ParserConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * 默认配置：只保留图谱需要的信息
+     * - 不把注释挂到AST节点上（图中不使用注释）
+     * - 不启用词法保留（不会回写源码）；词法单元仍需保存，节点的行号范围依赖它
+     * - 不检测原始换行符
+     */
+    static ParserConfiguration defaultConfiguration() {
+        return new ParserConfiguration()
+                .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17)
+                .setAttributeComments(false)
+                .setLexicalPreservationEnabled(false)
+                .setDetectOriginalLineSeparator(false);
+    }
+}
@@ -0,0 +1,202 @@
+package codex.graphbuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按列存储的节点属性，以符号表中的节点ID为下标
+ * 每个属性一列，列的类型和每种节点导出的列顺序都是固定的：
+ * 行号存为int，签名存为去重字典中的下标，不再为每个节点分配一个Map。
+ * 列按ID分块存放，与符号表相同，读取时无需加锁；签名字典的读写在同一把锁下进行。
+ */
+class PropertyStore {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * 属性列：CSV表头中的列名，以及是否为整数列
+     */
+    enum Column {
+        SIGNATURE("signature", false),
+        START_LINE("startLine", true),
+        END_LINE("endLine", true),
+        PATH("path", false),
+        HASH("hash", false),
+        LOC("loc", true);
+
+        private static final Column[] VALUES = values();
+
+        private final String header;
+        private final boolean intColumn;
+
+        Column(String header, boolean intColumn) {
+            this.header = header;
+            this.intColumn = intColumn;
+        }
+
+        String getHeader() {
+            return header;
+        }
+
+        boolean isInt() {
+            return intColumn;
+        }
+
+        static Column byOrdinal(int ordinal) {
+            return VALUES[ordinal];
+        }
+
+        /**
+         * 按列名查找，找不到返回null
+         */
+        static Column byHeader(String header) {
+            for (Column column : VALUES) {
+                if (column.header.equals(header)) {
+                    return column;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final List<Column> MEMBER_COLUMNS = List.of(Column.SIGNATURE, Column.START_LINE, Column.END_LINE);
+    private static final List<Column> FILE_COLUMNS = List.of(Column.PATH, Column.HASH, Column.LOC);
+
+    // 字符串列的值字典：相同的签名只存一份
+    private final Map<String, Integer> dictionaryIds = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+
+    // 每列的分块数组：整数列存值，字符串列存字典下标加一；0表示没有值（行号从1开始，空文件不记录行数）
+    private final IntColumn[] columns = new IntColumn[Column.VALUES.length];
+
+    PropertyStore() {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new IntColumn();
+        }
+    }
+
+    /**
+     * 某种节点导出的属性列，顺序固定
+     */
+    static List<Column> columnsFor(NodeKind kind) {
+        return switch (kind) {
+            case PACKAGE -> List.of();
+            case FILE -> FILE_COLUMNS;
+            default -> MEMBER_COLUMNS;
+        };
+    }
+
+    void setInt(int id, Column column, int value) {
+        columns[column.ordinal()].set(id, value);
+    }
+
+    void setString(int id, Column column, String value) {
+        columns[column.ordinal()].set(id, internString(value) + 1);
+    }
+
+    /**
+     * 清除节点的全部属性（节点从图中移除时）
+     */
+    void clear(int id) {
+        for (IntColumn column : columns) {
+            if (column.get(id) != 0) {
+                column.set(id, 0);
+            }
+        }
+    }
+
+    boolean has(int id, Column column) {
+        return columns[column.ordinal()].get(id) != 0;
+    }
+
+    int getInt(int id, Column column) {
+        return columns[column.ordinal()].get(id);
+    }
+
+    /**
+     * 字符串列的值，没有值时返回null
+     */
+    String getString(int id, Column column) {
+        int entry = columns[column.ordinal()].get(id);
+        return entry == 0 ? null : dictionaryEntry(entry - 1);
+    }
+
+    /**
+     * 按导出格式取值：整数列转为十进制，没有值时返回空字符串
+     */
+    String format(int id, Column column) {
+        int value = columns[column.ordinal()].get(id);
+        if (value == 0) {
+            return "";
+        }
+        return column.isInt() ? Integer.toString(value) : dictionaryEntry(value - 1);
+    }
+
+    /**
+     * 字典中不同字符串值的数量
+     */
+    synchronized int distinctStrings() {
+        return dictionary.size();
+    }
+
+    private synchronized int internString(String value) {
+        Integer entry = dictionaryIds.get(value);
+        if (entry == null) {
+            entry = dictionary.size();
+            dictionary.add(value);
+            dictionaryIds.put(value, entry);
+        }
+        return entry;
+    }
+
+    private synchronized String dictionaryEntry(int entry) {
+        return dictionary.get(entry);
+    }
+
+    /**
+     * 按ID分块的int数组，未分配的块视为全0
+     */
+    private static final class IntColumn {
+        private volatile int[][] chunks = new int[16][];
+
+        int get(int id) {
+            int[][] current = chunks;
+            int chunk = id >>> CHUNK_BITS;
+            if (chunk >= current.length || current[chunk] == null) {
+                return 0;
+            }
+            return (int) INTS.getAcquire(current[chunk], id & CHUNK_MASK);
+        }
+
+        void set(int id, int value) {
+            ensureCapacity(id);
+            INTS.setRelease(chunks[id >>> CHUNK_BITS], id & CHUNK_MASK, value);
+        }
+
+        private void ensureCapacity(int id) {
+            int chunk = id >>> CHUNK_BITS;
+            int[][] current = chunks;
+            if (chunk < current.length && current[chunk] != null) {
+                return;
+            }
+            synchronized (this) {
+                current = chunks;
+                if (chunk >= current.length) {
+                    current = Arrays.copyOf(current, Math.max(current.length * 2, chunk + 1));
+                }
+                if (current[chunk] == null) {
+                    current[chunk] = new int[CHUNK_SIZE];
+                }
+                chunks = current;
+            }
+        }
+    }
+}
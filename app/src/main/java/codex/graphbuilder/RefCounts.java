@@ -0,0 +1,108 @@
+package codex.graphbuilder;
+
+import java.util.Arrays;
+
+/**
+ * 监视模式下节点和边的引用计数：同一个节点或边可能由多个文件贡献（例如包节点），
+ * 只有贡献它的最后一个文件被撤回时才从图中移除
+ * 开放寻址的long -> int表，键不能为-1；只在监视线程中访问，不加锁。
+ */
+class RefCounts {
+    private static final long EMPTY = -1L;
+
+    private long[] keys = newKeys(64);
+    private int[] counts = new int[64];
+    private int size;
+
+    /**
+     * 计数加一，返回新的计数
+     */
+    int increment(long key) {
+        if ((size + 1) * 4L > keys.length * 3L) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return ++counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = 1;
+        size++;
+        return 1;
+    }
+
+    /**
+     * 计数减一，返回新的计数；计数为0时删除该键，键不存在时返回-1
+     */
+    int decrement(long key) {
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int count = --counts[slot];
+        if (count == 0) {
+            removeAt(slot);
+        }
+        return count;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 删除后把同一探测链上的后续元素前移填补空槽
+     */
+    private void removeAt(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slotOf(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                counts[hole] = counts[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        counts[hole] = 0;
+        size--;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = newKeys(oldKeys.length * 2);
+        counts = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotOf(oldKeys[i], mask);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int slotOf(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+}
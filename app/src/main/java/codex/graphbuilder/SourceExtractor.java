@@ -0,0 +1,528 @@
+package codex.graphbuilder;
+
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.nodeTypes.NodeWithTypeParameters;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.ast.type.TypeParameter;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * 从单个编译单元提取节点和边：一次遍历AST，从顶层类型开始只沿类型的成员向下走
+ * 编译单元本身是文件节点，文件声明其中的每个类型（DECLARES），导入语句是从文件出发的IMPORT边，每个文件只有一份。
+ * 类、接口、枚举、记录类和注解类型都生成类节点，成员类型使用二进制名（包名.外部类$内部类），
+ * 与class文件前端的命名一致，不同外部类中的同名成员类型不再互相覆盖。
+ * 枚举常量和记录类的组件生成字段节点，记录类未显式声明的组件访问方法和注解类型的元素生成方法节点。
+ * 方法节点名带擦除后的参数描述符（见MethodDescriptor），类型变量擦除为第一个上界，
+ * 参数类型按外围类型、本文件的顶层类型、导入索引和源码路径上的同包类型确定二进制名，与class文件前端一致。
+ * 方法体只交给调用图提取器遍历一次；方法体中的局部类和匿名类不生成节点，构造器和初始化块同样跳过。
+ */
+class SourceExtractor extends VoidVisitorAdapter<Void> {
+    private static final String DEFAULT_PACKAGE_PREFIX = "(default package).";
+
+    private final FileContribution contribution;
+    private final String fileName;
+    private final String packageName;
+    private final boolean callGraphEnabled;
+    private final ImportIndex imports;
+    // 简单类名是否是同包中其他文件声明的顶层类型
+    private final Predicate<String> isSamePackageType;
+    // 本文件中的顶层类型的简单名
+    private final Set<String> topLevelTypes = new HashSet<>();
+
+    // 外围类型栈，栈顶是正在提取的类型
+    private final Deque<TypeScope> scopes = new ArrayDeque<>();
+
+    private SourceExtractor(FileContribution contribution, String fileName, String packageName,
+                            boolean callGraphEnabled, ImportIndex imports, Predicate<String> isSamePackageType) {
+        this.contribution = contribution;
+        this.fileName = fileName;
+        this.packageName = packageName;
+        this.callGraphEnabled = callGraphEnabled;
+        this.imports = imports;
+        this.isSamePackageType = isSamePackageType;
+    }
+
+    /**
+     * 提取编译单元对图的贡献，fileName是文件节点的名称；callGraphEnabled为false时不遍历方法体
+     */
+    static FileContribution extract(CompilationUnit cu, String fileName, boolean callGraphEnabled) {
+        return extract(cu, fileName, callGraphEnabled, new FileContribution(), name -> false);
+    }
+
+    /**
+     * 把编译单元对图的贡献写入给定的贡献对象，返回该对象
+     * isSamePackageType判断简单类名是否是同包中其他文件声明的顶层类型，同包类型遮蔽按需导入和java.lang中的同名类型。
+     */
+    static FileContribution extract(CompilationUnit cu, String fileName, boolean callGraphEnabled,
+                                    FileContribution contribution, Predicate<String> isSamePackageType) {
+        String packageName = cu.getPackageDeclaration()
+                .map(pd -> pd.getName().asString())
+                .orElse("(default package)");
+        ImportIndex imports = ImportIndex.of(cu);
+        SourceExtractor extractor = new SourceExtractor(contribution, fileName, packageName, callGraphEnabled, imports,
+                isSamePackageType);
+        extractor.contribution.setImportIndex(imports);
+        extractor.contribution.addPackage(packageName);
+        extractor.contribution.addFile(fileName);
+        for (ImportDeclaration importDecl : cu.getImports()) {
+            extractor.contribution.addEdge(fileName, importTarget(importDecl), Edge.EdgeType.IMPORT);
+        }
+        for (TypeDeclaration<?> type : cu.getTypes()) {
+            extractor.topLevelTypes.add(type.getNameAsString());
+        }
+        for (TypeDeclaration<?> type : cu.getTypes()) {
+            type.accept(extractor, null);
+        }
+        return extractor.contribution;
+    }
+
+    /**
+     * IMPORT边的目标：导入的类型取二进制名（成员类型用 '$'，与class文件前端一致），
+     * 静态导入的成员取其所在的类型，按需导入包时为包名
+     */
+    private static String importTarget(ImportDeclaration importDecl) {
+        String name = importDecl.getName().asString();
+        if (importDecl.isStatic() && !importDecl.isAsterisk()) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        return ImportIndex.binaryName(name);
+    }
+
+    @Override
+    public void visit(ClassOrInterfaceDeclaration classDecl, Void arg) {
+        String className = enterType(classDecl, extractClassSignature(classDecl));
+        for (ClassOrInterfaceType extendedType : classDecl.getExtendedTypes()) {
+            addSupertype(className, extendedType, Edge.EdgeType.EXTENDS);
+        }
+        for (ClassOrInterfaceType implementedType : classDecl.getImplementedTypes()) {
+            addSupertype(className, implementedType, Edge.EdgeType.IMPLEMENTS);
+        }
+        visitMembers(classDecl);
+        scopes.pop();
+    }
+
+    @Override
+    public void visit(EnumDeclaration enumDecl, Void arg) {
+        String enumName = enterType(enumDecl, extractEnumSignature(enumDecl));
+        for (ClassOrInterfaceType implementedType : enumDecl.getImplementedTypes()) {
+            addSupertype(enumName, implementedType, Edge.EdgeType.IMPLEMENTS);
+        }
+        for (EnumConstantDeclaration constant : enumDecl.getEntries()) {
+            constant.accept(this, arg);
+        }
+        visitMembers(enumDecl);
+        scopes.pop();
+    }
+
+    @Override
+    public void visit(RecordDeclaration recordDecl, Void arg) {
+        String recordName = enterType(recordDecl, extractRecordSignature(recordDecl));
+        for (ClassOrInterfaceType implementedType : recordDecl.getImplementedTypes()) {
+            addSupertype(recordName, implementedType, Edge.EdgeType.IMPLEMENTS);
+        }
+
+        // 记录类的组件是private final字段，没有显式声明时还有同名的public访问方法
+        for (Parameter component : recordDecl.getParameters()) {
+            String fieldName = recordName + "." + component.getNameAsString();
+            addField(recordName, fieldName, "private final " + component.getType() + " " + component.getNameAsString(),
+                    component);
+            if (recordDecl.getMethodsBySignature(component.getNameAsString()).isEmpty()) {
+                addMethod(recordName, fieldName + "()", "public " + component.getType() + " " + component.getNameAsString() + "()",
+                        component);
+            }
+        }
+        visitMembers(recordDecl);
+        scopes.pop();
+    }
+
+    @Override
+    public void visit(AnnotationDeclaration annotationDecl, Void arg) {
+        StringBuilder signature = new StringBuilder();
+        appendModifiers(signature, annotationDecl.getModifiers());
+        signature.append("@interface ").append(annotationDecl.getNameAsString());
+        enterType(annotationDecl, signature.toString());
+        visitMembers(annotationDecl);
+        scopes.pop();
+    }
+
+    @Override
+    public void visit(MethodDeclaration method, Void arg) {
+        TypeScope scope = scopes.peek();
+        String methodName = scope.name + "." + methodDescriptor(method.getNameAsString(), method.getParameters(),
+                typeVariables(scope.typeVariables, method.getTypeParameters()));
+        addMethod(scope.name, methodName, extractMethodSignature(method), method);
+
+        // 提取方法调用和字段读写
+        if (scope.callGraph != null) {
+            scope.callGraph.extract(method, methodName);
+        }
+    }
+
+    @Override
+    public void visit(FieldDeclaration field, Void arg) {
+        String className = scopes.peek().name;
+        for (VariableDeclarator var : field.getVariables()) {
+            addField(className, className + "." + var.getNameAsString(), extractFieldSignature(field, var), var);
+        }
+    }
+
+    @Override
+    public void visit(EnumConstantDeclaration constant, Void arg) {
+        TypeScope scope = scopes.peek();
+        // 枚举常量是枚举类型的public static final字段；带类体的常量是匿名类，类体不生成节点
+        addField(scope.name, scope.name + "." + constant.getNameAsString(),
+                "public static final " + scope.declaration.getNameAsString() + " " + constant.getNameAsString(),
+                constant);
+    }
+
+    @Override
+    public void visit(AnnotationMemberDeclaration member, Void arg) {
+        String className = scopes.peek().name;
+        StringBuilder signature = new StringBuilder();
+        appendModifiers(signature, member.getModifiers());
+        signature.append(member.getType()).append(' ').append(member.getNameAsString()).append("()");
+        member.getDefaultValue().ifPresent(value -> signature.append(" default ").append(value));
+        addMethod(className, className + "." + member.getNameAsString() + "()", signature.toString(), member);
+    }
+
+    @Override
+    public void visit(ConstructorDeclaration constructor, Void arg) {
+        // 构造器不生成节点，也不进入构造器体
+    }
+
+    @Override
+    public void visit(CompactConstructorDeclaration constructor, Void arg) {
+        // 记录类的紧凑构造器同上
+    }
+
+    @Override
+    public void visit(InitializerDeclaration initializer, Void arg) {
+        // 初始化块不生成节点
+    }
+
+    /**
+     * 进入一个类型声明：生成类节点、包含关系和文件的声明关系，压入外围类型栈，返回类型的二进制名
+     */
+    private String enterType(TypeDeclaration<?> typeDecl, String signature) {
+        TypeScope outer = scopes.peek();
+        String className = outer == null
+                ? packageName + "." + typeDecl.getNameAsString()
+                : outer.name + "$" + typeDecl.getNameAsString();
+        contribution.addClass(className);
+
+        // 收集类签名和位置信息
+        contribution.addStringProperty(className, PropertyStore.Column.SIGNATURE, signature);
+        extractLocationInfo(className, typeDecl);
+
+        // 添加包与类的包含关系
+        contribution.addEdge(packageName, className, Edge.EdgeType.PACKAGE_CONTAINS);
+
+        contribution.addEdge(fileName, className, Edge.EdgeType.DECLARES);
+
+        Map<String, String> typeVariables = outer == null ? Map.of() : outer.typeVariables;
+        if (typeDecl instanceof NodeWithTypeParameters<?> generic) {
+            typeVariables = typeVariables(typeVariables, generic.getTypeParameters());
+        }
+        TypeScope scope = new TypeScope(typeDecl, className, typeVariables);
+        scopes.push(scope);
+        if (callGraphEnabled) {
+            scope.callGraph = new CallGraphExtractor(contribution, className, typeDecl, this::resolveMemberType);
+        }
+        return className;
+    }
+
+    private void visitMembers(TypeDeclaration<?> typeDecl) {
+        for (BodyDeclaration<?> member : typeDecl.getMembers()) {
+            member.accept(this, null);
+        }
+    }
+
+    private void addMethod(String className, String methodName, String signature, Node node) {
+        contribution.addMethod(methodName);
+        contribution.addEdge(className, methodName, Edge.EdgeType.CONTAINS_METHOD);
+        contribution.addStringProperty(methodName, PropertyStore.Column.SIGNATURE, signature);
+        extractLocationInfo(methodName, node);
+    }
+
+    private void addField(String className, String fieldName, String signature, Node node) {
+        contribution.addField(fieldName);
+        contribution.addEdge(className, fieldName, Edge.EdgeType.CONTAINS_FIELD);
+        contribution.addStringProperty(fieldName, PropertyStore.Column.SIGNATURE, signature);
+        extractLocationInfo(fieldName, node);
+    }
+
+    /**
+     * 记录继承/实现的类型：外围类型中声明的成员类型在当前AST上直接确定，其余留到全局解析阶段
+     */
+    private void addSupertype(String className, ClassOrInterfaceType type, Edge.EdgeType edgeType) {
+        String typeName = type.getNameWithScope();
+        String memberType = resolveMemberType(typeName);
+        if (memberType != null) {
+            contribution.addEdge(className, memberType, edgeType);
+        } else {
+            contribution.addTypeReference(className, typeName, edgeType);
+        }
+    }
+
+    /**
+     * 由内向外在外围类型（含自身）中查找类型名的第一段，找到时返回二进制名，否则返回null
+     * 第一段可以是外围类型的成员类型，也可以是外围类型自身的简单名，其余各段依次是更内层的成员类型。
+     */
+    String resolveMemberType(String typeName) {
+        int dot = typeName.indexOf('.');
+        String first = dot < 0 ? typeName : typeName.substring(0, dot);
+        String rest = dot < 0 ? "" : typeName.substring(dot).replace('.', '$');
+        for (TypeScope scope : scopes) {
+            String member = scope.memberTypes().get(first);
+            if (member != null) {
+                return member + rest;
+            }
+            if (scope.declaration.getNameAsString().equals(first)) {
+                return scope.name + rest;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 源码中写出的类型名的二进制名：先在外围类型中查找，再查本文件的顶层类型，最后交给导入索引（同包的其他类型见isSamePackageType）
+     * 默认包中的类型没有包名前缀，与class文件中的写法相同。
+     */
+    private String qualify(String typeName) {
+        int dot = typeName.indexOf('.');
+        String first = dot < 0 ? typeName : typeName.substring(0, dot);
+        String binaryName = resolveMemberType(typeName);
+        if (binaryName == null && topLevelTypes.contains(first)) {
+            binaryName = packageName + "." + first + (dot < 0 ? "" : typeName.substring(dot).replace('.', '$'));
+        }
+        if (binaryName == null) {
+            return imports.qualify(typeName, isSamePackageType);
+        }
+        return binaryName.startsWith(DEFAULT_PACKAGE_PREFIX)
+                ? binaryName.substring(DEFAULT_PACKAGE_PREFIX.length()) : binaryName;
+    }
+
+    /**
+     * 在外围的类型变量上加上新声明的类型变量：变量名 -> 擦除后的类型名（第一个上界，没有上界时为Object）
+     */
+    private static Map<String, String> typeVariables(Map<String, String> outer, NodeList<TypeParameter> declared) {
+        if (declared.isEmpty()) {
+            return outer;
+        }
+        Map<String, String> typeVariables = new HashMap<>(outer);
+        for (TypeParameter typeParameter : declared) {
+            String erasure = "Object";
+            if (typeParameter.getTypeBound().isNonEmpty()) {
+                ClassOrInterfaceType bound = typeParameter.getTypeBound().get(0);
+                erasure = bound.getScope().isEmpty()
+                        ? typeVariables.getOrDefault(bound.getNameAsString(), bound.getNameAsString())
+                        : bound.getNameWithScope();
+            }
+            typeVariables.put(typeParameter.getNameAsString(), erasure);
+        }
+        return typeVariables;
+    }
+
+    /**
+     * 方法名加擦除后的参数描述符，可变参数是数组
+     */
+    private String methodDescriptor(String name, NodeList<Parameter> parameters, Map<String, String> typeVariables) {
+        StringBuilder descriptor = new StringBuilder(name).append('(');
+        for (Parameter parameter : parameters) {
+            if (parameter.isVarArgs()) {
+                descriptor.append('[');
+            }
+            Type type = parameter.getType();
+            while (type.isArrayType()) {
+                descriptor.append('[');
+                type = type.asArrayType().getComponentType();
+            }
+            if (type.isPrimitiveType()) {
+                descriptor.append(switch (type.asPrimitiveType().getType()) {
+                    case BOOLEAN -> 'Z';
+                    case BYTE -> 'B';
+                    case CHAR -> 'C';
+                    case DOUBLE -> 'D';
+                    case FLOAT -> 'F';
+                    case INT -> 'I';
+                    case LONG -> 'J';
+                    case SHORT -> 'S';
+                });
+            } else if (type.isClassOrInterfaceType()) {
+                ClassOrInterfaceType classType = type.asClassOrInterfaceType();
+                String typeName = classType.getNameWithScope();
+                if (classType.getScope().isEmpty()) {
+                    typeName = typeVariables.getOrDefault(typeName, typeName);
+                }
+                MethodDescriptor.appendReference(descriptor, qualify(typeName));
+            } else {
+                MethodDescriptor.appendReference(descriptor, "java.lang.Object");
+            }
+        }
+        return descriptor.append(')').toString();
+    }
+
+    /**
+     * 提取类签名
+     */
+    private static String extractClassSignature(ClassOrInterfaceDeclaration classDecl) {
+        StringBuilder signature = new StringBuilder();
+
+        // 添加访问修饰符
+        appendModifiers(signature, classDecl.getModifiers());
+
+        // 添加类或接口关键字和类名
+        signature.append(classDecl.isInterface() ? "interface " : "class ");
+        signature.append(classDecl.getNameAsString());
+
+        // 添加类型参数（泛型）、继承关系和实现的接口
+        appendList(signature, "<", classDecl.getTypeParameters(), ">");
+        appendList(signature, " extends ", classDecl.getExtendedTypes(), "");
+        appendList(signature, " implements ", classDecl.getImplementedTypes(), "");
+        return signature.toString();
+    }
+
+    /**
+     * 提取枚举签名
+     */
+    private static String extractEnumSignature(EnumDeclaration enumDecl) {
+        StringBuilder signature = new StringBuilder();
+        appendModifiers(signature, enumDecl.getModifiers());
+        signature.append("enum ").append(enumDecl.getNameAsString());
+        appendList(signature, " implements ", enumDecl.getImplementedTypes(), "");
+        return signature.toString();
+    }
+
+    /**
+     * 提取记录类签名，形如 public record Point<T>(T x, T y) implements Shape
+     */
+    private static String extractRecordSignature(RecordDeclaration recordDecl) {
+        StringBuilder signature = new StringBuilder();
+        appendModifiers(signature, recordDecl.getModifiers());
+        signature.append("record ").append(recordDecl.getNameAsString());
+        appendList(signature, "<", recordDecl.getTypeParameters(), ">");
+        signature.append('(');
+        appendList(signature, "", recordDecl.getParameters(), "");
+        signature.append(')');
+        appendList(signature, " implements ", recordDecl.getImplementedTypes(), "");
+        return signature.toString();
+    }
+
+    /**
+     * 提取方法签名
+     */
+    private static String extractMethodSignature(MethodDeclaration method) {
+        StringBuilder signature = new StringBuilder();
+        appendModifiers(signature, method.getModifiers());
+        appendList(signature, "<", method.getTypeParameters(), "> ");
+
+        // 添加返回类型、方法名和参数列表
+        signature.append(method.getType().toString())
+                .append(" ")
+                .append(method.getNameAsString());
+        signature.append("(");
+        appendList(signature, "", method.getParameters(), "");
+        signature.append(")");
+
+        // 添加throws声明
+        appendList(signature, " throws ", method.getThrownExceptions(), "");
+        return signature.toString();
+    }
+
+    /**
+     * 提取字段签名
+     */
+    private static String extractFieldSignature(FieldDeclaration field, VariableDeclarator var) {
+        StringBuilder signature = new StringBuilder();
+        appendModifiers(signature, field.getModifiers());
+
+        // 添加类型和变量名
+        signature.append(var.getType().toString())
+                .append(" ")
+                .append(var.getNameAsString());
+
+        // 添加初始化值（如果有）
+        var.getInitializer().ifPresent(init ->
+                signature.append(" = ").append(init.toString()));
+        return signature.toString();
+    }
+
+    private static void appendModifiers(StringBuilder signature, NodeList<?> modifiers) {
+        modifiers.forEach(modifier -> signature.append(modifier.toString()).append(" "));
+    }
+
+    /**
+     * 非空时写出 前缀 + 以逗号分隔的元素 + 后缀
+     */
+    private static void appendList(StringBuilder signature, String prefix, NodeList<?> nodes, String suffix) {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        signature.append(prefix);
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) {
+                signature.append(", ");
+            }
+            signature.append(nodes.get(i).toString());
+        }
+        signature.append(suffix);
+    }
+
+    /**
+     * 提取位置信息
+     */
+    private void extractLocationInfo(String nodeName, Node node) {
+        node.getRange().ifPresent(range -> {
+            Position begin = range.begin;
+            Position end = range.end;
+            contribution.addIntProperty(nodeName, PropertyStore.Column.START_LINE, begin.line);
+            contribution.addIntProperty(nodeName, PropertyStore.Column.END_LINE, end.line);
+        });
+    }
+
+    /**
+     * 外围类型栈中的一项：类型声明、二进制名、可见的类型变量和该类型的调用图提取器
+     */
+    private static final class TypeScope {
+        final TypeDeclaration<?> declaration;
+        final String name;
+        // 类型变量名 -> 擦除后的类型名，含外围类型声明的类型变量
+        final Map<String, String> typeVariables;
+        CallGraphExtractor callGraph;
+
+        // 成员类型的简单名 -> 二进制名，第一次查找时建立
+        private Map<String, String> memberTypes;
+
+        TypeScope(TypeDeclaration<?> declaration, String name, Map<String, String> typeVariables) {
+            this.declaration = declaration;
+            this.name = name;
+            this.typeVariables = typeVariables;
+        }
+
+        Map<String, String> memberTypes() {
+            if (memberTypes == null) {
+                memberTypes = new HashMap<>();
+                for (BodyDeclaration<?> member : declaration.getMembers()) {
+                    if (member instanceof TypeDeclaration<?> memberType) {
+                        memberTypes.put(memberType.getNameAsString(), name + "$" + memberType.getNameAsString());
+                    }
+                }
+            }
+            return memberTypes;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package codex.graphbuilder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 源码路径上的同包类型查找，约定与javac的-sourcepath相同：包p中的顶层类型T声明在某个源码根下的p/T.java中
+ * 查找的位置是正在提取的文件所在的目录，以及--source-roots指定的每个源码根下与包名对应的目录。
+ * 提取时据此判断写出的简单类名是否是同包的类型；这依赖于文件之外的目录内容，
+ * 因此查找过的路径和结果记入文件的贡献，增量缓存和监视模式据此判断提取结果是否过期。
+ */
+final class SourcePath {
+    private final List<Path> roots;
+
+    SourcePath(List<Path> roots) {
+        this.roots = List.copyOf(roots);
+    }
+
+    /**
+     * 包packageName中名为simpleName的顶层类型可能所在的源文件，file是正在提取的源文件，默认包的packageName为空字符串
+     */
+    List<Path> candidates(Path file, String packageName, String simpleName) {
+        String fileName = simpleName + ".java";
+        List<Path> candidates = new ArrayList<>();
+        Path directory = file.getParent();
+        if (directory != null) {
+            candidates.add(directory.resolve(fileName));
+        }
+        for (Path root : roots) {
+            Path candidate = packageName.isEmpty() ? root.resolve(fileName)
+                    : root.resolve(packageName.replace('.', '/')).resolve(fileName);
+            if (!candidates.contains(candidate)) {
+                candidates.add(candidate);
+            }
+        }
+        return candidates;
+    }
+}
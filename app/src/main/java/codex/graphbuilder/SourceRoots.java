@@ -0,0 +1,128 @@
+package codex.graphbuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 本次解析的源码根：目录，或者 *.jar / *.zip 源码包
+ * 源码包通过JDK的zip文件系统只读打开，不解压到磁盘；其中的条目和普通文件一样用Path读取。
+ * 打开的zip文件系统在close时统一关闭，因此要等读取、解析和引用解析都结束后再关闭。
+ */
+class SourceRoots implements Closeable {
+    private final List<Path> roots;
+    private final List<FileSystem> archives;
+
+    private SourceRoots(List<Path> roots, List<FileSystem> archives) {
+        this.roots = roots;
+        this.archives = archives;
+    }
+
+    /**
+     * 打开给定的源码根，源码包打开为zip文件系统并以其根目录代替
+     */
+    static SourceRoots open(List<String> paths) throws IOException {
+        List<Path> roots = new ArrayList<>();
+        List<FileSystem> archives = new ArrayList<>();
+        try {
+            for (String path : paths) {
+                Path root = Path.of(path);
+                if (isArchive(root)) {
+                    FileSystem archive = FileSystems.newFileSystem(root);
+                    archives.add(archive);
+                    roots.add(archive.getRootDirectories().iterator().next());
+                } else {
+                    roots.add(root);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                closeAll(archives);
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw e;
+        }
+        return new SourceRoots(List.copyOf(roots), archives);
+    }
+
+    /**
+     * 是否是源码包：以.jar或.zip结尾的普通文件
+     */
+    static boolean isArchive(Path path) {
+        String name = path.getFileName() == null ? "" : path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return (name.endsWith(".jar") || name.endsWith(".zip")) && Files.isRegularFile(path);
+    }
+
+    /**
+     * 文件的可读位置：普通文件为路径本身，源码包中的条目为 jar:file:///.../x-sources.jar!/a/b/C.java 形式的URI
+     */
+    static String location(Path path) {
+        if (path.getFileSystem() == FileSystems.getDefault()) {
+            return path.toString();
+        }
+        return path.toUri().toString();
+    }
+
+    /**
+     * 文件在增量构建清单和监视模式中的键：普通文件为规范化的绝对路径，源码包中的条目为其URI，
+     * 不同源码包中同名的条目不会冲突
+     */
+    static String key(Path path) {
+        if (path.getFileSystem() == FileSystems.getDefault()) {
+            return path.toAbsolutePath().normalize().toString();
+        }
+        return path.toUri().toString();
+    }
+
+    /**
+     * 键（见key）对应的文件现在是否存在；源码包中的条目在本次打开的源码包中查找，不属于它们的条目视为不存在
+     */
+    boolean isRegularFile(String key) {
+        for (FileSystem archive : archives) {
+            Path root = archive.getRootDirectories().iterator().next();
+            String prefix = root.toUri().toString();
+            if (key.startsWith(prefix)) {
+                return Files.isRegularFile(root.resolve(key.substring(prefix.length())));
+            }
+        }
+        return !key.startsWith("jar:") && Files.isRegularFile(Path.of(key));
+    }
+
+    List<Path> paths() {
+        return roots;
+    }
+
+    int archiveCount() {
+        return archives.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeAll(archives);
+    }
+
+    private static void closeAll(List<FileSystem> archives) throws IOException {
+        IOException failure = null;
+        for (FileSystem archive : archives) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package codex.graphbuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 可以溢出到磁盘的long集合：新元素先追加到内存缓冲区，溢出时排序去重后写成一个有序顺串文件
+ * 读取时把所有顺串和内存中剩余的元素k路归并、去重成一个顺串，再从文件流式遍历，遍历结果按打包值升序。
+ * 支持添加、遍历和按值查找（在合并后的顺串文件上二分查找，每次查找都要读盘），不支持删除。
+ */
+class SpillingLongSet {
+    // 一次归并同时打开的顺串数上限，超过时分多轮归并
+    private static final int MAX_FAN_IN = 64;
+    private static final int STREAM_BUFFER = 1 << 16;
+
+    private final Path directory;
+    private final String prefix;
+    // 共享同一缓冲区预算的所有集合的缓冲区元素总数
+    private final AtomicLong bufferedTotal;
+
+    private long[] buffer = new long[256];
+    private int buffered;
+    private final List<Path> runs = new ArrayList<>();
+    private int runCounter;
+    // 上次合并后顺串的元素个数
+    private int size;
+
+    SpillingLongSet(Path directory, String prefix, AtomicLong bufferedTotal) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.bufferedTotal = bufferedTotal;
+    }
+
+    /**
+     * 追加元素，返回追加后所有共享预算的集合的缓冲区元素总数
+     */
+    synchronized long add(long value) {
+        if (buffered == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[buffered++] = value;
+        return bufferedTotal.incrementAndGet();
+    }
+
+    synchronized long addAll(long[] values, int count) {
+        if (buffered + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, buffered + count));
+        }
+        System.arraycopy(values, 0, buffer, buffered, count);
+        buffered += count;
+        return bufferedTotal.addAndGet(count);
+    }
+
+    /**
+     * 把内存缓冲区排序去重后写成一个新的顺串，并释放缓冲区；返回是否写出了顺串
+     */
+    synchronized boolean spill() throws IOException {
+        if (buffered == 0) {
+            return false;
+        }
+        int count = sortDistinct(buffer, buffered);
+        Path run = newRunFile();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), STREAM_BUFFER))) {
+            for (int i = 0; i < count; i++) {
+                out.writeLong(buffer[i]);
+            }
+        }
+        runs.add(run);
+        bufferedTotal.addAndGet(-buffered);
+        buffer = new long[256];
+        buffered = 0;
+        return true;
+    }
+
+    /**
+     * 去重后的元素个数，需要时先合并
+     */
+    synchronized int size() {
+        compact();
+        return size;
+    }
+
+    /**
+     * 按升序遍历去重后的所有元素
+     * 遍历读取的是合并后的顺串文件；遍历期间再添加的元素不会出现在这次遍历中。
+     */
+    synchronized PrimitiveIterator.OfLong iterator() {
+        compact();
+        if (size == 0) {
+            // 没有元素时不打开顺串文件，否则文件永远不会读到末尾，也就不会被关闭
+            return new RunIterator(null, 0);
+        }
+        try {
+            return new RunIterator(open(runs.get(0)), size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取溢出的边文件时出错: " + runs.get(0), e);
+        }
+    }
+
+    /**
+     * 是否包含给定元素：需要时先合并，再在顺串文件上二分查找
+     */
+    synchronized boolean contains(long value) {
+        compact();
+        if (runs.isEmpty()) {
+            return false;
+        }
+        ByteBuffer slot = ByteBuffer.allocate(Long.BYTES);
+        try (FileChannel channel = FileChannel.open(runs.get(0))) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long current = readAt(channel, mid, slot);
+                if (current < value) {
+                    low = mid + 1;
+                } else if (current > value) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取溢出的边文件时出错: " + runs.get(0), e);
+        }
+    }
+
+    /**
+     * 读取顺串文件中第index个元素
+     */
+    private static long readAt(FileChannel channel, long index, ByteBuffer slot) throws IOException {
+        slot.clear();
+        while (slot.hasRemaining()) {
+            if (channel.read(slot, index * Long.BYTES + slot.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return slot.getLong(0);
+    }
+
+    /**
+     * 把内存缓冲区和所有顺串归并成一个顺串
+     */
+    private void compact() {
+        try {
+            if (buffered > 0 || runs.size() > 1) {
+                spill();
+                while (runs.size() > MAX_FAN_IN) {
+                    List<Path> batch = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+                    runs.subList(0, MAX_FAN_IN).clear();
+                    runs.add(mergeRuns(batch));
+                }
+                if (runs.size() > 1) {
+                    List<Path> batch = new ArrayList<>(runs);
+                    runs.clear();
+                    runs.add(mergeRuns(batch));
+                }
+            }
+            size = runs.isEmpty() ? 0 : (int) (Files.size(runs.get(0)) / Long.BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("合并溢出的边文件时出错: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * k路归并若干有序顺串并去重，写成一个新的顺串，原顺串文件随即删除
+     */
+    private Path mergeRuns(List<Path> batch) throws IOException {
+        Path merged = newRunFile();
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(batch.size(),
+                (a, b) -> Long.compare(a.head, b.head));
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(merged), STREAM_BUFFER))) {
+            for (Path run : batch) {
+                RunCursor cursor = new RunCursor(open(run));
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            boolean first = true;
+            long last = 0;
+            while (!queue.isEmpty()) {
+                RunCursor cursor = queue.poll();
+                if (first || cursor.head != last) {
+                    out.writeLong(cursor.head);
+                    last = cursor.head;
+                    first = false;
+                }
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        } finally {
+            for (RunCursor cursor : queue) {
+                cursor.in.close();
+            }
+        }
+        for (Path run : batch) {
+            Files.deleteIfExists(run);
+        }
+        return merged;
+    }
+
+    private Path newRunFile() {
+        Path run = directory.resolve(prefix + "-" + runCounter++ + ".run");
+        run.toFile().deleteOnExit();
+        return run;
+    }
+
+    private static DataInputStream open(Path run) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(run), STREAM_BUFFER));
+    }
+
+    /**
+     * 原地排序并去重，返回去重后的元素个数
+     */
+    private static int sortDistinct(long[] values, int count) {
+        Arrays.parallelSort(values, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || values[i] != values[distinct - 1]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * 归并时一个顺串的读取位置
+     */
+    private static class RunCursor {
+        private final DataInputStream in;
+        private long head;
+
+        RunCursor(DataInputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * 读取下一个元素到head；读完时关闭文件并返回false
+         */
+        boolean advance() throws IOException {
+            try {
+                head = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                in.close();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 流式读取一个顺串文件，读完最后一个元素时关闭文件
+     */
+    private static class RunIterator implements PrimitiveIterator.OfLong {
+        private final DataInputStream in;
+        private int remaining;
+
+        RunIterator(DataInputStream in, int count) {
+            this.in = in;
+            this.remaining = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public long nextLong() {
+            if (remaining <= 0) {
+                throw new NoSuchElementException();
+            }
+            try {
+                long value = in.readLong();
+                if (--remaining == 0) {
+                    in.close();
+                }
+                return value;
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取溢出的边文件时出错: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package codex.graphbuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 并发符号表：把每个全限定名映射为一个稠密的int ID，并为每个ID记录节点种类掩码
+ * 名称按'.'拆成片段，每个ID只存（父ID，最后一个片段），包名和类名前缀由所有成员共享，
+ * 相同的片段文本也只存一份；完整名称在导出等需要时才按父指针拼接。
+ * 每个前缀本身也有ID（没有节点种类），父ID总是小于子ID。
+ * 父指针、片段和种类按ID分块存放在数组中，读取时无需加锁。
+ */
+class SymbolTable {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // 顶层片段的父ID
+    static final int ROOT = -1;
+
+    private static final VarHandle PARENTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle SEGMENTS = MethodHandles.arrayElementVarHandle(String[].class);
+    private static final VarHandle KINDS = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    // 片段字典：片段文本 -> 片段（共享的文本实例和片段ID）
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSegment = new AtomicInteger();
+
+    // （父ID，片段ID） -> ID
+    private final ConcurrentLongIntMap ids = new ConcurrentLongIntMap();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private volatile int[][] parentChunks = new int[16][];
+    private volatile String[][] segmentChunks = new String[16][];
+    private volatile byte[][] kindChunks = new byte[16][];
+
+    // 每种节点的数量，在种类位第一次被设置时递增
+    private final AtomicIntegerArray kindCounts = new AtomicIntegerArray(NodeKind.values().length);
+
+    private static final class Segment {
+        private final String text;
+        private final int id;
+
+        Segment(String text, int id) {
+            this.text = text;
+            this.id = id;
+        }
+    }
+
+    /**
+     * 返回名称对应的ID，不存在时分配新ID（缺少的前缀一并分配）
+     */
+    int intern(String name) {
+        int parent = ROOT;
+        int start = 0;
+        while (true) {
+            int dot = name.indexOf('.', start);
+            parent = internChild(parent, dot < 0 ? name.substring(start) : name.substring(start, dot));
+            if (dot < 0) {
+                return parent;
+            }
+            start = dot + 1;
+        }
+    }
+
+    /**
+     * 返回父ID下名为simpleName的子名称的ID，不存在时分配新ID
+     */
+    int internChild(int parent, String simpleName) {
+        Segment segment = segments.get(simpleName);
+        if (segment == null) {
+            segment = segments.computeIfAbsent(simpleName, s -> new Segment(s, nextSegment.getAndIncrement()));
+        }
+        long key = key(parent, segment.id);
+        int id = ids.get(key);
+        if (id >= 0) {
+            return id;
+        }
+        String text = segment.text;
+        return ids.computeIfAbsent(key, () -> {
+            int newId = nextId.getAndIncrement();
+            ensureCapacity(newId);
+            PARENTS.setRelease(parentChunks[newId >>> CHUNK_BITS], newId & CHUNK_MASK, parent);
+            SEGMENTS.setRelease(segmentChunks[newId >>> CHUNK_BITS], newId & CHUNK_MASK, text);
+            return newId;
+        });
+    }
+
+    /**
+     * 查找名称对应的ID，不存在时返回-1
+     */
+    int find(String name) {
+        int parent = ROOT;
+        int start = 0;
+        while (true) {
+            int dot = name.indexOf('.', start);
+            parent = findChild(parent, dot < 0 ? name.substring(start) : name.substring(start, dot));
+            if (dot < 0 || parent < 0) {
+                return parent;
+            }
+            start = dot + 1;
+        }
+    }
+
+    /**
+     * 查找父ID下名为simpleName的子名称，不存在时返回-1；不需要拼接完整名称
+     */
+    int findChild(int parent, String simpleName) {
+        Segment segment = segments.get(simpleName);
+        return segment == null ? -1 : ids.get(key(parent, segment.id));
+    }
+
+    private static long key(int parent, int segmentId) {
+        return ((long) (parent + 1) << 32) | segmentId;
+    }
+
+    /**
+     * 按父指针拼接完整名称
+     */
+    String name(int id) {
+        int parent = parent(id);
+        if (parent == ROOT) {
+            return simpleName(id);
+        }
+        int depth = 0;
+        int length = -1;
+        for (int current = id; current != ROOT; current = parent(current)) {
+            length += simpleName(current).length() + 1;
+            depth++;
+        }
+        String[] parts = new String[depth];
+        for (int current = id; current != ROOT; current = parent(current)) {
+            parts[--depth] = simpleName(current);
+        }
+        StringBuilder name = new StringBuilder(length);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                name.append('.');
+            }
+            name.append(parts[i]);
+        }
+        return name.toString();
+    }
+
+    /**
+     * 父名称的ID，顶层名称返回ROOT
+     */
+    int parent(int id) {
+        return (int) PARENTS.getAcquire(parentChunks[id >>> CHUNK_BITS], id & CHUNK_MASK);
+    }
+
+    /**
+     * 名称的最后一个片段
+     */
+    String simpleName(int id) {
+        return (String) SEGMENTS.getAcquire(segmentChunks[id >>> CHUNK_BITS], id & CHUNK_MASK);
+    }
+
+    /**
+     * 为ID标记节点种类，返回该种类是否为新标记
+     */
+    boolean mark(int id, NodeKind kind) {
+        byte bit = (byte) kind.mask();
+        byte old = (byte) KINDS.getAndBitwiseOr(kindChunks[id >>> CHUNK_BITS], id & CHUNK_MASK, bit);
+        if ((old & bit) == 0) {
+            kindCounts.incrementAndGet(kind.ordinal());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 清除ID上的某个节点种类，返回该种类之前是否已标记；监视模式下撤回文件的贡献时使用
+     */
+    boolean unmark(int id, NodeKind kind) {
+        byte bit = (byte) kind.mask();
+        byte old = (byte) KINDS.getAndBitwiseAnd(kindChunks[id >>> CHUNK_BITS], id & CHUNK_MASK, (byte) ~bit);
+        if ((old & bit) != 0) {
+            kindCounts.decrementAndGet(kind.ordinal());
+            return true;
+        }
+        return false;
+    }
+
+    int kindMask(int id) {
+        return (byte) KINDS.getAcquire(kindChunks[id >>> CHUNK_BITS], id & CHUNK_MASK);
+    }
+
+    boolean hasKind(int id, NodeKind kind) {
+        return (kindMask(id) & kind.mask()) != 0;
+    }
+
+    int count(NodeKind kind) {
+        return kindCounts.get(kind.ordinal());
+    }
+
+    /**
+     * 已分配的ID数量（包括名称前缀，以及只作为边端点出现、不属于任何节点种类的名称）
+     */
+    int size() {
+        return nextId.get();
+    }
+
+    /**
+     * 名称存储的内存估算，按字符串和数组的大小计算而不是实测的堆占用，与每个名称存一个完整字符串（HashMap键 + 按ID的数组）对比，
+     * 形如"12345 个名称，678 个不同片段，约 1.2 MB（完整字符串约 3.4 MB）"
+     */
+    String describeStorage() {
+        int count = size();
+        // 完整名称的长度：父ID总是小于子ID，按ID顺序一遍即可算出
+        int[] lengths = new int[count];
+        long flatBytes = 0;
+        for (int id = 0; id < count; id++) {
+            int parent = parent(id);
+            lengths[id] = simpleName(id).length() + (parent == ROOT ? 0 : lengths[parent] + 1);
+            // 字符串对象24字节 + byte数组16字节头部 + 内容（按8字节对齐） + 哈希表节点32字节 + Integer 16字节 + 数组引用4字节
+            flatBytes += 24 + align(16 + lengths[id]) + 32 + 16 + 4;
+        }
+
+        long segmentBytes = 0;
+        for (Segment segment : segments.values()) {
+            // 片段对象16字节 + 字符串 + 哈希表节点32字节
+            segmentBytes += 16 + 24 + align(16 + segment.text.length()) + 32;
+        }
+        // 每个ID：父ID 4字节 + 片段引用4字节 + 种类1字节；映射表每个槽位：键8字节 + 值4字节
+        long sharedBytes = segmentBytes + count * 9L + ids.capacity() * 12;
+
+        return String.format("%d 个名称，%d 个不同片段，约 %.1f MB（完整字符串约 %.1f MB）",
+                count, segments.size(), sharedBytes / 1048576.0, flatBytes / 1048576.0);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * 确保ID所在的块已分配；扩容时复制块指针数组，已有块不移动
+     */
+    private void ensureCapacity(int id) {
+        int chunk = id >>> CHUNK_BITS;
+        int[][] parents = parentChunks;
+        if (chunk < parents.length && parents[chunk] != null) {
+            return;
+        }
+        synchronized (this) {
+            parents = parentChunks;
+            String[][] names = segmentChunks;
+            byte[][] kinds = kindChunks;
+            if (chunk >= parents.length) {
+                int newLength = Math.max(parents.length * 2, chunk + 1);
+                parents = Arrays.copyOf(parents, newLength);
+                names = Arrays.copyOf(names, newLength);
+                kinds = Arrays.copyOf(kinds, newLength);
+            }
+            if (parents[chunk] == null) {
+                parents[chunk] = new int[CHUNK_SIZE];
+                names[chunk] = new String[CHUNK_SIZE];
+                kinds[chunk] = new byte[CHUNK_SIZE];
+            }
+            // 先发布片段和种类块，保证看到父指针块的线程也能看到其他块
+            kindChunks = kinds;
+            segmentChunks = names;
+            parentChunks = parents;
+        }
+    }
+}
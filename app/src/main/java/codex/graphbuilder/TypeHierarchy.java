@@ -0,0 +1,299 @@
+package codex.graphbuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 类型层次索引：EXTENDS和IMPLEMENTS构成的层次上常数时间的子类型判断
+ * 每个类型选一个主父类型（有父类时取父类，否则取第一个接口），主父类型构成生成森林，
+ * 在森林上深度优先遍历一次，给每个类型标上先序号和后序号：a是v在森林中的祖先当且仅当
+ * pre[a] <= pre[v] 且 post[v] <= post[a]。
+ * 多重继承（实现多个接口、接口继承多个接口）带来的、不在森林路径上的祖先单独记录：每个类型并行地
+ * 向上广度优先遍历一次，森林覆盖不到的（类型，祖先）对存入哈希集合。判断时先比较序号再查集合，
+ * 两步都是常数时间；以单继承为主的层次中这样的对很少。
+ */
+public class TypeHierarchy {
+    private static final int CHUNK_SIZE = 1 << 12;
+    private static final Edge.EdgeType[] SUPERTYPE_EDGES = {Edge.EdgeType.EXTENDS, Edge.EdgeType.IMPLEMENTS};
+
+    private final GraphIndex index;
+
+    // 生成森林：父类型（根为-1），先序号和后序号（不在层次中的ID为-1），
+    // 先序号 -> ID，以及子树中最大的先序号
+    private final int[] treeParent;
+    private final int[] pre;
+    private final int[] post;
+    private final int[] order;
+    private final int[] subtreeEnd;
+
+    // 森林路径之外的祖先：（类型，祖先）对的集合，以及按类型和按祖先分组的邻接表
+    private final ConcurrentLongSet extraPairs = new ConcurrentLongSet();
+    private final GraphIndex.Adjacency extraAncestors;
+    private final GraphIndex.Adjacency extraDescendants;
+
+    private TypeHierarchy(GraphIndex index, int[] treeParent, int[] pre, int[] post, int[] order, int[] subtreeEnd,
+                          long[] extras) {
+        this.index = index;
+        this.treeParent = treeParent;
+        this.pre = pre;
+        this.post = post;
+        this.order = order;
+        this.subtreeEnd = subtreeEnd;
+        extraPairs.addAll(extras, extras.length);
+        Arrays.parallelSort(extras);
+        extraAncestors = GraphIndex.Adjacency.of(extras, index.nodeCount());
+        long[] swapped = new long[extras.length];
+        for (int i = 0; i < extras.length; i++) {
+            swapped[i] = EdgeStore.pack(EdgeStore.target(extras[i]), EdgeStore.source(extras[i]));
+        }
+        Arrays.parallelSort(swapped);
+        extraDescendants = GraphIndex.Adjacency.of(swapped, index.nodeCount());
+    }
+
+    static TypeHierarchy build(GraphIndex index) {
+        int nodeCount = index.nodeCount();
+        GraphIndex.Adjacency extendsOut = index.adjacency(Edge.EdgeType.EXTENDS, GraphIndex.Direction.OUTGOING);
+        GraphIndex.Adjacency implementsOut = index.adjacency(Edge.EdgeType.IMPLEMENTS, GraphIndex.Direction.OUTGOING);
+
+        // 主父类型，以及参与层次（有任何EXTENDS/IMPLEMENTS边）的类型
+        int[] treeParent = new int[nodeCount];
+        boolean[] member = new boolean[nodeCount];
+        IntStream.range(0, nodeCount).parallel().forEach(v -> {
+            int parent = extendsOut.degree(v) > 0 ? extendsOut.neighbors(v)[0]
+                    : implementsOut.degree(v) > 0 ? implementsOut.neighbors(v)[0] : -1;
+            treeParent[v] = parent == v ? -1 : parent;
+            member[v] = parent >= 0 || index.degree(v, Edge.EdgeType.EXTENDS, GraphIndex.Direction.INCOMING) > 0
+                    || index.degree(v, Edge.EdgeType.IMPLEMENTS, GraphIndex.Direction.INCOMING) > 0;
+        });
+
+        // 子类型列表（CSR），按ID升序
+        int[] childOffsets = new int[nodeCount + 1];
+        for (int v = 0; v < nodeCount; v++) {
+            if (treeParent[v] >= 0) {
+                childOffsets[treeParent[v] + 1]++;
+            }
+        }
+        for (int v = 0; v < nodeCount; v++) {
+            childOffsets[v + 1] += childOffsets[v];
+        }
+        int[] children = new int[childOffsets[nodeCount]];
+        int[] fill = Arrays.copyOf(childOffsets, nodeCount);
+        for (int v = 0; v < nodeCount; v++) {
+            if (treeParent[v] >= 0) {
+                children[fill[treeParent[v]]++] = v;
+            }
+        }
+
+        // 先从真正的根开始遍历；主父类型成环时（源码有误或按导入猜错了类型）从环上ID最小的类型断开
+        int[] pre = new int[nodeCount];
+        int[] post = new int[nodeCount];
+        int[] subtreeEnd = new int[nodeCount];
+        Arrays.fill(pre, -1);
+        Arrays.fill(post, -1);
+        int[] order = new int[nodeCount];
+        int[] counters = new int[2];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int v = 0; v < nodeCount; v++) {
+                if (member[v] && pre[v] < 0 && (pass == 1 || treeParent[v] < 0)) {
+                    treeParent[v] = -1;
+                    label(v, childOffsets, children, pre, post, order, subtreeEnd, counters);
+                }
+            }
+        }
+
+        long[] extras = collectExtraPairs(index, member, pre, post);
+        return new TypeHierarchy(index, treeParent, pre, post, Arrays.copyOf(order, counters[0]), subtreeEnd, extras);
+    }
+
+    /**
+     * 非递归的深度优先遍历，给子树中的类型标上先序号和后序号
+     */
+    private static void label(int root, int[] childOffsets, int[] children, int[] pre, int[] post, int[] order,
+                              int[] subtreeEnd, int[] counters) {
+        int[] stack = new int[16];
+        int[] next = new int[16];
+        int depth = 0;
+        stack[0] = root;
+        next[0] = childOffsets[root];
+        pre[root] = counters[0];
+        order[counters[0]++] = root;
+        while (depth >= 0) {
+            int node = stack[depth];
+            if (next[depth] < childOffsets[node + 1]) {
+                int child = children[next[depth]++];
+                if (pre[child] >= 0) {
+                    continue;
+                }
+                pre[child] = counters[0];
+                order[counters[0]++] = child;
+                if (++depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                    next = Arrays.copyOf(next, depth * 2);
+                }
+                stack[depth] = child;
+                next[depth] = childOffsets[child];
+            } else {
+                post[node] = counters[1]++;
+                subtreeEnd[node] = counters[0] - 1;
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * 每个类型并行地向上遍历所有父类型，返回森林路径之外的（类型，祖先）对
+     */
+    private static long[] collectExtraPairs(GraphIndex index, boolean[] member, int[] pre, int[] post) {
+        int nodeCount = index.nodeCount();
+        int chunks = (nodeCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<long[]> results = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+            long[] pairs = new long[16];
+            int size = 0;
+            for (int v = chunk * CHUNK_SIZE; v < Math.min(nodeCount, (chunk + 1) * CHUNK_SIZE); v++) {
+                if (!member[v]) {
+                    continue;
+                }
+                for (int ancestor : index.kHop(v, Integer.MAX_VALUE, GraphIndex.Direction.OUTGOING, SUPERTYPE_EDGES)) {
+                    if (!isTreeAncestor(pre, post, ancestor, v)) {
+                        if (size == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, size * 2);
+                        }
+                        pairs[size++] = EdgeStore.pack(v, ancestor);
+                    }
+                }
+            }
+            return Arrays.copyOf(pairs, size);
+        }).toList();
+
+        int total = 0;
+        for (long[] result : results) {
+            total += result.length;
+        }
+        long[] extras = new long[total];
+        int offset = 0;
+        for (long[] result : results) {
+            System.arraycopy(result, 0, extras, offset, result.length);
+            offset += result.length;
+        }
+        return extras;
+    }
+
+    private static boolean isTreeAncestor(int[] pre, int[] post, int ancestor, int type) {
+        return pre[ancestor] >= 0 && pre[type] >= 0 && pre[ancestor] <= pre[type] && post[type] <= post[ancestor];
+    }
+
+    /**
+     * type是否是ancestor本身，或直接、间接地继承或实现了ancestor
+     */
+    public boolean isSubtype(int type, int ancestor) {
+        if (type == ancestor) {
+            return true;
+        }
+        if (type < 0 || ancestor < 0 || type >= pre.length || ancestor >= pre.length) {
+            return false;
+        }
+        return isTreeAncestor(pre, post, ancestor, type) || extraPairs.contains(EdgeStore.pack(type, ancestor));
+    }
+
+    public boolean isSubtype(String type, String ancestor) {
+        int typeId = index.nodeId(type);
+        int ancestorId = index.nodeId(ancestor);
+        return typeId >= 0 && ancestorId >= 0 && isSubtype(typeId, ancestorId);
+    }
+
+    /**
+     * 所有直接和间接的父类型：先是森林路径上由近到远的祖先，再是其余的祖先
+     */
+    public int[] ancestors(int type) {
+        if (type < 0 || type >= pre.length || pre[type] < 0) {
+            return new int[0];
+        }
+        int[] extra = extraAncestors.neighbors(type);
+        int[] result = new int[16 + extra.length];
+        int size = 0;
+        for (int parent = treeParent[type]; parent >= 0; parent = treeParent[parent]) {
+            if (size == result.length) {
+                result = Arrays.copyOf(result, size * 2);
+            }
+            result[size++] = parent;
+        }
+        result = Arrays.copyOf(result, size + extra.length);
+        System.arraycopy(extra, 0, result, size, extra.length);
+        return result;
+    }
+
+    /**
+     * 所有直接和间接的子类型：森林中的子树是先序号上的一段连续区间，再加上经由其他父类型继承的子类型
+     */
+    public int[] descendants(int type) {
+        if (type < 0 || type >= pre.length || pre[type] < 0) {
+            return new int[0];
+        }
+        int[] extra = extraDescendants.neighbors(type);
+        int treeCount = subtreeEnd[type] - pre[type];
+        int[] result = Arrays.copyOf(Arrays.copyOfRange(order, pre[type] + 1, subtreeEnd[type] + 1),
+                treeCount + extra.length);
+        System.arraycopy(extra, 0, result, treeCount, extra.length);
+        return result;
+    }
+
+    public List<String> allSupertypes(String type) {
+        return index.names(ancestors(index.nodeId(type)));
+    }
+
+    public List<String> allSubtypes(String type) {
+        return index.names(descendants(index.nodeId(type)));
+    }
+
+    /**
+     * 所有祖先及其最短距离（直接父类型为1），依次为 祖先, 距离, 祖先, 距离……
+     */
+    int[] ancestorDepths(int type) {
+        Map<Integer, Integer> depths = new HashMap<>();
+        List<Integer> frontier = List.of(type);
+        int[] result = new int[16];
+        int size = 0;
+        for (int depth = 1; !frontier.isEmpty(); depth++) {
+            List<Integer> next = new ArrayList<>();
+            for (int node : frontier) {
+                for (Edge.EdgeType edgeType : SUPERTYPE_EDGES) {
+                    GraphIndex.Adjacency adjacency = index.adjacency(edgeType, GraphIndex.Direction.OUTGOING);
+                    for (int parent : adjacency.neighbors(node)) {
+                        if (parent != type && depths.putIfAbsent(parent, depth) == null) {
+                            next.add(parent);
+                            if (size + 2 > result.length) {
+                                result = Arrays.copyOf(result, result.length * 2);
+                            }
+                            result[size++] = parent;
+                            result[size++] = depth;
+                        }
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * 参与层次的类型数
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * 森林路径之外单独记录的（类型，祖先）对的数量
+     */
+    public int extraPairCount() {
+        return extraPairs.size();
+    }
+
+    boolean contains(int type) {
+        return type >= 0 && type < pre.length && pre[type] >= 0;
+    }
+}
@@ -0,0 +1,125 @@
+package codex.graphbuilder;
+
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JarTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于JavaParser符号求解器的类型解析
+ * 每次运行只构建一个组合求解器（源码根目录 + JDK + 依赖jar），按导入索引给出的作用域顺序依次尝试候选全限定名，
+ * 每个候选名是否存在的结果记录在有界缓存中，各解析线程共享。
+ * 求解器内部的缓存不是线程安全的，未命中缓存时的求解过程串行执行。
+ * 源码求解器在找不到对应文件时会解析整个包目录，因此先用文件是否存在过滤掉注定失败的候选名。
+ */
+class TypeSolverResolver {
+    // 缓存中表示"该全限定名不存在"的值
+    private static final String MISSING = "";
+
+    private final TypeSolver typeSolver;
+    private final List<Path> sourceRoots;
+    private final ReentrantLock solverLock = new ReentrantLock();
+    private final BoundedCache<String, String> cache;
+
+    TypeSolverResolver(List<Path> sourceRoots, List<Path> libraryJars, ParserConfiguration configuration,
+                       int cacheSize) throws IOException {
+        List<TypeSolver> solvers = new ArrayList<>();
+        solvers.add(new ReflectionTypeSolver(true));
+        for (Path root : sourceRoots) {
+            solvers.add(new JavaParserTypeSolver(root, configuration));
+        }
+        for (Path jar : libraryJars) {
+            solvers.add(new JarTypeSolver(jar));
+        }
+        // 源码中的语法错误等异常视为无法求解，不中断解析
+        this.typeSolver = new CombinedTypeSolver(e -> true, solvers);
+        this.sourceRoots = List.copyOf(sourceRoots);
+        this.cache = new BoundedCache<>(cacheSize);
+    }
+
+    /**
+     * 解析源码中出现的类型名（可能带外层限定，如Outer.Inner），返回图中的类节点名；无法求解时返回null
+     */
+    String resolve(String typeName, ImportIndex imports) {
+        for (String candidate : imports.candidates(typeName)) {
+            String nodeName = cache.get(candidate, this::solve);
+            if (!nodeName.isEmpty()) {
+                return nodeName;
+            }
+        }
+        return null;
+    }
+
+    private String solve(String qualifiedName) {
+        if (!worthSolving(qualifiedName)) {
+            return MISSING;
+        }
+        solverLock.lock();
+        try {
+            SymbolReference<ResolvedReferenceTypeDeclaration> ref = typeSolver.tryToSolveType(qualifiedName);
+            if (!ref.isSolved()) {
+                return MISSING;
+            }
+            ResolvedReferenceTypeDeclaration declaration = ref.getCorrespondingDeclaration();
+            return toNodeName(declaration);
+        } catch (RuntimeException e) {
+            return MISSING;
+        } finally {
+            solverLock.unlock();
+        }
+    }
+
+    /**
+     * 候选名在某个源码根目录下有对应的源文件（a/b/C/D.java、a/b/C.java……），或者不落在任何源码包目录中
+     * （交给JDK和依赖jar求解）时才值得调用求解器
+     */
+    private boolean worthSolving(String qualifiedName) {
+        boolean inSourcePackage = false;
+        for (Path root : sourceRoots) {
+            String relative = qualifiedName.replace('.', '/');
+            while (!relative.isEmpty()) {
+                Path file = root.resolve(relative + ".java");
+                if (Files.isRegularFile(file)) {
+                    return true;
+                }
+                if (!inSourcePackage && file.getParent() != null && !file.getParent().equals(root)
+                        && Files.isDirectory(file.getParent())) {
+                    inSourcePackage = true;
+                }
+                int slash = relative.lastIndexOf('/');
+                relative = slash < 0 ? "" : relative.substring(0, slash);
+            }
+        }
+        return !inSourcePackage;
+    }
+
+    /**
+     * 图中类节点的命名方式为二进制名"包名.外部类$内部类"
+     */
+    private static String toNodeName(ResolvedReferenceTypeDeclaration declaration) {
+        String packageName = declaration.getPackageName();
+        String className = declaration.getClassName().replace('.', '$');
+        return packageName.isEmpty() ? className : packageName + "." + className;
+    }
+
+    /**
+     * 缓存统计，形如"命中率 93.5%（命中 1234 / 查询 1320，缓存 87 项）"
+     */
+    String describeCache() {
+        long hits = cache.getHits();
+        long total = hits + cache.getMisses();
+        return String.format("命中率 %.1f%%（命中 %d / 查询 %d，缓存 %d 项）",
+                cache.hitRate() * 100, hits, total, cache.size());
+    }
+}
@@ -0,0 +1,58 @@
+package codex.graphbuilder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuildCacheTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void cacheFromDifferentExtractionSettingsIsNotReused() throws IOException {
+        Path sources = Files.createDirectories(dir.resolve("src/p"));
+        Files.writeString(sources.resolve("A.java"), """
+                package p;
+                public class A {
+                    private int count;
+                    void run() {
+                        count = 1;
+                        stop();
+                    }
+                    void stop() {
+                    }
+                }
+                """);
+        String manifest = dir.resolve("cache.bin").toString();
+
+        GraphBuilder cold = parse(manifest, false);
+        assertEquals(0, countEdges(cold, Edge.EdgeType.CALLS));
+
+        GraphBuilder warm = parse(manifest, true);
+        assertTrue(warm.getEdges().contains(new Edge("p.A.run()", "p.A.stop()", Edge.EdgeType.CALLS)));
+        assertTrue(warm.getEdges().contains(new Edge("p.A.run()", "p.A.count", Edge.EdgeType.WRITES)));
+
+        // 配置相同的第三次运行命中缓存，结果不变
+        GraphBuilder again = parse(manifest, true);
+        assertEquals(warm.getEdges(), again.getEdges());
+    }
+
+    private GraphBuilder parse(String manifest, boolean callGraph) {
+        GraphBuilder graphBuilder = new GraphBuilder();
+        graphBuilder.setQuiet(true);
+        graphBuilder.setCacheFile(manifest);
+        graphBuilder.setCallGraphEnabled(callGraph);
+        graphBuilder.parseDirectory(dir.resolve("src").toString());
+        return graphBuilder;
+    }
+
+    private static long countEdges(GraphBuilder graphBuilder, Edge.EdgeType type) {
+        return graphBuilder.getEdges().stream().filter(edge -> edge.getType() == type).count();
+    }
+}
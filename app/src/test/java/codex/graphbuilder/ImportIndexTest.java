@@ -0,0 +1,93 @@
+package codex.graphbuilder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImportIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void qualifyFollowsShadowingOrder() {
+        ImportIndex imports = new ImportIndex("p", List.of("java.util", "q.Process"), List.of(true, false));
+
+        // 单类型导入优先于同包类型
+        assertEquals("q.Process", imports.qualify("Process", name -> true));
+        // 同包类型遮蔽按需导入和java.lang中的同名类型
+        assertEquals("p.Record", imports.qualify("Record", "Record"::equals));
+        assertEquals("p.List", imports.qualify("List", "List"::equals));
+        // 同包中没有时才取按需导入和java.lang
+        assertEquals("java.util.List", imports.qualify("List", name -> false));
+        assertEquals("java.lang.Record", imports.qualify("Record", name -> false));
+        assertEquals("java.util.Map$Entry", imports.qualify("Map.Entry", name -> false));
+        // 哪里都找不到的类型当作同包的类型
+        assertEquals("p.Widget", imports.qualify("Widget", name -> false));
+    }
+
+    @Test
+    void samePackageClassShadowsJavaLang() throws IOException {
+        Path sources = Files.createDirectories(dir.resolve("src/p"));
+        Files.writeString(sources.resolve("Record.java"), """
+                package p;
+                public class Record {
+                }
+                """);
+        Files.writeString(sources.resolve("A.java"), """
+                package p;
+                public class A {
+                    void take(Record record, Module module) {
+                    }
+                }
+                """);
+
+        GraphBuilder graphBuilder = new GraphBuilder();
+        graphBuilder.setQuiet(true);
+        graphBuilder.parseDirectory(dir.resolve("src").toString());
+
+        assertTrue(graphBuilder.getMethods().contains("p.A.take(Lp/Record;Ljava/lang/Module;)"),
+                graphBuilder.getMethods().toString());
+    }
+
+    @Test
+    void cachedFileIsReparsedWhenSamePackageClassAppears() throws IOException {
+        Path sources = Files.createDirectories(dir.resolve("src/p"));
+        Files.writeString(sources.resolve("A.java"), """
+                package p;
+                public class A {
+                    void take(Record record) {
+                    }
+                }
+                """);
+        String manifest = dir.resolve("cache.bin").toString();
+
+        GraphBuilder cold = parse(manifest);
+        assertTrue(cold.getMethods().contains("p.A.take(Ljava/lang/Record;)"), cold.getMethods().toString());
+
+        // A.java没有变化，但同包中新出现的Record遮蔽了java.lang.Record
+        Files.writeString(sources.resolve("Record.java"), """
+                package p;
+                public class Record {
+                }
+                """);
+        GraphBuilder warm = parse(manifest);
+        assertTrue(warm.getMethods().contains("p.A.take(Lp/Record;)"), warm.getMethods().toString());
+        assertFalse(warm.getMethods().contains("p.A.take(Ljava/lang/Record;)"));
+    }
+
+    private GraphBuilder parse(String manifest) {
+        GraphBuilder graphBuilder = new GraphBuilder();
+        graphBuilder.setQuiet(true);
+        graphBuilder.setCacheFile(manifest);
+        graphBuilder.parseDirectory(dir.resolve("src").toString());
+        return graphBuilder;
+    }
+}
@@ -0,0 +1,61 @@
+package codex.graphbuilder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SymbolSolverTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void solvedSupertypesAreExportedAsExternalClasses() throws IOException {
+        writeSources();
+        GraphBuilder graphBuilder = parse(true);
+
+        assertTrue(graphBuilder.getClasses().contains("java.lang.Runnable"));
+        Path output = dir.resolve("out");
+        graphBuilder.exportToNeo4j(output.toString());
+        List<String> rows = Files.readAllLines(output.resolve("implements_rels.csv"));
+        assertEquals(2, rows.size(), rows.toString());
+        assertTrue(rows.get(1).startsWith("p.A,java.lang.Runnable,"), rows.toString());
+    }
+
+    @Test
+    void guessedSupertypesHaveNoNode() throws IOException {
+        writeSources();
+        GraphBuilder graphBuilder = parse(false);
+
+        assertFalse(graphBuilder.getClasses().contains("java.lang.Runnable"));
+        Path output = dir.resolve("out");
+        graphBuilder.exportToNeo4j(output.toString());
+        assertEquals(1, Files.readAllLines(output.resolve("implements_rels.csv")).size());
+    }
+
+    private void writeSources() throws IOException {
+        Path sources = Files.createDirectories(dir.resolve("src/p"));
+        Files.writeString(sources.resolve("A.java"), """
+                package p;
+                public class A implements Runnable {
+                    public void run() {
+                    }
+                }
+                """);
+    }
+
+    private GraphBuilder parse(boolean symbolSolver) {
+        GraphBuilder graphBuilder = new GraphBuilder();
+        graphBuilder.setQuiet(true);
+        graphBuilder.setSymbolSolverEnabled(symbolSolver);
+        graphBuilder.parseDirectory(dir.resolve("src").toString());
+        return graphBuilder;
+    }
+}